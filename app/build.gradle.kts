@@ -33,10 +33,17 @@ android {
 
 dependencies {
 
+    implementation(project(":sketch-core"))
     implementation(libs.appcompat)
     implementation(libs.material)
     implementation(libs.activity)
     implementation(libs.constraintlayout)
+    implementation(libs.exifinterface)
+    implementation(libs.core.splashscreen)
+    // Installs src/main/baseline-prof.txt on sideloaded and pre-Play-install builds too
+    implementation(libs.profileinstaller)
+    implementation(libs.camera.camera2)
+    implementation(libs.camera.lifecycle)
     testImplementation(libs.junit)
     androidTestImplementation(libs.ext.junit)
     androidTestImplementation(libs.espresso.core)
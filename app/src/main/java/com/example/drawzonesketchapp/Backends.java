@@ -0,0 +1,157 @@
+package com.example.drawzonesketchapp;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Build;
+import android.util.Log;
+
+import com.example.drawzonesketchapp.sketch.Blur;
+import com.example.drawzonesketchapp.sketch.BlurCalibrator;
+import com.example.drawzonesketchapp.sketch.BoxBlur;
+import com.example.drawzonesketchapp.sketch.BufferPool;
+import com.example.drawzonesketchapp.sketch.ParallelStackBlur;
+import com.example.drawzonesketchapp.sketch.StackBlur;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Chooses which blur implementation each conversion runs on this device.
+ * <p>
+ * The candidates are the pure-Java kernels from sketch-core. On first launch they are timed by
+ * {@link BlurCalibrator} at a small and a large radius, in the background once the engine is
+ * warm; a run that overlapped any other job is thrown away, since the kernel that suffered
+ * least from the contention would win rather than the fastest. The winners are
+ * persisted in SharedPreferences along with the build fingerprint and core count, so an OS
+ * update or a restored backup on another device calibrates again. Until calibration has
+ * finished, the fixed rule applies: the parallel stack blur for small radii and the box blur
+ * from {@link #LARGE_RADIUS_MIN}. A conversion limited to fewer threads than cores gets the
+ * parallel kernel on a pool of that size, or the serial one for a single thread. The GPU
+ * path for previews is {@link GpuPreview}; it is display-only and not a candidate here.
+ */
+class Backends {
+
+    static final String PARALLEL_STACK = "parallelStack";
+    static final String STACK = "stack";
+    static final String BOX = "box";
+
+    private static final String TAG = "PencilSketchApp";
+    private static final String PREFS = "backends";
+    private static final String KEY_DEVICE = "device";
+    private static final String KEY_SMALL = "blurSmall";
+    private static final String KEY_LARGE = "blurLarge";
+    private static final int LARGE_RADIUS_MIN = 16;
+    private static final int SMALL_SAMPLE_RADIUS = 5;
+    private static final int LARGE_SAMPLE_RADIUS = 25;
+    private static final int SAMPLE_WIDTH = 1000;
+    private static final int SAMPLE_HEIGHT = 750;
+    private static final int SAMPLE_RUNS = 3;
+
+    private final SharedPreferences prefs;
+    // Parallel first, so it wins ties
+    private final Map<String, Blur> candidates = new LinkedHashMap<>();
+    // Written by the calibration job, read by conversions on any thread
+    private volatile String small = PARALLEL_STACK;
+    private volatile String large = BOX;
+    // Parallel kernels by thread count, for conversions that may not use every core. Shared by
+    // every instance, so a recreated activity reuses the pools instead of starting new ones.
+    private static final Map<Integer, Blur> LIMITED = new HashMap<>();
+
+    Backends(Context context, BufferPool buffers) {
+        prefs = context.getSharedPreferences(PREFS, Context.MODE_PRIVATE);
+        candidates.put(PARALLEL_STACK, new ParallelStackBlur());
+        candidates.put(STACK, StackBlur.SERIAL);
+        candidates.put(BOX, new BoxBlur(buffers));
+
+        if (device().equals(prefs.getString(KEY_DEVICE, null))) {
+            small = known(prefs.getString(KEY_SMALL, null), small);
+            large = known(prefs.getString(KEY_LARGE, null), large);
+        }
+    }
+
+    /** The blur to convert with at {@code radius}. */
+    Blur blurFor(int radius) {
+        return candidates.get(radius >= LARGE_RADIUS_MIN ? large : small);
+    }
+
+    /** The blur to convert with at {@code radius} on at most {@code threads} threads. */
+    Blur blurFor(int radius, int threads) {
+        if (threads <= 1) return serialBlurFor(radius);
+        Blur blur = blurFor(radius);
+        if (!(blur instanceof ParallelStackBlur) || threads >= Runtime.getRuntime().availableProcessors()) {
+            return blur;
+        }
+        synchronized (LIMITED) {
+            Blur pooled = LIMITED.get(threads);
+            if (pooled == null) {
+                pooled = new ParallelStackBlur(new ForkJoinPool(threads));
+                LIMITED.put(threads, pooled);
+            }
+            return pooled;
+        }
+    }
+
+    /**
+     * A single-threaded blur for {@code radius}, for callers that already run one conversion
+     * per core: the calibrated choice unless that is the parallel kernel.
+     */
+    Blur serialBlurFor(int radius) {
+        String name = radius >= LARGE_RADIUS_MIN ? large : small;
+        if (name.equals(PARALLEL_STACK)) name = radius >= LARGE_RADIUS_MIN ? BOX : STACK;
+        return candidates.get(name);
+    }
+
+    /**
+     * Times the candidates in the background unless this device already has a choice. Call it
+     * once the engine is warm; if other jobs run meanwhile, nothing is stored and the next
+     * launch tries again.
+     */
+    void calibrateIfNeeded(JobScheduler jobs) {
+        if (device().equals(prefs.getString(KEY_DEVICE, null))) return;
+
+        jobs.submitCpu(token -> {
+            long started = jobs.jobsStarted();
+            if (jobs.jobsRunning() > 1) return null;
+            String[] fastest = {
+                    BlurCalibrator.fastest(candidates, SAMPLE_WIDTH, SAMPLE_HEIGHT, SMALL_SAMPLE_RADIUS, SAMPLE_RUNS,
+                            token),
+                    BlurCalibrator.fastest(candidates, SAMPLE_WIDTH, SAMPLE_HEIGHT, LARGE_SAMPLE_RADIUS, SAMPLE_RUNS,
+                            token)
+            };
+            // Anything started or still running since would have shared the cores
+            return jobs.jobsStarted() == started && jobs.jobsRunning() == 1 ? fastest : null;
+        }, new JobScheduler.Callback<String[]>() {
+            @Override
+            public void onSuccess(String[] fastest) {
+                if (fastest == null) {
+                    Log.i(TAG, "Blur calibration overlapped other work; keeping the fixed rule");
+                    return;
+                }
+                small = fastest[0];
+                large = fastest[1];
+                prefs.edit()
+                        .putString(KEY_DEVICE, device())
+                        .putString(KEY_SMALL, small)
+                        .putString(KEY_LARGE, large)
+                        .apply();
+                Log.i(TAG, "Calibrated blur: " + small + " below radius " + LARGE_RADIUS_MIN + ", " + large + " above");
+            }
+
+            @Override
+            public void onFailure(Throwable e) {
+                // Keep the fixed rule and try again next launch
+                Log.e(TAG, "Blur calibration error: " + e.getMessage());
+            }
+        });
+    }
+
+    private String known(String name, String fallback) {
+        return name != null && candidates.containsKey(name) ? name : fallback;
+    }
+
+    private static String device() {
+        return Build.FINGERPRINT + "/" + Runtime.getRuntime().availableProcessors();
+    }
+}
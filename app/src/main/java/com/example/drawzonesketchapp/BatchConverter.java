@@ -0,0 +1,125 @@
+package com.example.drawzonesketchapp;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.example.drawzonesketchapp.sketch.BatchPipeline;
+import com.example.drawzonesketchapp.sketch.Blur;
+import com.example.drawzonesketchapp.sketch.BufferPool;
+import com.example.drawzonesketchapp.sketch.CancellationToken;
+import com.example.drawzonesketchapp.sketch.FilterGraph;
+import com.example.drawzonesketchapp.sketch.SketchStyle;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Converts a whole selection of gallery images and saves each sketch to the gallery.
+ * <p>
+ * Runs a {@link BatchPipeline}: decode on one I/O thread, one sketch per core in parallel,
+ * then encode and insert on another I/O thread. Each image is converted with a serial blur;
+ * the parallelism comes from converting several images at once. The bounded queues keep
+ * memory flat for any number of images.
+ */
+class BatchConverter {
+
+    interface Listener {
+        /** Main thread, after each image is saved or has failed, until the batch is cancelled. */
+        void onProgress(BatchPipeline.Stats progress);
+    }
+
+    /** A decoded or sketched image as a pooled pixel buffer. */
+    private static final class Frame {
+        final int[] pixels;
+        final int width, height;
+
+        Frame(int[] pixels, int width, int height) {
+            this.pixels = pixels;
+            this.width = width;
+            this.height = height;
+        }
+    }
+
+    private static final String TAG = "PencilSketchApp";
+    private static final int QUEUE_CAPACITY = 2;
+
+    private final SampledDecoder decoder;
+    private final SketchExporter exporter;
+    private final BufferPool buffers;
+    private final BitmapPool bitmaps;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    BatchConverter(Context context, BufferPool buffers, BitmapPool bitmaps) {
+        ContentResolver resolver = context.getContentResolver();
+        this.decoder = new SampledDecoder(resolver, bitmaps);
+        this.exporter = new SketchExporter(resolver, buffers);
+        this.buffers = buffers;
+        this.bitmaps = bitmaps;
+    }
+
+    /**
+     * Converts every image in {@code uris} to {@code style} with {@code blur}, which must be
+     * safe to call from several threads, saves each as {@code format} and blocks until done.
+     * Call from a worker thread.
+     *
+     * @throws java.util.concurrent.CancellationException if the token is cancelled
+     */
+    BatchPipeline.Stats convert(List<Uri> uris, int maxDimension, SketchStyle style, int radius, Blur blur,
+                                ExportFormat format, Listener listener, CancellationToken token) throws InterruptedException {
+        int workers = Math.max(1, Runtime.getRuntime().availableProcessors());
+        // The files of one batch share a timestamp and are numbered in the order they finish
+        String batchName = Gallery.sketchFileName("");
+        AtomicInteger sequence = new AtomicInteger();
+        BatchPipeline<Uri, Frame, Frame> pipeline = new BatchPipeline<>(
+                (uri, t) -> decode(uri, maxDimension),
+                (frame, t) -> {
+                    int[] sketch = buffers.acquire(frame.width * frame.height);
+                    try (FilterGraph graph = new FilterGraph(frame.pixels, frame.width, frame.height, buffers)) {
+                        style.render(graph, radius, blur, sketch, t);
+                    }
+                    buffers.release(frame.pixels);
+                    return new Frame(sketch, frame.width, frame.height);
+                },
+                (frame, t) -> encode(frame, format, String.format(Locale.US, "%s_%03d", batchName,
+                        sequence.incrementAndGet()), t),
+                workers, QUEUE_CAPACITY);
+
+        return pipeline.run(uris, (uri, error, progress) -> {
+            if (error != null) Log.e(TAG, "Batch error for " + uri + ": " + error.getMessage());
+            mainHandler.post(() -> {
+                if (!token.isCancelled()) listener.onProgress(progress);
+            });
+        }, token);
+    }
+
+    private Frame decode(Uri uri, int maxDimension) throws IOException {
+        Bitmap bitmap = decoder.decode(uri, maxDimension, maxDimension);
+        if (bitmap == null) throw new IOException("Unsupported image " + uri);
+
+        int width = bitmap.getWidth();
+        int height = bitmap.getHeight();
+        int[] pixels = buffers.acquire(width * height);
+        bitmap.getPixels(pixels, 0, width, 0, 0, width, height);
+        bitmaps.release(bitmap);
+        return new Frame(pixels, width, height);
+    }
+
+    private SketchExporter.Result encode(Frame frame, ExportFormat format, String baseName,
+                                         CancellationToken token) throws IOException {
+        Bitmap sketch = bitmaps.acquire(frame.width, frame.height, Bitmap.Config.ARGB_8888);
+        sketch.setPixels(frame.pixels, 0, frame.width, 0, 0, frame.width, frame.height);
+        buffers.release(frame.pixels);
+        try {
+            return exporter.save(sketch, format, baseName, token);
+        } finally {
+            bitmaps.release(sketch);
+        }
+    }
+}
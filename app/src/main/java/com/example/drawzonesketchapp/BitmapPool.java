@@ -0,0 +1,99 @@
+package com.example.drawzonesketchapp;
+
+import android.graphics.Bitmap;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+
+/**
+ * Recycles mutable bitmaps between conversions instead of calling {@code recycle()} and
+ * allocating a fresh one each time.
+ * <p>
+ * Pooled memory is capped; when a release goes over the cap the least recently released
+ * bitmaps are recycled first. Bitmaps handed out hold stale pixels and must be fully
+ * overwritten, either with {@code setPixels} or by passing them to the decoder as
+ * {@code inBitmap}. Thread-safe.
+ */
+class BitmapPool {
+
+    private final long maxBytes;
+    // Oldest release first
+    private final ArrayDeque<Bitmap> free = new ArrayDeque<>();
+    private long pooledBytes;
+
+    BitmapPool(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /** A mutable bitmap of exactly this size and config. */
+    synchronized Bitmap acquire(int width, int height, Bitmap.Config config) {
+        Iterator<Bitmap> it = free.descendingIterator();
+        while (it.hasNext()) {
+            Bitmap bitmap = it.next();
+            if (bitmap.getWidth() == width && bitmap.getHeight() == height && bitmap.getConfig() == config) {
+                it.remove();
+                pooledBytes -= bitmap.getAllocationByteCount();
+                return bitmap;
+            }
+        }
+        return Bitmap.createBitmap(width, height, config);
+    }
+
+    /**
+     * The smallest pooled bitmap whose allocation can hold a {@code width x height} decode
+     * in {@code config}, for {@code BitmapFactory.Options.inBitmap}; null if none fits.
+     */
+    synchronized Bitmap acquireForDecode(int width, int height, Bitmap.Config config) {
+        long needed = (long) width * height * bytesPerPixel(config);
+        Bitmap best = null;
+        for (Bitmap bitmap : free) {
+            int size = bitmap.getAllocationByteCount();
+            if (size >= needed && (best == null || size < best.getAllocationByteCount())) {
+                best = bitmap;
+            }
+        }
+        if (best != null) {
+            free.remove(best);
+            pooledBytes -= best.getAllocationByteCount();
+        }
+        return best;
+    }
+
+    /** Hands {@code bitmap} back; the caller must not draw or touch it afterwards. */
+    synchronized void release(Bitmap bitmap) {
+        if (bitmap == null || bitmap.isRecycled()) return;
+        int size = bitmap.getAllocationByteCount();
+        if (!bitmap.isMutable() || size > maxBytes) {
+            bitmap.recycle();
+            return;
+        }
+        free.addLast(bitmap);
+        pooledBytes += size;
+        trimTo(maxBytes);
+    }
+
+    /** Recycles the oldest pooled bitmaps until at most {@code bytes} are held. */
+    synchronized void trimTo(long bytes) {
+        while (pooledBytes > bytes && !free.isEmpty()) {
+            Bitmap bitmap = free.removeFirst();
+            pooledBytes -= bitmap.getAllocationByteCount();
+            bitmap.recycle();
+        }
+    }
+
+    void clear() {
+        trimTo(0);
+    }
+
+    private static int bytesPerPixel(Bitmap.Config config) {
+        switch (config) {
+            case ALPHA_8:
+                return 1;
+            case RGB_565:
+            case ARGB_4444:
+                return 2;
+            default:
+                return 4;
+        }
+    }
+}
@@ -0,0 +1,256 @@
+package com.example.drawzonesketchapp;
+
+import android.Manifest;
+import android.content.pm.PackageManager;
+import android.graphics.Bitmap;
+import android.graphics.Matrix;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.util.Size;
+import android.widget.ImageView;
+import android.widget.TextView;
+import android.widget.Toast;
+
+import androidx.annotation.NonNull;
+import androidx.appcompat.app.AppCompatActivity;
+import androidx.camera.core.CameraSelector;
+import androidx.camera.core.ImageAnalysis;
+import androidx.camera.core.ImageProxy;
+import androidx.camera.core.resolutionselector.ResolutionSelector;
+import androidx.camera.core.resolutionselector.ResolutionStrategy;
+import androidx.camera.lifecycle.ProcessCameraProvider;
+import androidx.core.app.ActivityCompat;
+import androidx.core.content.ContextCompat;
+
+import com.example.drawzonesketchapp.sketch.BufferPool;
+import com.example.drawzonesketchapp.sketch.FrameProcessor;
+import com.google.common.util.concurrent.ListenableFuture;
+
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Live camera viewfinder drawn as a pencil sketch.
+ * <p>
+ * CameraX delivers YUV frames for analysis. The Y plane is already the grayscale image, so
+ * each frame's luma is copied straight into a {@link FrameProcessor} and the image is closed
+ * at once, which keeps the camera running at its own rate; the processor sketches only the
+ * newest frame and drops the rest. Sketches alternate between two bitmaps, and a new one is
+ * only drawn once the screen has taken the previous one, so display never waits on the
+ * processor or the other way round.
+ */
+public class CameraSketchActivity extends AppCompatActivity {
+
+    /** Strength in pixels of a {@link #REFERENCE_DIMENSION} image, as on the main screen. */
+    static final String EXTRA_RADIUS = "radius";
+
+    private static final String TAG = "PencilSketchApp";
+    private static final int CAMERA_PERMISSION_REQUEST = 1;
+    private static final int DEFAULT_RADIUS = 5;
+    // MainActivity's REFERENCE_DIMENSION; the radius is scaled from it to the frame size
+    private static final int REFERENCE_DIMENSION = 1000;
+    // Small enough to sketch every frame at 30 fps on mid-range devices
+    private static final Size ANALYSIS_SIZE = new Size(640, 480);
+    private static final long STATS_INTERVAL_MS = 500;
+
+    private ImageView cameraView;
+    private TextView txtStats;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private ExecutorService analysisExecutor;
+    private ImageAnalysis analysis;
+    private FrameProcessor processor;
+    private int strength;
+    // Analysis thread only
+    private int frameRadius;
+
+    // Processing thread only: the bitmap not on screen is drawn next
+    private final Bitmap[] frameBitmaps = new Bitmap[2];
+    private int nextBitmap;
+    // Set while a sketched frame is posted but not yet on screen
+    private final AtomicBoolean framePosted = new AtomicBoolean();
+    private volatile int rotationDegrees;
+
+    // Main thread only
+    private int shownWidth, shownHeight, shownRotation = -1;
+    private long lastProcessed;
+
+    private final Runnable updateStats = new Runnable() {
+        @Override
+        public void run() {
+            FrameProcessor.Stats stats = processor.stats();
+            float fps = (stats.processed - lastProcessed) * 1000f / STATS_INTERVAL_MS;
+            lastProcessed = stats.processed;
+            txtStats.setText(String.format(Locale.US, "%.0f fps  %.1f ms/frame (max %.1f)  %.0f%% dropped",
+                    fps, stats.lastLatencyNanos / 1e6, stats.maxLatencyNanos / 1e6, stats.droppedRate() * 100));
+            mainHandler.postDelayed(this, STATS_INTERVAL_MS);
+        }
+    };
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_camera);
+        cameraView = findViewById(R.id.cameraView);
+        txtStats = findViewById(R.id.txtCameraStats);
+
+        strength = getIntent().getIntExtra(EXTRA_RADIUS, DEFAULT_RADIUS);
+        frameRadius = scaledRadius(ANALYSIS_SIZE.getWidth(), ANALYSIS_SIZE.getHeight());
+        Backends backends = new Backends(this, BufferPool.NONE);
+        processor = new FrameProcessor(backends.blurFor(frameRadius), frameRadius, new FrameProcessor.Listener() {
+            @Override
+            public void onFrame(int[] sketch, int width, int height, long timestampNanos) {
+                showFrame(sketch, width, height);
+            }
+
+            @Override
+            public void onError(RuntimeException e) {
+                Log.e(TAG, "Camera frame error: " + e.getMessage());
+            }
+        });
+        analysisExecutor = Executors.newSingleThreadExecutor();
+
+        if (ContextCompat.checkSelfPermission(this, Manifest.permission.CAMERA)
+                != PackageManager.PERMISSION_GRANTED) {
+            ActivityCompat.requestPermissions(this, new String[]{Manifest.permission.CAMERA},
+                    CAMERA_PERMISSION_REQUEST);
+        } else {
+            startCamera();
+        }
+    }
+
+    @Override
+    public void onRequestPermissionsResult(int requestCode, @NonNull String[] permissions, @NonNull int[] grantResults) {
+        super.onRequestPermissionsResult(requestCode, permissions, grantResults);
+        if (requestCode == CAMERA_PERMISSION_REQUEST) {
+            if (grantResults.length > 0 && grantResults[0] == PackageManager.PERMISSION_GRANTED) {
+                startCamera();
+            } else {
+                Toast.makeText(this, "Camera permission is needed for the live sketch", Toast.LENGTH_SHORT).show();
+                finish();
+            }
+        }
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+        mainHandler.postDelayed(updateStats, STATS_INTERVAL_MS);
+    }
+
+    @Override
+    protected void onPause() {
+        super.onPause();
+        mainHandler.removeCallbacks(updateStats);
+    }
+
+    private void startCamera() {
+        ListenableFuture<ProcessCameraProvider> future = ProcessCameraProvider.getInstance(this);
+        future.addListener(() -> {
+            try {
+                bindAnalysis(future.get());
+            } catch (Exception e) {
+                Log.e(TAG, "Camera error: " + e.getMessage());
+                Toast.makeText(this, "Camera unavailable", Toast.LENGTH_SHORT).show();
+                finish();
+            }
+        }, ContextCompat.getMainExecutor(this));
+    }
+
+    private void bindAnalysis(ProcessCameraProvider provider) {
+        analysis = new ImageAnalysis.Builder()
+                .setResolutionSelector(new ResolutionSelector.Builder()
+                        .setResolutionStrategy(new ResolutionStrategy(ANALYSIS_SIZE,
+                                ResolutionStrategy.FALLBACK_RULE_CLOSEST_LOWER_THEN_HIGHER))
+                        .build())
+                .setOutputImageFormat(ImageAnalysis.OUTPUT_IMAGE_FORMAT_YUV_420_888)
+                .setBackpressureStrategy(ImageAnalysis.STRATEGY_KEEP_ONLY_LATEST)
+                .build();
+        analysis.setAnalyzer(analysisExecutor, this::analyze);
+        provider.unbindAll();
+        // Unbound automatically when this activity is destroyed
+        provider.bindToLifecycle(this, CameraSelector.DEFAULT_BACK_CAMERA, analysis);
+    }
+
+    /** Hands the frame's luma to the processor and returns the image to the camera. */
+    private void analyze(ImageProxy image) {
+        try {
+            int radius = scaledRadius(image.getWidth(), image.getHeight());
+            if (radius != frameRadius) {
+                frameRadius = radius;
+                processor.setRadius(radius);
+            }
+            rotationDegrees = image.getImageInfo().getRotationDegrees();
+            ImageProxy.PlaneProxy luma = image.getPlanes()[0];
+            processor.offer(luma.getBuffer(), luma.getRowStride(), image.getWidth(), image.getHeight(),
+                    image.getImageInfo().getTimestamp());
+        } finally {
+            image.close();
+        }
+    }
+
+    private int scaledRadius(int width, int height) {
+        return Math.max(1, Math.round(strength * Math.max(width, height) / (float) REFERENCE_DIMENSION));
+    }
+
+    /** Processing thread; skipped while the screen has not taken the previous frame. */
+    private void showFrame(int[] sketch, int width, int height) {
+        if (!framePosted.compareAndSet(false, true)) return;
+
+        Bitmap bitmap = frameBitmaps[nextBitmap];
+        if (bitmap == null || bitmap.getWidth() != width || bitmap.getHeight() != height) {
+            // Not on screen: that is always the other one
+            if (bitmap != null) bitmap.recycle();
+            bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+            frameBitmaps[nextBitmap] = bitmap;
+        }
+        bitmap.setPixels(sketch, 0, width, 0, 0, width, height);
+        nextBitmap ^= 1;
+
+        Bitmap frame = bitmap;
+        int rotation = rotationDegrees;
+        mainHandler.post(() -> {
+            if (width != shownWidth || height != shownHeight || rotation != shownRotation) {
+                cameraView.setImageMatrix(fitRotated(width, height, rotation));
+                // Fitted again on the next frame if the view was not laid out yet
+                if (cameraView.getWidth() > 0) {
+                    shownWidth = width;
+                    shownHeight = height;
+                    shownRotation = rotation;
+                }
+            }
+            cameraView.setImageBitmap(frame);
+            framePosted.set(false);
+        });
+    }
+
+    /** Rotates a {@code width x height} frame upright and fits it centered in the view. */
+    private Matrix fitRotated(int width, int height, int rotation) {
+        int viewWidth = cameraView.getWidth();
+        int viewHeight = cameraView.getHeight();
+        boolean sideways = rotation % 180 != 0;
+        float uprightWidth = sideways ? height : width;
+        float uprightHeight = sideways ? width : height;
+        float scale = Math.min(viewWidth / uprightWidth, viewHeight / uprightHeight);
+
+        Matrix matrix = new Matrix();
+        matrix.postTranslate(-width / 2f, -height / 2f);
+        matrix.postRotate(rotation);
+        matrix.postScale(scale, scale);
+        matrix.postTranslate(viewWidth / 2f, viewHeight / 2f);
+        return matrix;
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        if (analysis != null) analysis.clearAnalyzer();
+        analysisExecutor.shutdown();
+        // Waits for the frame in progress, so no more frames are posted after this
+        processor.close();
+        mainHandler.removeCallbacksAndMessages(null);
+    }
+}
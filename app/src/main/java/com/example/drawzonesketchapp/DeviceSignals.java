@@ -0,0 +1,42 @@
+package com.example.drawzonesketchapp;
+
+import android.app.ActivityManager;
+import android.content.Context;
+import android.os.Build;
+import android.os.PowerManager;
+
+import com.example.drawzonesketchapp.sketch.QualityGovernor;
+
+/**
+ * The device as {@link QualityGovernor} sees it, read fresh for every decision. Thermal status
+ * only exists from Android 10; older devices always report {@link QualityGovernor#THERMAL_NONE}.
+ */
+class DeviceSignals implements QualityGovernor.Signals {
+
+    private final ActivityManager activityManager;
+    private final PowerManager powerManager;
+
+    DeviceSignals(Context context) {
+        activityManager = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        powerManager = (PowerManager) context.getSystemService(Context.POWER_SERVICE);
+    }
+
+    @Override
+    public int memoryClassMb() {
+        return activityManager.getMemoryClass();
+    }
+
+    @Override
+    public int thermalStatus() {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.Q || powerManager == null) {
+            return QualityGovernor.THERMAL_NONE;
+        }
+        // The same scale as the governor's constants
+        return powerManager.getCurrentThermalStatus();
+    }
+
+    @Override
+    public int cores() {
+        return Runtime.getRuntime().availableProcessors();
+    }
+}
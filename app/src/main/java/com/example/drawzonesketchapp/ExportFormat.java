@@ -0,0 +1,60 @@
+package com.example.drawzonesketchapp;
+
+import android.graphics.Bitmap;
+import android.os.Build;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/** The file formats a sketch can be saved in. */
+enum ExportFormat {
+    JPEG("JPEG", "image/jpeg", ".jpg", 90),
+    WEBP_LOSSY("WEBP", "image/webp", ".webp", 90),
+    WEBP_LOSSLESS("WEBP (lossless)", "image/webp", ".webp", 100),
+    PNG("PNG", "image/png", ".png", 100),
+    // 8-bit single-channel PNG: a sketch is gray, so this is a fraction of an RGB PNG
+    GRAY_PNG("Grayscale PNG", "image/png", ".png", 100);
+
+    final String label;
+    final String mimeType;
+    final String extension;
+    final int quality;
+
+    ExportFormat(String label, String mimeType, String extension, int quality) {
+        this.label = label;
+        this.mimeType = mimeType;
+        this.extension = extension;
+        this.quality = quality;
+    }
+
+    /** The platform encoder for this format, or null for {@link #GRAY_PNG}, which is written directly. */
+    @SuppressWarnings("deprecation")
+    Bitmap.CompressFormat compressFormat() {
+        switch (this) {
+            case JPEG:
+                return Bitmap.CompressFormat.JPEG;
+            case WEBP_LOSSY:
+                return Build.VERSION.SDK_INT >= Build.VERSION_CODES.R
+                        ? Bitmap.CompressFormat.WEBP_LOSSY : Bitmap.CompressFormat.WEBP;
+            case WEBP_LOSSLESS:
+                // Not offered below API 30; the old WEBP at quality 100 is the nearest there
+                return Build.VERSION.SDK_INT >= Build.VERSION_CODES.R
+                        ? Bitmap.CompressFormat.WEBP_LOSSLESS : Bitmap.CompressFormat.WEBP;
+            case PNG:
+                return Bitmap.CompressFormat.PNG;
+            default:
+                return null;
+        }
+    }
+
+    /** Formats this device can encode; lossless WEBP needs API 30. */
+    static List<ExportFormat> available() {
+        List<ExportFormat> formats = new ArrayList<>();
+        for (ExportFormat format : values()) {
+            if (format != WEBP_LOSSLESS || Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
+                formats.add(format);
+            }
+        }
+        return formats;
+    }
+}
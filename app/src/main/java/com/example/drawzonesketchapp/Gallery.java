@@ -0,0 +1,61 @@
+package com.example.drawzonesketchapp;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.net.Uri;
+import android.os.Build;
+import android.os.Environment;
+import android.provider.MediaStore;
+
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+
+/** Where saved sketches go: the PencilSketches album under Pictures. */
+final class Gallery {
+
+    private Gallery() {
+    }
+
+    /** A timestamped file name such as {@code SKETCH_20240101_120000<suffix>}. */
+    static String sketchFileName(String suffix) {
+        String timeStamp = new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.getDefault()).format(new Date());
+        return "SKETCH_" + timeStamp + suffix;
+    }
+
+    /**
+     * Creates an empty gallery entry to be written through {@code openOutputStream}. On API 29+
+     * it stays pending, hidden from other apps, until {@link #publish} or {@link #discard}.
+     */
+    static Uri insert(ContentResolver resolver, String displayName, String mimeType) throws IOException {
+        ContentValues values = new ContentValues();
+        values.put(MediaStore.Images.Media.DISPLAY_NAME, displayName);
+        values.put(MediaStore.Images.Media.MIME_TYPE, mimeType);
+        values.put(MediaStore.Images.Media.RELATIVE_PATH, Environment.DIRECTORY_PICTURES + "/PencilSketches");
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            values.put(MediaStore.Images.Media.IS_PENDING, 1);
+        }
+
+        Uri uri = resolver.insert(MediaStore.Images.Media.EXTERNAL_CONTENT_URI, values);
+        if (uri == null) throw new IOException("Cannot create gallery entry " + displayName);
+        return uri;
+    }
+
+    /**
+     * Makes a fully written entry visible. MediaStore indexes the entry itself, so no media
+     * scanner broadcast is needed.
+     */
+    static void publish(ContentResolver resolver, Uri uri) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            ContentValues values = new ContentValues();
+            values.put(MediaStore.Images.Media.IS_PENDING, 0);
+            resolver.update(uri, values, null, null);
+        }
+    }
+
+    /** Removes an entry whose write failed, so no broken image is left in the gallery. */
+    static void discard(ContentResolver resolver, Uri uri) {
+        resolver.delete(uri, null, null);
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.drawzonesketchapp;
+
+import android.graphics.BlendMode;
+import android.graphics.ColorMatrixColorFilter;
+import android.graphics.RenderEffect;
+import android.graphics.Shader;
+import android.os.Build;
+import android.view.View;
+
+import androidx.annotation.RequiresApi;
+
+/**
+ * Display-only pencil preview on the GPU, for API 31+.
+ * <p>
+ * The view keeps showing the source; a {@link RenderEffect} turns it into a sketch as it is
+ * drawn: a {@link ColorMatrixColorFilter} for grayscale, the same filter inverted and blurred,
+ * and a color dodge of the two. Nothing is read back, so it costs no CPU per frame, but the
+ * Gaussian blur only approximates the stack blur, so the exact sketch is still rendered once
+ * the user stops adjusting.
+ */
+final class GpuPreview {
+
+    // Same luma weights as the CPU kernels
+    private static final float[] GRAY = {
+            0.213f, 0.715f, 0.072f, 0, 0,
+            0.213f, 0.715f, 0.072f, 0, 0,
+            0.213f, 0.715f, 0.072f, 0, 0,
+            0, 0, 0, 1, 0,
+    };
+    private static final float[] INVERTED_GRAY = {
+            -0.213f, -0.715f, -0.072f, 0, 255,
+            -0.213f, -0.715f, -0.072f, 0, 255,
+            -0.213f, -0.715f, -0.072f, 0, 255,
+            0, 0, 0, 1, 0,
+    };
+    // A stack blur of radius r is close to a Gaussian with sigma r / 2
+    private static final float SIGMA_PER_RADIUS = 0.5f;
+
+    private GpuPreview() {
+    }
+
+    /** Shows {@code view}'s content as a pencil sketch with a blur of {@code radius} view pixels. */
+    @RequiresApi(Build.VERSION_CODES.S)
+    static void show(View view, float radius) {
+        float sigma = Math.max(0.5f, radius * SIGMA_PER_RADIUS);
+        RenderEffect gray = RenderEffect.createColorFilterEffect(new ColorMatrixColorFilter(GRAY));
+        RenderEffect blurredInverted = RenderEffect.createBlurEffect(sigma, sigma,
+                RenderEffect.createColorFilterEffect(new ColorMatrixColorFilter(INVERTED_GRAY)),
+                Shader.TileMode.CLAMP);
+        view.setRenderEffect(RenderEffect.createBlendModeEffect(gray, blurredInverted, BlendMode.COLOR_DODGE));
+    }
+
+    static void clear(View view) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S) view.setRenderEffect(null);
+    }
+}
@@ -0,0 +1,200 @@
+package com.example.drawzonesketchapp;
+
+import android.os.Debug;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.os.Trace;
+import android.util.Log;
+
+import com.example.drawzonesketchapp.sketch.Tracer;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Per-stage timing and memory for decode, conversion and save.
+ * <p>
+ * Each operation runs as a {@link Session}, a {@link Tracer} that the filter graph and the
+ * app report their stages to. Every stage becomes an {@link Trace} section for systrace and
+ * Perfetto and is measured for wall time, CPU time of the calling thread and bytes allocated
+ * by the whole process (ART's running total, so concurrent work is included). Finished
+ * sessions are appended to a CSV file in the app's files dir, which rolls over to one
+ * previous generation at {@link #MAX_FILE_BYTES}, and handed to a listener on the main thread
+ * for the debug overlay.
+ */
+class Instrumentation {
+
+    interface Listener {
+        /** Main thread, after each session finishes. */
+        void onSession(Session session);
+    }
+
+    /** One measured stage. Times and sizes include nested stages. */
+    static final class Stage {
+        final String name;
+        final int depth;
+        long wallNanos;
+        long cpuNanos;
+        long allocatedBytes;
+
+        private final long startWall;
+        private final long startCpu;
+        private final long startAllocated;
+
+        Stage(String name, int depth) {
+            this.name = name;
+            this.depth = depth;
+            this.startWall = SystemClock.elapsedRealtimeNanos();
+            this.startCpu = Debug.threadCpuTimeNanos();
+            this.startAllocated = bytesAllocated();
+        }
+
+        void finish() {
+            wallNanos = SystemClock.elapsedRealtimeNanos() - startWall;
+            cpuNanos = Debug.threadCpuTimeNanos() - startCpu;
+            allocatedBytes = Math.max(0, bytesAllocated() - startAllocated);
+        }
+    }
+
+    /**
+     * The stages of one operation on one image. Begin and end every stage on the thread that
+     * started the session.
+     */
+    final class Session implements Tracer {
+        final String name;
+        int width;
+        int height;
+        final int radius;
+        final List<Stage> stages = new ArrayList<>();
+        private final ArrayDeque<Stage> open = new ArrayDeque<>();
+
+        private Session(String name, int width, int height, int radius) {
+            this.name = name;
+            this.width = width;
+            this.height = height;
+            this.radius = radius;
+            begin(name);
+        }
+
+        @Override
+        public void begin(String section) {
+            // Trace section names are limited to 127 characters
+            Trace.beginSection(section.length() > 127 ? section.substring(0, 127) : section);
+            Stage stage = new Stage(section, open.size());
+            stages.add(stage);
+            open.push(stage);
+        }
+
+        @Override
+        public void end() {
+            open.pop().finish();
+            Trace.endSection();
+        }
+
+        /** For sessions that only learn the image size part way through, such as a decode. */
+        void setImageSize(int width, int height) {
+            this.width = width;
+            this.height = height;
+        }
+
+        /**
+         * Ends any stages still open, such as those an exception skipped past, then records
+         * the session. Call exactly once, in a {@code finally} block.
+         */
+        void finish() {
+            while (!open.isEmpty()) {
+                end();
+            }
+            append(this);
+            mainHandler.post(() -> listener.onSession(this));
+        }
+
+        /** Wall time of the whole session. */
+        long wallNanos() {
+            return stages.get(0).wallNanos;
+        }
+
+        /** One line per stage, indented by nesting, for the overlay. */
+        String summary() {
+            StringBuilder text = new StringBuilder(String.format(Locale.US, "%s %dx%d r=%d",
+                    name, width, height, radius));
+            for (Stage stage : stages) {
+                text.append('\n');
+                for (int i = 0; i < stage.depth; i++) {
+                    text.append("  ");
+                }
+                text.append(String.format(Locale.US, "%s %.1f ms (cpu %.1f) %d KB",
+                        shortName(stage.name), stage.wallNanos / 1e6, stage.cpuNanos / 1e6,
+                        stage.allocatedBytes / 1024));
+            }
+            return text.toString();
+        }
+    }
+
+    private static final String TAG = "PencilSketchApp";
+    private static final long MAX_FILE_BYTES = 256 * 1024;
+    private static final String HEADER =
+            "timeMillis,session,stage,depth,width,height,radius,wallMs,cpuMs,allocatedBytes\n";
+
+    private final File file;
+    private final File previous;
+    private final Listener listener;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    Instrumentation(File dir, Listener listener) {
+        this.file = new File(dir, "metrics.csv");
+        this.previous = new File(dir, "metrics.csv.1");
+        this.listener = listener;
+    }
+
+    /** Starts measuring {@code name} on the calling thread; pass 0 for unknown values. */
+    Session start(String name, int width, int height, int radius) {
+        return new Session(name, width, height, radius);
+    }
+
+    private synchronized void append(Session session) {
+        if (file.length() > MAX_FILE_BYTES) {
+            previous.delete();
+            if (!file.renameTo(previous)) file.delete();
+        }
+        boolean fresh = !file.exists();
+        try (Writer out = new FileWriter(file, true)) {
+            if (fresh) out.write(HEADER);
+            long now = System.currentTimeMillis();
+            for (Stage stage : session.stages) {
+                out.write(String.format(Locale.US, "%d,%s,%s,%d,%d,%d,%d,%.3f,%.3f,%d\n",
+                        now, session.name, stage.name.replace(',', ';'), stage.depth,
+                        session.width, session.height, session.radius,
+                        stage.wallNanos / 1e6, stage.cpuNanos / 1e6, stage.allocatedBytes));
+            }
+        } catch (IOException e) {
+            // Metrics are best effort and must never fail the operation they measure
+            Log.e(TAG, "Metrics write error: " + e.getMessage());
+        }
+    }
+
+    /** Drops the package from blur class names in node keys. */
+    private static String shortName(String stage) {
+        int dot = stage.lastIndexOf('.');
+        int colon = stage.lastIndexOf(':');
+        return dot > colon ? stage.substring(0, colon + 1) + stage.substring(dot + 1) : stage;
+    }
+
+    /** Total bytes ART has allocated in this process so far, or 0 if unavailable. */
+    private static long bytesAllocated() {
+        String stat = Debug.getRuntimeStat("art.gc.bytes-allocated");
+        if (stat == null) return 0;
+        try {
+            return Long.parseLong(stat);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package com.example.drawzonesketchapp;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+
+import com.example.drawzonesketchapp.sketch.CancellationToken;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Background work for the app, replacing {@code AsyncTask}.
+ * <p>
+ * CPU work (conversions) and I/O work (decode, save) run on separate bounded pools, so a save
+ * never queues behind a conversion. Every job gets a {@link CancellationToken} that the
+ * kernels poll; a cancelled job stops early and its result is never delivered — it is handed
+ * to {@link Callback#onDiscarded} instead so bitmaps can be released. A job cancelled while
+ * still queued is taken out of the queue, so a burst of superseded jobs cannot fill it. Errors
+ * such as running out of memory reach {@link Callback#onFailure} like exceptions do, so every
+ * job that is not cancelled ends in exactly one callback. {@link #shutdown()} cancels every job
+ * still queued, running or waiting to be delivered, since the kernels stop on their token and
+ * not on thread interrupts.
+ */
+class JobScheduler {
+
+    interface Job<T> {
+        /** Runs on a worker thread. */
+        T run(CancellationToken token) throws Exception;
+    }
+
+    interface Callback<T> {
+        /** Main thread, only if the job was not cancelled. */
+        void onSuccess(T result);
+
+        /** Main thread, only if the job was not cancelled; {@code e} may be an {@link Error}. */
+        void onFailure(Throwable e);
+
+        /** Main thread; a finished job whose result is no longer wanted. */
+        default void onDiscarded(T result) {
+        }
+    }
+
+    static final class Handle {
+        private final CancellationToken token = new CancellationToken();
+        private volatile Future<?> future;
+        private volatile ThreadPoolExecutor pool;
+        private volatile Set<Handle> live;
+
+        void cancel() {
+            token.cancel();
+            Future<?> f = future;
+            // Free the queue slot of a job that has not started; a running one sees the token
+            if (f != null && f.cancel(false)) pool.remove((Runnable) f);
+            live.remove(this);
+        }
+
+        boolean isCancelled() {
+            return token.isCancelled();
+        }
+    }
+
+    private static final int CPU_QUEUE_CAPACITY = 8;
+    private static final int IO_THREADS = 2;
+    private static final int IO_QUEUE_CAPACITY = 16;
+
+    private final ThreadPoolExecutor cpu;
+    private final ThreadPoolExecutor io;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    // Submitted and not yet delivered or cancelled
+    private final Set<Handle> live = Collections.newSetFromMap(new ConcurrentHashMap<>());
+    private final AtomicLong started = new AtomicLong();
+
+    JobScheduler() {
+        int cores = Runtime.getRuntime().availableProcessors();
+        cpu = newPool("sketch-cpu", Math.max(2, Math.min(cores, 4)), CPU_QUEUE_CAPACITY);
+        io = newPool("sketch-io", IO_THREADS, IO_QUEUE_CAPACITY);
+    }
+
+    <T> Handle submitCpu(Job<T> job, Callback<T> callback) {
+        return submit(cpu, job, callback);
+    }
+
+    <T> Handle submitIo(Job<T> job, Callback<T> callback) {
+        return submit(io, job, callback);
+    }
+
+    /** Jobs that have started running on either pool so far; a change means other work ran. */
+    long jobsStarted() {
+        return started.get();
+    }
+
+    /** Jobs running on either pool right now, the caller's own included. */
+    int jobsRunning() {
+        return cpu.getActiveCount() + io.getActiveCount();
+    }
+
+    void shutdown() {
+        for (Handle handle : live) {
+            handle.cancel();
+        }
+        cpu.shutdownNow();
+        io.shutdownNow();
+    }
+
+    private <T> Handle submit(ThreadPoolExecutor pool, Job<T> job, Callback<T> callback) {
+        Handle handle = new Handle();
+        handle.pool = pool;
+        handle.live = live;
+        live.add(handle);
+        try {
+            handle.future = pool.submit(() -> {
+                if (handle.isCancelled()) return;
+                started.incrementAndGet();
+                try {
+                    T result = job.run(handle.token);
+                    mainHandler.post(() -> {
+                        live.remove(handle);
+                        if (handle.isCancelled()) {
+                            callback.onDiscarded(result);
+                        } else {
+                            callback.onSuccess(result);
+                        }
+                    });
+                } catch (CancellationException e) {
+                    // Superseded; nothing to deliver
+                    live.remove(handle);
+                } catch (Throwable e) {
+                    mainHandler.post(() -> {
+                        live.remove(handle);
+                        if (!handle.isCancelled()) callback.onFailure(e);
+                    });
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            live.remove(handle);
+            callback.onFailure(e);
+        }
+        return handle;
+    }
+
+    private static ThreadPoolExecutor newPool(String name, int threads, int queueCapacity) {
+        AtomicInteger count = new AtomicInteger();
+        ThreadFactory factory = runnable -> {
+            Thread thread = new Thread(() -> {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                runnable.run();
+            }, name + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(queueCapacity), factory);
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+}
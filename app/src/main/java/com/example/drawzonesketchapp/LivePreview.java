@@ -0,0 +1,221 @@
+package com.example.drawzonesketchapp;
+
+import android.graphics.Bitmap;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.example.drawzonesketchapp.sketch.BufferPool;
+import com.example.drawzonesketchapp.sketch.CancellationToken;
+import com.example.drawzonesketchapp.sketch.SketchStyle;
+
+/**
+ * Interactive sketch preview.
+ * <p>
+ * While the user is adjusting, every request renders from a small cached proxy of the source
+ * (fitted to the view, capped at {@link #PROXY_MAX_DIMENSION}) so it fits in a frame. Once
+ * requests stop for {@link #REFINE_DELAY_MS}, the same parameters are rendered once more at
+ * full working resolution in the background. A newer request cancels everything older, down
+ * to the kernel currently running it. Each request carries its style to the renderer, so a
+ * style picked meanwhile cannot change a render halfway, and its style and strength to the
+ * listener, so a refined sketch is recorded with what produced it. Working planes and refined
+ * bitmaps come from the shared pools, so dragging the slider does not allocate per frame.
+ */
+class LivePreview {
+
+    interface Renderer {
+        /**
+         * Writes the {@code style} sketch of {@code source} into {@code out} as ARGB without
+         * modifying {@code source}. Called on a worker thread.
+         */
+        void render(SketchStyle style, int[] source, int[] out, int width, int height, int radius,
+                    CancellationToken token);
+    }
+
+    interface Listener {
+        /** A proxy render is ready. The bitmap is reused for every proxy frame. */
+        void onPreview(Bitmap proxy);
+
+        /**
+         * The full-resolution render of the requested {@code style} and {@code strength} is
+         * ready; the listener takes ownership of it and hands it back to the bitmap pool when done.
+         */
+        void onRefined(Bitmap sketch, SketchStyle style, int strength);
+    }
+
+    private static final String TAG = "PencilSketchApp";
+    private static final int PROXY_MAX_DIMENSION = 480;
+    private static final long REFINE_DELAY_MS = 300;
+
+    private final JobScheduler scheduler;
+    private final BufferPool buffers;
+    private final BitmapPool bitmaps;
+    private final Renderer renderer;
+    private final Listener listener;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    // Source state is replaced on the main thread; workers only read the pixel arrays
+    private int[] sourcePixels;
+    private int sourceWidth, sourceHeight;
+    private int[] proxyPixels;
+    private int proxyWidth, proxyHeight;
+    private Bitmap proxyBitmap;
+
+    private JobScheduler.Handle previewJob, refineJob;
+    private SketchStyle requestedStyle;
+    private int requestedStrength;
+    private int requestedRadius;
+    private final Runnable refine = this::startRefine;
+
+    LivePreview(JobScheduler scheduler, BufferPool buffers, BitmapPool bitmaps, Renderer renderer,
+                Listener listener) {
+        this.scheduler = scheduler;
+        this.buffers = buffers;
+        this.bitmaps = bitmaps;
+        this.renderer = renderer;
+        this.listener = listener;
+    }
+
+    /** Caches the source pixels and a proxy sized for a {@code viewWidth x viewHeight} view. */
+    void setSource(Bitmap source, int viewWidth, int viewHeight) {
+        cancel();
+
+        sourceWidth = source.getWidth();
+        sourceHeight = source.getHeight();
+        sourcePixels = new int[sourceWidth * sourceHeight];
+        source.getPixels(sourcePixels, 0, sourceWidth, 0, 0, sourceWidth, sourceHeight);
+
+        int maxDimension = PROXY_MAX_DIMENSION;
+        if (viewWidth > 0 && viewHeight > 0) {
+            maxDimension = Math.min(maxDimension, Math.max(viewWidth, viewHeight));
+        }
+        float scale = Math.min(1f, maxDimension / (float) Math.max(sourceWidth, sourceHeight));
+        proxyWidth = Math.max(1, Math.round(sourceWidth * scale));
+        proxyHeight = Math.max(1, Math.round(sourceHeight * scale));
+
+        Bitmap scaled = Bitmap.createScaledBitmap(source, proxyWidth, proxyHeight, true);
+        proxyPixels = new int[proxyWidth * proxyHeight];
+        scaled.getPixels(proxyPixels, 0, proxyWidth, 0, 0, proxyWidth, proxyHeight);
+        if (scaled != source) scaled.recycle();
+
+        if (proxyBitmap != null) proxyBitmap.recycle();
+        proxyBitmap = Bitmap.createBitmap(proxyWidth, proxyHeight, Bitmap.Config.ARGB_8888);
+    }
+
+    /**
+     * Renders {@code style} on the proxy now and refines when idle. {@code strength} is the
+     * user's setting, handed back with the result; {@code radius} is its blur in source pixels.
+     */
+    void request(SketchStyle style, int strength, int radius) {
+        if (sourcePixels == null) return;
+
+        cancel();
+        setRequest(style, strength, radius);
+
+        int[] proxy = proxyPixels;
+        int width = proxyWidth;
+        int height = proxyHeight;
+        int proxyRadius = Math.max(1, Math.round(radius * width / (float) sourceWidth));
+        previewJob = scheduler.submitCpu(token -> {
+            return render(style, proxy, width, height, proxyRadius, token);
+        }, new JobScheduler.Callback<int[]>() {
+            @Override
+            public void onSuccess(int[] pixels) {
+                if (proxyBitmap != null) {
+                    proxyBitmap.setPixels(pixels, 0, width, 0, 0, width, height);
+                    listener.onPreview(proxyBitmap);
+                }
+                buffers.release(pixels);
+            }
+
+            @Override
+            public void onFailure(Throwable e) {
+                // The refine pass reports conversion errors; a dropped proxy frame is harmless
+            }
+
+            @Override
+            public void onDiscarded(int[] pixels) {
+                buffers.release(pixels);
+            }
+        });
+        mainHandler.postDelayed(refine, REFINE_DELAY_MS);
+    }
+
+    /**
+     * Like {@link #request} but only schedules the full-resolution render, for when something
+     * else, such as {@link GpuPreview}, already shows an approximation.
+     */
+    void refine(SketchStyle style, int strength, int radius) {
+        if (sourcePixels == null) return;
+
+        cancel();
+        setRequest(style, strength, radius);
+        mainHandler.postDelayed(refine, REFINE_DELAY_MS);
+    }
+
+    private void setRequest(SketchStyle style, int strength, int radius) {
+        requestedStyle = style;
+        requestedStrength = strength;
+        requestedRadius = radius;
+    }
+
+    private void startRefine() {
+        SketchStyle style = requestedStyle;
+        int strength = requestedStrength;
+        int radius = requestedRadius;
+        int[] source = sourcePixels;
+        int width = sourceWidth;
+        int height = sourceHeight;
+        refineJob = scheduler.submitCpu(token -> {
+            int[] pixels = render(style, source, width, height, radius, token);
+            Bitmap sketch = bitmaps.acquire(width, height, Bitmap.Config.ARGB_8888);
+            sketch.setPixels(pixels, 0, width, 0, 0, width, height);
+            buffers.release(pixels);
+            return sketch;
+        }, new JobScheduler.Callback<Bitmap>() {
+            @Override
+            public void onSuccess(Bitmap sketch) {
+                listener.onRefined(sketch, style, strength);
+            }
+
+            @Override
+            public void onFailure(Throwable e) {
+                Log.e(TAG, "Preview refine error: " + e.getMessage());
+            }
+
+            @Override
+            public void onDiscarded(Bitmap sketch) {
+                bitmaps.release(sketch);
+            }
+        });
+    }
+
+    /**
+     * Renders from the shared, read-only source into a pooled buffer and returns the sketch
+     * as ARGB pixels.
+     */
+    private int[] render(SketchStyle style, int[] source, int width, int height, int radius,
+                         CancellationToken token) {
+        int[] pixels = buffers.acquire(width * height);
+        renderer.render(style, source, pixels, width, height, radius, token);
+        return pixels;
+    }
+
+    /** Cancels any queued or in-flight render, including the pending refine. */
+    void cancel() {
+        mainHandler.removeCallbacks(refine);
+        if (previewJob != null) previewJob.cancel();
+        if (refineJob != null) refineJob.cancel();
+        previewJob = refineJob = null;
+    }
+
+    void release() {
+        cancel();
+        if (proxyBitmap != null) {
+            proxyBitmap.recycle();
+            proxyBitmap = null;
+        }
+        sourcePixels = null;
+        proxyPixels = null;
+    }
+}
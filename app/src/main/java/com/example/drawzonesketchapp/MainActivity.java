@@ -1,70 +1,353 @@
 package com.example.drawzonesketchapp;
 
 import android.Manifest;
-import android.content.ContentValues;
+import android.content.ClipData;
 import android.content.Intent;
 import android.content.pm.PackageManager;
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
-import android.graphics.Canvas;
-import android.graphics.Color;
-import android.graphics.ColorMatrix;
-import android.graphics.ColorMatrixColorFilter;
-import android.graphics.Paint;
 import android.net.Uri;
-import android.os.AsyncTask;
+import android.os.Build;
 import android.os.Bundle;
-import android.os.Environment;
+import android.os.SystemClock;
 import android.provider.MediaStore;
 import android.util.Log;
 import android.view.View;
 import android.widget.Button;
 import android.widget.ImageView;
+import android.widget.LinearLayout;
 import android.widget.ProgressBar;
+import android.widget.SeekBar;
+import android.widget.TextView;
 import android.widget.Toast;
 
 import androidx.annotation.NonNull;
+import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.core.app.ActivityCompat;
 import androidx.core.content.ContextCompat;
-
+import androidx.core.splashscreen.SplashScreen;
+
+import com.example.drawzonesketchapp.sketch.BatchPipeline;
+import com.example.drawzonesketchapp.sketch.Blur;
+import com.example.drawzonesketchapp.sketch.BufferPool;
+import com.example.drawzonesketchapp.sketch.CancellationToken;
+import com.example.drawzonesketchapp.sketch.FilterGraph;
+import com.example.drawzonesketchapp.sketch.GrayPngWriter;
+import com.example.drawzonesketchapp.sketch.MipPyramid;
+import com.example.drawzonesketchapp.sketch.QualityGovernor;
+import com.example.drawzonesketchapp.sketch.SketchStyle;
+import com.example.drawzonesketchapp.sketch.SketchStyles;
+import com.example.drawzonesketchapp.sketch.StackBlur;
+import com.example.drawzonesketchapp.sketch.StripSink;
+import com.example.drawzonesketchapp.sketch.StripSketcher;
+import com.example.drawzonesketchapp.sketch.Tracer;
+import com.example.drawzonesketchapp.sketch.Warmup;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.OutputStream;
-import java.text.SimpleDateFormat;
-import java.util.Date;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Locale;
 
 public class MainActivity extends AppCompatActivity {
 
     private static final int PICK_IMAGE_REQUEST = 1;
     private static final int STORAGE_PERMISSION_REQUEST = 2;
+    private static final int PICK_BATCH_REQUEST = 3;
+    private static final int SAVE_PERMISSION_REQUEST = 4;
+    private static final int BATCH_PERMISSION_REQUEST = 5;
+    private static final int EXPORT_PERMISSION_REQUEST = 6;
     private static final String TAG = "PencilSketchApp";
-    private static final int MAX_IMAGE_DIMENSION = 1000;
+    // Strength is in pixels of an image this size; batches are converted at this size
+    private static final int REFERENCE_DIMENSION = 1000;
+    private static final int BLUR_RADIUS = 5; // Default strength, adjustable with seekStrength
+    // Each pool, and the in-memory result cache, may hold up to this fraction of the heap
+    private static final int POOL_HEAP_DIVISOR = 8;
+    private static final long DISK_CACHE_BYTES = 64L * 1024 * 1024;
+    // Undo steps may keep up to this fraction of the heap before spilling to disk
+    private static final int HISTORY_HEAP_DIVISOR = 32;
+    private static final int THUMBNAIL_MAX_DIMENSION = 160;
+    private static final int THUMBNAIL_SIZE_DP = 72;
+    private static final String STATE_SOURCE_URI = "sourceUri";
+    private static final String STATE_SOURCE_KEY = "sourceKey";
+    private static final String STATE_WORKING_DIMENSION = "workingDimension";
+    private static final String STATE_RADIUS = "blurRadius";
+    private static final String STATE_SHOWING_SKETCH = "showingSketch";
+    private static final String STATE_STYLE = "style";
+    private static final String STATE_EXPORT_FORMAT = "exportFormat";
+    // The splash screen waits for the engine warm-up, but never longer than this
+    private static final long MAX_SPLASH_MS = 1000;
+
+    /** A decoded source together with the cache key it was decoded under. */
+    private static final class LoadedImage {
+        final String key;
+        final Bitmap bitmap;
+        final int maxDimension;
+
+        LoadedImage(String key, Bitmap bitmap, int maxDimension) {
+            this.key = key;
+            this.bitmap = bitmap;
+            this.maxDimension = maxDimension;
+        }
+    }
 
     private ImageView imageView;
-    private Button btnSelect, btnConvert, btnSave;
+    private Button btnSelect, btnConvert, btnCamera, btnSave, btnBatch, btnUndo, btnRedo;
+    private TextView txtStatus, txtMetrics;
+    private View styleScroll;
+    private LinearLayout styleStrip;
     private ProgressBar progressBar;
+    private SeekBar seekStrength;
     private Bitmap originalBitmap, sketchBitmap;
+    private Uri sourceUri;
+    private String sourceKey;
+    // Source whose full-resolution sketch is in the zoom pyramid, if any
+    private String zoomSourceKey;
+    private int blurRadius = BLUR_RADIUS;
+    // Longest side the current image was decoded to fit, as the governor chose it
+    private int workingDimension = REFERENCE_DIMENSION;
+    // The governor's latest decision; preview workers read its thread count
+    private volatile QualityGovernor.Decision quality;
+    // Read by preview workers, changed on the main thread
+    private volatile SketchStyle style = SketchStyles.PENCIL;
+    private JobScheduler jobs;
+    private LivePreview livePreview;
+    private JobScheduler.Handle decodeJob, conversionJob, batchJob, thumbnailJob, exportJob;
+    // Picked for a batch while the write permission is being asked for
+    private List<Uri> pendingBatch;
+    // Sketches being written out go back to the pool only once their save has finished
+    private final List<Bitmap> savingBitmaps = new ArrayList<>();
+    private ExportFormat exportFormat = ExportFormat.JPEG;
+    // Once per process; a recreated activity finds the engine already warm. Main thread only.
+    private static boolean engineWarm;
+
+    // Planes and bitmaps are reused across conversions instead of being reallocated each time
+    private final BufferPool buffers = new BufferPool(Runtime.getRuntime().maxMemory() / POOL_HEAP_DIVISOR);
+    private final BitmapPool bitmaps = new BitmapPool(Runtime.getRuntime().maxMemory() / POOL_HEAP_DIVISOR);
+
+    private Backends backends;
+    private SampledDecoder decoder;
+    private BatchConverter batchConverter;
+    private SketchCache sketchCache;
+    private SketchExporter exporter;
+    private OffHeapSketcher offHeapSketcher;
+    private Instrumentation instrumentation;
+    private SketchHistory history;
+    private QualityGovernor governor;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
+        long launched = SystemClock.uptimeMillis();
+        SplashScreen splash = SplashScreen.installSplashScreen(this);
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_main);
+        splash.setKeepOnScreenCondition(() -> !engineWarm && SystemClock.uptimeMillis() - launched < MAX_SPLASH_MS);
 
         imageView = findViewById(R.id.imageView);
         btnSelect = findViewById(R.id.btnSelect);
         btnConvert = findViewById(R.id.btnConvert);
+        btnCamera = findViewById(R.id.btnCamera);
         btnSave = findViewById(R.id.btnSave);
+        btnBatch = findViewById(R.id.btnBatch);
+        btnUndo = findViewById(R.id.btnUndo);
+        btnRedo = findViewById(R.id.btnRedo);
+        txtStatus = findViewById(R.id.txtStatus);
+        txtMetrics = findViewById(R.id.txtMetrics);
+        styleScroll = findViewById(R.id.styleScroll);
+        styleStrip = findViewById(R.id.styleStrip);
         progressBar = findViewById(R.id.progressBar);
+        seekStrength = findViewById(R.id.seekStrength);
 
         btnSelect.setOnClickListener(v -> checkPermissionAndOpenGallery());
         btnConvert.setOnClickListener(v -> convertImageToSketch());
-        btnSave.setOnClickListener(v -> saveImageToGallery());
+        btnCamera.setOnClickListener(v -> startActivity(new Intent(this, CameraSketchActivity.class)
+                .putExtra(CameraSketchActivity.EXTRA_RADIUS, blurRadius)));
+        btnSave.setOnClickListener(v -> chooseExportFormat());
+        btnSave.setOnLongClickListener(v -> {
+            exportFullResolution();
+            return true;
+        });
+        imageView.setOnClickListener(v -> {
+            if (sketchBitmap != null && sourceKey != null && sourceKey.equals(zoomSourceKey)) {
+                startActivity(new Intent(this, SketchViewerActivity.class)
+                        .putExtra(SketchViewerActivity.EXTRA_PYRAMID_DIR, zoomDir().getAbsolutePath()));
+            }
+        });
+        imageView.setOnLongClickListener(v -> {
+            txtMetrics.setVisibility(txtMetrics.getVisibility() == View.VISIBLE ? View.GONE : View.VISIBLE);
+            return true;
+        });
+        btnUndo.setOnClickListener(v -> {
+            cancelConversion();
+            history.undo();
+        });
+        btnRedo.setOnClickListener(v -> {
+            cancelConversion();
+            history.redo();
+        });
+        btnBatch.setOnClickListener(v -> {
+            if (batchJob != null) {
+                cancelBatch();
+            } else {
+                openGalleryForBatch();
+            }
+        });
+
+        jobs = new JobScheduler();
+        backends = new Backends(this, buffers);
+        governor = new QualityGovernor(new DeviceSignals(this));
+        quality = governor.decide();
+        decoder = new SampledDecoder(getContentResolver(), bitmaps);
+        batchConverter = new BatchConverter(this, buffers, bitmaps);
+        exporter = new SketchExporter(getContentResolver(), buffers);
+        offHeapSketcher = new OffHeapSketcher(this, buffers);
+        instrumentation = new Instrumentation(getFilesDir(), session -> txtMetrics.setText(session.summary()));
+        warmUpEngine();
+        sketchCache = new SketchCache(new File(getCacheDir(), "sketches"),
+                (int) Math.min(Integer.MAX_VALUE, Runtime.getRuntime().maxMemory() / POOL_HEAP_DIVISOR),
+                DISK_CACHE_BYTES, jobs);
+        history = new SketchHistory(new File(getCacheDir(), "history"),
+                Runtime.getRuntime().maxMemory() / HISTORY_HEAP_DIVISOR, jobs, buffers, bitmaps,
+                new SketchHistory.Listener() {
+                    @Override
+                    public void onRestored(Bitmap sketch, SketchHistory.Edit edit) {
+                        style = edit.style;
+                        highlightSelectedStyle();
+                        seekStrength.setProgress(edit.radius);
+                        showSketch(sketch);
+                    }
+
+                    @Override
+                    public void onChanged(boolean canUndo, boolean canRedo) {
+                        btnUndo.setEnabled(canUndo);
+                        btnRedo.setEnabled(canRedo);
+                    }
+                });
+        livePreview = new LivePreview(jobs, buffers, bitmaps,
+                (sketchStyle, source, out, width, height, radius, token) ->
+                        renderStyle(sketchStyle, source, out, width, height, radius, Tracer.NONE, token),
+                new LivePreview.Listener() {
+                    @Override
+                    public void onPreview(Bitmap proxy) {
+                        GpuPreview.clear(imageView);
+                        imageView.setImageBitmap(proxy);
+                    }
+
+                    @Override
+                    public void onRefined(Bitmap sketch, SketchStyle sketchStyle, int strength) {
+                        // Recorded with what it was rendered from, not whatever is selected now
+                        showNewSketch(sketch, sketchStyle, strength);
+                    }
+                });
+        seekStrength.setOnSeekBarChangeListener(new SeekBar.OnSeekBarChangeListener() {
+            @Override
+            public void onProgressChanged(SeekBar seekBar, int progress, boolean fromUser) {
+                blurRadius = Math.max(1, progress);
+                if (fromUser && originalBitmap != null) {
+                    if (style == SketchStyles.PENCIL && Build.VERSION.SDK_INT >= Build.VERSION_CODES.S) {
+                        // Drawn by the GPU straight from the source; only the final render runs on the CPU
+                        imageView.setImageBitmap(originalBitmap);
+                        GpuPreview.show(imageView, workingRadius(blurRadius) * displayScale());
+                        livePreview.refine(style, blurRadius, workingRadius(blurRadius));
+                    } else {
+                        livePreview.request(style, blurRadius, workingRadius(blurRadius));
+                    }
+                }
+            }
+
+            @Override
+            public void onStartTrackingTouch(SeekBar seekBar) {
+            }
+
+            @Override
+            public void onStopTrackingTouch(SeekBar seekBar) {
+            }
+        });
 
         btnConvert.setEnabled(false);
         btnSave.setEnabled(false);
         progressBar.setVisibility(View.GONE);
+
+        if (savedInstanceState != null) {
+            // Recreated after rotation or process death; the cache makes this instant
+            seekStrength.setProgress(savedInstanceState.getInt(STATE_RADIUS, BLUR_RADIUS));
+            style = SketchStyles.named(savedInstanceState.getString(STATE_STYLE));
+            String format = savedInstanceState.getString(STATE_EXPORT_FORMAT);
+            if (format != null) exportFormat = ExportFormat.valueOf(format);
+            String uri = savedInstanceState.getString(STATE_SOURCE_URI);
+            if (uri != null) {
+                // Decoded at the same size again, so the cached source still matches its key
+                loadImage(Uri.parse(uri), savedInstanceState.getString(STATE_SOURCE_KEY),
+                        savedInstanceState.getInt(STATE_WORKING_DIMENSION, REFERENCE_DIMENSION),
+                        savedInstanceState.getBoolean(STATE_SHOWING_SKETCH, false));
+            }
+        }
+    }
+
+    @Override
+    protected void onSaveInstanceState(@NonNull Bundle outState) {
+        super.onSaveInstanceState(outState);
+        outState.putInt(STATE_RADIUS, blurRadius);
+        outState.putString(STATE_STYLE, style.name());
+        outState.putString(STATE_EXPORT_FORMAT, exportFormat.name());
+        if (sourceUri != null) {
+            outState.putString(STATE_SOURCE_URI, sourceUri.toString());
+            outState.putString(STATE_SOURCE_KEY, sourceKey);
+            outState.putInt(STATE_WORKING_DIMENSION, workingDimension);
+            outState.putBoolean(STATE_SHOWING_SKETCH, sketchBitmap != null);
+        }
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        sketchCache.onTrimMemory(level);
+        if (level >= TRIM_MEMORY_RUNNING_LOW) {
+            // Pools only save allocations; give their memory back first
+            bitmaps.clear();
+            buffers.clear();
+        }
+    }
+
+    /**
+     * Runs a tiny conversion through every style while the splash screen is up, so the first
+     * real one finds its classes loaded and its kernels compiled. Blur calibration waits for
+     * it, so that it neither competes with it for the cores nor times cold kernels.
+     */
+    private void warmUpEngine() {
+        if (engineWarm) {
+            backends.calibrateIfNeeded(jobs);
+            return;
+        }
+        List<Blur> blurs = Arrays.asList(blurFor(BLUR_RADIUS), StackBlur.SERIAL);
+        jobs.submitCpu(token -> {
+            Instrumentation.Session session = instrumentation.start("warmup", Warmup.SIZE, Warmup.SIZE, BLUR_RADIUS);
+            try {
+                Warmup.run(blurs, BLUR_RADIUS, buffers, token);
+            } finally {
+                session.finish();
+            }
+            return null;
+        }, new JobScheduler.Callback<Void>() {
+            @Override
+            public void onSuccess(Void result) {
+                engineWarm = true;
+                reportFullyDrawn();
+                backends.calibrateIfNeeded(jobs);
+            }
+
+            @Override
+            public void onFailure(Throwable e) {
+                // Only costs the first conversion some speed; never hold the splash for it
+                Log.e(TAG, "Warm-up error: " + e.getMessage());
+                engineWarm = true;
+                reportFullyDrawn();
+                backends.calibrateIfNeeded(jobs);
+            }
+        });
     }
 
     private void checkPermissionAndOpenGallery() {
@@ -81,13 +364,51 @@ public class MainActivity extends AppCompatActivity {
     @Override
     public void onRequestPermissionsResult(int requestCode, @NonNull String[] permissions, @NonNull int[] grantResults) {
         super.onRequestPermissionsResult(requestCode, permissions, grantResults);
+        boolean granted = grantResults.length > 0 && grantResults[0] == PackageManager.PERMISSION_GRANTED;
         if (requestCode == STORAGE_PERMISSION_REQUEST) {
-            if (grantResults.length > 0 && grantResults[0] == PackageManager.PERMISSION_GRANTED) {
+            if (granted) {
                 openGallery();
             } else {
                 Toast.makeText(this, "Permission denied. Cannot access gallery.", Toast.LENGTH_SHORT).show();
             }
+        } else if (requestCode == SAVE_PERMISSION_REQUEST) {
+            if (granted) {
+                saveImageToGallery(exportFormat);
+            } else {
+                Toast.makeText(this, "Permission denied. Cannot save sketches.", Toast.LENGTH_SHORT).show();
+            }
+        } else if (requestCode == EXPORT_PERMISSION_REQUEST) {
+            if (granted) {
+                exportFullResolution();
+            } else {
+                Toast.makeText(this, "Permission denied. Cannot save sketches.", Toast.LENGTH_SHORT).show();
+            }
+        } else if (requestCode == BATCH_PERMISSION_REQUEST) {
+            List<Uri> uris = pendingBatch;
+            pendingBatch = null;
+            if (granted && uris != null) {
+                startBatch(uris);
+            } else if (!granted) {
+                Toast.makeText(this, "Permission denied. Cannot save sketches.", Toast.LENGTH_SHORT).show();
+            }
+        }
+    }
+
+    /**
+     * Asks for the permission to write to the gallery where Android still has one, and returns
+     * whether it has to be waited for. From Android 10 MediaStore inserts need no permission,
+     * and from 13 this one is never granted, so only older versions ask.
+     */
+    private boolean awaitWritePermission(int requestCode) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) return false;
+        if (ContextCompat.checkSelfPermission(this, Manifest.permission.WRITE_EXTERNAL_STORAGE)
+                == PackageManager.PERMISSION_GRANTED) {
+            return false;
         }
+        ActivityCompat.requestPermissions(this,
+                new String[]{Manifest.permission.WRITE_EXTERNAL_STORAGE},
+                requestCode);
+        return true;
     }
 
     private void openGallery() {
@@ -101,464 +422,548 @@ public class MainActivity extends AppCompatActivity {
         }
     }
 
+    private void openGalleryForBatch() {
+        try {
+            Intent intent = new Intent(Intent.ACTION_GET_CONTENT);
+            intent.setType("image/*");
+            intent.putExtra(Intent.EXTRA_ALLOW_MULTIPLE, true);
+            startActivityForResult(Intent.createChooser(intent, "Select Pictures"), PICK_BATCH_REQUEST);
+        } catch (Exception e) {
+            Log.e(TAG, "Error opening gallery: " + e.getMessage());
+            showError("Error opening gallery");
+        }
+    }
+
     @Override
     protected void onActivityResult(int requestCode, int resultCode, Intent data) {
         super.onActivityResult(requestCode, resultCode, data);
 
         if (requestCode == PICK_IMAGE_REQUEST && resultCode == RESULT_OK && data != null && data.getData() != null) {
-            Uri uri = data.getData();
-            try {
-                recycleBitmap(originalBitmap);
-                recycleBitmap(sketchBitmap);
-
-                originalBitmap = decodeSampledBitmapFromUri(uri, MAX_IMAGE_DIMENSION, MAX_IMAGE_DIMENSION);
-                if (originalBitmap != null) {
-                    imageView.setImageBitmap(originalBitmap);
-                    btnConvert.setEnabled(true);
-                    btnSave.setEnabled(false);
-                } else {
-                    showError("Failed to load image");
+            loadImage(data.getData(), null, decideQuality("load").maxDimension, false);
+        } else if (requestCode == PICK_BATCH_REQUEST && resultCode == RESULT_OK && data != null) {
+            List<Uri> uris = new ArrayList<>();
+            ClipData clip = data.getClipData();
+            if (clip != null) {
+                for (int i = 0; i < clip.getItemCount(); i++) {
+                    uris.add(clip.getItemAt(i).getUri());
                 }
-            } catch (Exception e) {
-                Log.e(TAG, "Error loading image: " + e.getMessage());
-                showError("Error loading image");
+            } else if (data.getData() != null) {
+                uris.add(data.getData());
             }
+            if (!uris.isEmpty()) startBatch(uris);
         }
     }
 
-    private Bitmap decodeSampledBitmapFromUri(Uri uri, int reqWidth, int reqHeight) throws IOException {
-        InputStream inputStream = getContentResolver().openInputStream(uri);
-
-        BitmapFactory.Options options = new BitmapFactory.Options();
-        options.inJustDecodeBounds = true;
-        BitmapFactory.decodeStream(inputStream, null, options);
-        if (inputStream != null) inputStream.close();
-
-        options.inSampleSize = calculateInSampleSize(options, reqWidth, reqHeight);
-        options.inJustDecodeBounds = false;
-        options.inPreferredConfig = Bitmap.Config.RGB_565; // More memory efficient
+    private void startBatch(List<Uri> uris) {
+        if (awaitWritePermission(BATCH_PERMISSION_REQUEST)) {
+            // Started again from onRequestPermissionsResult
+            pendingBatch = uris;
+            return;
+        }
 
-        inputStream = getContentResolver().openInputStream(uri);
-        Bitmap bitmap = BitmapFactory.decodeStream(inputStream, null, options);
-        if (inputStream != null) inputStream.close();
+        SketchStyle batchStyle = style;
+        ExportFormat batchFormat = exportFormat;
+        int radius = blurRadius;
+        // Each worker converts a whole image, so the blur itself stays on one thread
+        Blur blur = backends.serialBlurFor(radius);
+        btnBatch.setText("Cancel Batch");
+        txtStatus.setText("Batch 0/" + uris.size());
+        txtStatus.setVisibility(View.VISIBLE);
+        batchJob = jobs.submitIo(
+                token -> batchConverter.convert(uris, REFERENCE_DIMENSION, batchStyle, radius, blur, batchFormat,
+                        progress -> txtStatus.setText(formatBatchProgress(progress)), token),
+                new JobScheduler.Callback<BatchPipeline.Stats>() {
+                    @Override
+                    public void onSuccess(BatchPipeline.Stats stats) {
+                        finishBatch(formatBatchProgress(stats));
+                        Toast.makeText(MainActivity.this,
+                                String.format(Locale.US, "Saved %d sketches (%.1f images/s)",
+                                        stats.completed, stats.imagesPerSecond()),
+                                Toast.LENGTH_SHORT).show();
+                    }
 
-        return bitmap;
+                    @Override
+                    public void onFailure(Throwable e) {
+                        finishBatch("Batch failed");
+                        Log.e(TAG, "Batch error: " + e.getMessage());
+                        showError("Batch conversion failed");
+                    }
+                });
     }
 
-    private int calculateInSampleSize(BitmapFactory.Options options, int reqWidth, int reqHeight) {
-        final int height = options.outHeight;
-        final int width = options.outWidth;
-        int inSampleSize = 1;
-
-        if (height > reqHeight || width > reqWidth) {
-            final int halfHeight = height / 2;
-            final int halfWidth = width / 2;
-
-            while ((halfHeight / inSampleSize) >= reqHeight
-                    && (halfWidth / inSampleSize) >= reqWidth) {
-                inSampleSize *= 2;
-            }
+    private void cancelBatch() {
+        if (batchJob != null) {
+            batchJob.cancel();
+            finishBatch("Batch cancelled");
         }
-        return inSampleSize;
     }
 
-    private void convertImageToSketch() {
-        if (originalBitmap == null) {
-            showError("No image selected");
-            return;
-        }
-
-        new SketchConversionTask().execute(originalBitmap);
+    private void finishBatch(String status) {
+        batchJob = null;
+        btnBatch.setText("Convert Album");
+        txtStatus.setText(status);
     }
 
-    private class SketchConversionTask extends AsyncTask<Bitmap, Void, Bitmap> {
-        @Override
-        protected void onPreExecute() {
-            btnConvert.setEnabled(false);
-            progressBar.setVisibility(View.VISIBLE);
-        }
-
-        @Override
-        protected Bitmap doInBackground(Bitmap... bitmaps) {
-            try {
-                return createSketch(bitmaps[0]);
-            } catch (Exception e) {
-                Log.e(TAG, "Conversion error: " + e.getMessage());
-                return null;
-            }
-        }
-
-        @Override
-        protected void onPostExecute(Bitmap result) {
-            progressBar.setVisibility(View.GONE);
-            btnConvert.setEnabled(true);
-
-            if (result != null) {
-                recycleBitmap(sketchBitmap);
-                sketchBitmap = result;
-                imageView.setImageBitmap(sketchBitmap);
-                btnSave.setEnabled(true);
-                Toast.makeText(MainActivity.this, "Conversion complete", Toast.LENGTH_SHORT).show();
-            } else {
-                showError("Conversion failed");
-            }
-        }
+    private static String formatBatchProgress(BatchPipeline.Stats stats) {
+        String progress = String.format(Locale.US, "Batch %d/%d, %.1f images/s",
+                stats.completed + stats.failed, stats.total, stats.imagesPerSecond());
+        return stats.failed > 0 ? progress + ", " + stats.failed + " failed" : progress;
     }
 
-    private Bitmap createSketch(Bitmap original) {
-        // Step 1: Convert to grayscale (optimized)
-        Bitmap grayscale = toGrayscale(original);
-        if (grayscale == null) return null;
-
-        // Step 2: Invert colors
-        Bitmap inverted = invert(grayscale);
-        recycleBitmap(grayscale);
-        if (inverted == null) return null;
-
-        // Step 3: Apply fast blur
-        Bitmap blurred = fastBlur(inverted, 5); // Reduced radius for performance
-        recycleBitmap(inverted);
-        if (blurred == null) return null;
+    /**
+     * Loads {@code uri} from the cache or by decoding it to fit {@code maxDimension}.
+     * {@code knownKey} is the cache key from a previous instance, which avoids asking the
+     * provider again; pass null for a new pick. With {@code convert}, the sketch is shown as
+     * soon as the image is in.
+     */
+    private void loadImage(Uri uri, String knownKey, int maxDimension, boolean convert) {
+        // A newer pick supersedes whatever is still decoding or converting
+        if (decodeJob != null) decodeJob.cancel();
+        cancelConversion();
+
+        progressBar.setVisibility(View.VISIBLE);
+        decodeJob = jobs.submitIo(
+                token -> {
+                    Instrumentation.Session session = instrumentation.start("load", 0, 0, 0);
+                    try {
+                        session.begin("key");
+                        String key = knownKey != null ? knownKey
+                                : SketchCache.sourceKey(getContentResolver(), uri, maxDimension);
+                        session.end();
+                        session.begin("cache");
+                        Bitmap bitmap = sketchCache.get(key);
+                        session.end();
+                        if (bitmap == null) {
+                            session.begin("decode");
+                            bitmap = decoder.decode(uri, maxDimension, maxDimension);
+                            session.end();
+                            if (bitmap != null) sketchCache.put(key, bitmap);
+                        }
+                        if (bitmap != null) session.setImageSize(bitmap.getWidth(), bitmap.getHeight());
+                        return new LoadedImage(key, bitmap, maxDimension);
+                    } finally {
+                        session.finish();
+                    }
+                },
+                new JobScheduler.Callback<LoadedImage>() {
+                    @Override
+                    public void onSuccess(LoadedImage loaded) {
+                        progressBar.setVisibility(View.GONE);
+                        Bitmap bitmap = loaded.bitmap;
+                        if (bitmap == null) {
+                            showError("Failed to load image");
+                            return;
+                        }
+                        Bitmap previousOriginal = originalBitmap;
+                        Bitmap previousSketch = sketchBitmap;
+                        sketchBitmap = null;
+
+                        originalBitmap = bitmap;
+                        sourceUri = uri;
+                        sourceKey = loaded.key;
+                        workingDimension = loaded.maxDimension;
+                        GpuPreview.clear(imageView);
+                        imageView.setImageBitmap(originalBitmap);
+                        recycleBitmap(previousOriginal);
+                        recycleBitmap(previousSketch);
+                        livePreview.setSource(originalBitmap, imageView.getWidth(), imageView.getHeight());
+                        renderStyleThumbnails();
+                        history.clear();
+                        btnConvert.setEnabled(true);
+                        seekStrength.setEnabled(true);
+                        btnSave.setEnabled(false);
+                        if (convert) convertImageToSketch();
+                    }
 
-        // Step 4: Color dodge blend
-        Bitmap sketch = colorDodge(original, blurred);
-        recycleBitmap(blurred);
+                    @Override
+                    public void onFailure(Throwable e) {
+                        progressBar.setVisibility(View.GONE);
+                        Log.e(TAG, "Error loading image: " + e.getMessage());
+                        showError("Error loading image");
+                    }
 
-        return sketch;
+                    @Override
+                    public void onDiscarded(LoadedImage loaded) {
+                        recycleBitmap(loaded.bitmap);
+                    }
+                });
     }
 
-    private Bitmap toGrayscale(Bitmap original) {
-        try {
-            Bitmap grayscale = Bitmap.createBitmap(original.getWidth(), original.getHeight(), Bitmap.Config.RGB_565);
-            Canvas canvas = new Canvas(grayscale);
-            Paint paint = new Paint();
-
-            ColorMatrix colorMatrix = new ColorMatrix();
-            colorMatrix.setSaturation(0);
-            paint.setColorFilter(new ColorMatrixColorFilter(colorMatrix));
-
-            canvas.drawBitmap(original, 0, 0, paint);
-            return grayscale;
-        } catch (Exception e) {
-            Log.e(TAG, "Grayscale error: " + e.getMessage());
-            return null;
+    private void convertImageToSketch() {
+        if (originalBitmap == null) {
+            showError("No image selected");
+            return;
         }
-    }
 
-    private Bitmap invert(Bitmap original) {
-        try {
-            Bitmap inverted = Bitmap.createBitmap(original.getWidth(), original.getHeight(), Bitmap.Config.RGB_565);
-            int[] pixels = new int[original.getWidth() * original.getHeight()];
-            original.getPixels(pixels, 0, original.getWidth(), 0, 0, original.getWidth(), original.getHeight());
-
-            for (int i = 0; i < pixels.length; i++) {
-                pixels[i] = Color.rgb(
-                        255 - Color.red(pixels[i]),
-                        255 - Color.green(pixels[i]),
-                        255 - Color.blue(pixels[i])
-                );
-            }
-
-            inverted.setPixels(pixels, 0, original.getWidth(), 0, 0, original.getWidth(), original.getHeight());
-            return inverted;
-        } catch (Exception e) {
-            Log.e(TAG, "Invert error: " + e.getMessage());
-            return null;
+        cancelConversion();
+        decideQuality("convert");
+        SketchStyle sketchStyle = style;
+        int radius = blurRadius;
+        String key = SketchCache.sketchKey(sourceKey, sketchParams(sketchStyle, radius));
+        Bitmap cached = sketchCache.getFromMemory(key);
+        if (cached != null) {
+            showNewSketch(cached, sketchStyle, radius);
+            return;
         }
-    }
-
-    private Bitmap fastBlur(Bitmap original, int radius) {
-        try {
-            // Stack Blur Algorithm - much faster than Gaussian blur
-            Bitmap blurred = Bitmap.createBitmap(original.getWidth(), original.getHeight(), Bitmap.Config.RGB_565);
-
-            int[] pix = new int[original.getWidth() * original.getHeight()];
-            original.getPixels(pix, 0, original.getWidth(), 0, 0, original.getWidth(), original.getHeight());
-
-            int w = original.getWidth();
-            int h = original.getHeight();
-
-            int wm = w - 1;
-            int hm = h - 1;
-            int wh = w * h;
-            int div = radius + radius + 1;
-
-            int r[] = new int[wh];
-            int g[] = new int[wh];
-            int b[] = new int[wh];
-            int rsum, gsum, bsum, x, y, i, p, yp, yi, yw;
-            int vmin[] = new int[Math.max(w, h)];
-
-            int divsum = (div + 1) >> 1;
-            divsum *= divsum;
-            int dv[] = new int[256 * divsum];
-            for (i = 0; i < 256 * divsum; i++) {
-                dv[i] = (i / divsum);
-            }
 
-            yw = yi = 0;
-
-            int[][] stack = new int[div][3];
-            int stackpointer;
-            int stackstart;
-            int[] sir;
-            int rbs;
-            int r1 = radius + 1;
-            int routsum, goutsum, boutsum;
-            int rinsum, ginsum, binsum;
-
-            for (y = 0; y < h; y++) {
-                rinsum = ginsum = binsum = routsum = goutsum = boutsum = rsum = gsum = bsum = 0;
-                for (i = -radius; i <= radius; i++) {
-                    p = pix[yi + Math.min(wm, Math.max(i, 0))];
-                    sir = stack[i + radius];
-                    sir[0] = (p & 0xff0000) >> 16;
-                    sir[1] = (p & 0x00ff00) >> 8;
-                    sir[2] = (p & 0x0000ff);
-                    rbs = r1 - Math.abs(i);
-                    rsum += sir[0] * rbs;
-                    gsum += sir[1] * rbs;
-                    bsum += sir[2] * rbs;
-                    if (i > 0) {
-                        rinsum += sir[0];
-                        ginsum += sir[1];
-                        binsum += sir[2];
-                    } else {
-                        routsum += sir[0];
-                        goutsum += sir[1];
-                        boutsum += sir[2];
+        btnConvert.setEnabled(false);
+        progressBar.setVisibility(View.VISIBLE);
+        int threads = quality.threads;
+        int pixelRadius = workingRadius(radius);
+
+        // Pixels are copied out on the main thread so the job never touches a bitmap that a
+        // newer pick may recycle
+        int width = originalBitmap.getWidth();
+        int height = originalBitmap.getHeight();
+        int[] pixels = buffers.acquire(width * height);
+        originalBitmap.getPixels(pixels, 0, width, 0, 0, width, height);
+
+        conversionJob = jobs.submitCpu(token -> {
+                    Instrumentation.Session session = instrumentation.start("convert", width, height, pixelRadius);
+                    try {
+                        session.begin("cache");
+                        Bitmap sketch = sketchCache.get(key);
+                        session.end();
+                        if (sketch != null) {
+                            buffers.release(pixels);
+                            return sketch;
+                        }
+                        long start = System.nanoTime();
+                        sketch = createSketch(sketchStyle, pixels, width, height, pixelRadius, session, token);
+                        governor.record(width, height, threads, System.nanoTime() - start);
+                        sketchCache.put(key, sketch);
+                        return sketch;
+                    } finally {
+                        session.finish();
                     }
-                }
-                stackpointer = radius;
-
-                for (x = 0; x < w; x++) {
-                    r[yi] = dv[rsum];
-                    g[yi] = dv[gsum];
-                    b[yi] = dv[bsum];
-
-                    rsum -= routsum;
-                    gsum -= goutsum;
-                    bsum -= boutsum;
-
-                    stackstart = stackpointer - radius + div;
-                    sir = stack[stackstart % div];
-
-                    routsum -= sir[0];
-                    goutsum -= sir[1];
-                    boutsum -= sir[2];
-
-                    if (y == 0) {
-                        vmin[x] = Math.min(x + radius + 1, wm);
+                },
+                new JobScheduler.Callback<Bitmap>() {
+                    @Override
+                    public void onSuccess(Bitmap result) {
+                        progressBar.setVisibility(View.GONE);
+                        btnConvert.setEnabled(true);
+                        showNewSketch(result, sketchStyle, radius);
+                        Toast.makeText(MainActivity.this, "Conversion complete", Toast.LENGTH_SHORT).show();
                     }
-                    p = pix[yw + vmin[x]];
-
-                    sir[0] = (p & 0xff0000) >> 16;
-                    sir[1] = (p & 0x00ff00) >> 8;
-                    sir[2] = (p & 0x0000ff);
 
-                    rinsum += sir[0];
-                    ginsum += sir[1];
-                    binsum += sir[2];
+                    @Override
+                    public void onFailure(Throwable e) {
+                        progressBar.setVisibility(View.GONE);
+                        btnConvert.setEnabled(true);
+                        Log.e(TAG, "Conversion error: " + e.getMessage());
+                        showError("Conversion failed");
+                    }
 
-                    rsum += rinsum;
-                    gsum += ginsum;
-                    bsum += binsum;
+                    @Override
+                    public void onDiscarded(Bitmap result) {
+                        recycleBitmap(result);
+                    }
+                });
+    }
 
-                    stackpointer = (stackpointer + 1) % div;
-                    sir = stack[(stackpointer) % div];
+    /** Shows a freshly rendered sketch and makes it a step that can be undone. */
+    private void showNewSketch(Bitmap sketch, SketchStyle sketchStyle, int radius) {
+        showSketch(sketch);
+        history.record(sketch, new SketchHistory.Edit(sketchStyle, radius));
+    }
 
-                    routsum += sir[0];
-                    goutsum += sir[1];
-                    boutsum += sir[2];
+    private void showSketch(Bitmap sketch) {
+        Bitmap previous = sketchBitmap;
+        sketchBitmap = sketch;
+        GpuPreview.clear(imageView);
+        imageView.setImageBitmap(sketchBitmap);
+        recycleBitmap(previous);
+        btnSave.setEnabled(true);
+    }
 
-                    rinsum -= sir[0];
-                    ginsum -= sir[1];
-                    binsum -= sir[2];
+    /** Everything besides the source that determines the sketch, for the cache key. */
+    private String sketchParams(SketchStyle sketchStyle, int radius) {
+        return sketchStyle.name() + ":" + radius + ":" + blurFor(workingRadius(radius)).getClass().getSimpleName();
+    }
 
-                    yi++;
+    /**
+     * Renders every style from a small copy of the source on one filter graph, so the
+     * luminance and blurred planes they share are computed once for the whole strip.
+     */
+    private void renderStyleThumbnails() {
+        if (thumbnailJob != null) thumbnailJob.cancel();
+
+        float scale = Math.min(1f, THUMBNAIL_MAX_DIMENSION
+                / (float) Math.max(originalBitmap.getWidth(), originalBitmap.getHeight()));
+        int width = Math.max(1, Math.round(originalBitmap.getWidth() * scale));
+        int height = Math.max(1, Math.round(originalBitmap.getHeight() * scale));
+        Bitmap scaled = Bitmap.createScaledBitmap(originalBitmap, width, height, true);
+        int[] source = new int[width * height];
+        scaled.getPixels(source, 0, width, 0, 0, width, height);
+        if (scaled != originalBitmap) scaled.recycle();
+        int radius = Math.max(1, Math.round(workingRadius(blurRadius) * scale));
+
+        thumbnailJob = jobs.submitCpu(token -> {
+            List<Bitmap> thumbnails = new ArrayList<>();
+            int[] out = new int[width * height];
+            try (FilterGraph graph = new FilterGraph(source, width, height, buffers)) {
+                for (SketchStyle thumbnailStyle : SketchStyles.all()) {
+                    thumbnailStyle.render(graph, radius, StackBlur.SERIAL, out, token);
+                    thumbnails.add(Bitmap.createBitmap(out, width, height, Bitmap.Config.ARGB_8888));
                 }
-                yw += w;
+            }
+            return thumbnails;
+        }, new JobScheduler.Callback<List<Bitmap>>() {
+            @Override
+            public void onSuccess(List<Bitmap> thumbnails) {
+                showStyleThumbnails(thumbnails);
             }
 
-            for (x = 0; x < w; x++) {
-                rinsum = ginsum = binsum = routsum = goutsum = boutsum = rsum = gsum = bsum = 0;
-                yp = -radius * w;
-                for (i = -radius; i <= radius; i++) {
-                    yi = Math.max(0, yp) + x;
-
-                    sir = stack[i + radius];
-
-                    sir[0] = r[yi];
-                    sir[1] = g[yi];
-                    sir[2] = b[yi];
-
-                    rbs = r1 - Math.abs(i);
-
-                    rsum += r[yi] * rbs;
-                    gsum += g[yi] * rbs;
-                    bsum += b[yi] * rbs;
-
-                    if (i > 0) {
-                        rinsum += sir[0];
-                        ginsum += sir[1];
-                        binsum += sir[2];
-                    } else {
-                        routsum += sir[0];
-                        goutsum += sir[1];
-                        boutsum += sir[2];
-                    }
-
-                    if (i < hm) {
-                        yp += w;
-                    }
-                }
-                yi = x;
-                stackpointer = radius;
-
-                for (y = 0; y < h; y++) {
-                    pix[yi] = (0xff000000) | (dv[rsum] << 16) | (dv[gsum] << 8) | dv[bsum];
-
-                    rsum -= routsum;
-                    gsum -= goutsum;
-                    bsum -= boutsum;
-
-                    stackstart = stackpointer - radius + div;
-                    sir = stack[stackstart % div];
+            @Override
+            public void onFailure(Throwable e) {
+                // The strip is optional; the selected style still converts normally
+                Log.e(TAG, "Style thumbnail error: " + e.getMessage());
+            }
+        });
+    }
 
-                    routsum -= sir[0];
-                    goutsum -= sir[1];
-                    boutsum -= sir[2];
+    private void showStyleThumbnails(List<Bitmap> thumbnails) {
+        styleStrip.removeAllViews();
+        int size = Math.round(THUMBNAIL_SIZE_DP * getResources().getDisplayMetrics().density);
+        int margin = size / 12;
+        List<SketchStyle> styles = SketchStyles.all();
+        for (int i = 0; i < styles.size(); i++) {
+            SketchStyle thumbnailStyle = styles.get(i);
+            ImageView thumbnail = new ImageView(this);
+            LinearLayout.LayoutParams params = new LinearLayout.LayoutParams(size, size);
+            params.setMargins(margin, 0, margin, 0);
+            thumbnail.setLayoutParams(params);
+            thumbnail.setScaleType(ImageView.ScaleType.CENTER_CROP);
+            thumbnail.setImageBitmap(thumbnails.get(i));
+            thumbnail.setContentDescription(thumbnailStyle.name());
+            thumbnail.setTag(thumbnailStyle);
+            thumbnail.setOnClickListener(v -> selectStyle(thumbnailStyle));
+            styleStrip.addView(thumbnail);
+        }
+        highlightSelectedStyle();
+        styleScroll.setVisibility(View.VISIBLE);
+    }
 
-                    if (x == 0) {
-                        vmin[y] = Math.min(y + r1, hm) * w;
-                    }
-                    p = x + vmin[y];
+    private void selectStyle(SketchStyle selected) {
+        if (selected == style) return;
+        style = selected;
+        highlightSelectedStyle();
+        if (sketchBitmap != null) convertImageToSketch();
+    }
 
-                    sir[0] = r[p];
-                    sir[1] = g[p];
-                    sir[2] = b[p];
+    private void highlightSelectedStyle() {
+        for (int i = 0; i < styleStrip.getChildCount(); i++) {
+            View thumbnail = styleStrip.getChildAt(i);
+            thumbnail.setAlpha(thumbnail.getTag() == style ? 1f : 0.5f);
+        }
+    }
 
-                    rinsum += sir[0];
-                    ginsum += sir[1];
-                    binsum += sir[2];
+    private void cancelConversion() {
+        livePreview.cancel();
+        if (conversionJob != null) {
+            conversionJob.cancel();
+            conversionJob = null;
+            progressBar.setVisibility(View.GONE);
+            btnConvert.setEnabled(originalBitmap != null);
+        }
+    }
 
-                    rsum += rinsum;
-                    gsum += ginsum;
-                    bsum += binsum;
+    private Blur blurFor(int radius) {
+        return backends.blurFor(radius, quality.threads);
+    }
 
-                    stackpointer = (stackpointer + 1) % div;
-                    sir = stack[stackpointer];
+    /** Asks the governor for the settings of the next conversion, and logs them. */
+    private QualityGovernor.Decision decideQuality(String operation) {
+        quality = governor.decide();
+        Log.i(TAG, "Quality for " + operation + ": " + quality);
+        return quality;
+    }
 
-                    routsum += sir[0];
-                    goutsum += sir[1];
-                    boutsum += sir[2];
+    /** Pixels of the working image that {@code strength} blurs across. */
+    private int workingRadius(int strength) {
+        return Math.max(1, Math.round(strength * workingDimension / (float) REFERENCE_DIMENSION));
+    }
 
-                    rinsum -= sir[0];
-                    ginsum -= sir[1];
-                    binsum -= sir[2];
+    /** View pixels per source pixel of the fit-centered image. */
+    private float displayScale() {
+        return Math.min(imageView.getWidth() / (float) originalBitmap.getWidth(),
+                imageView.getHeight() / (float) originalBitmap.getHeight());
+    }
 
-                    yi += w;
-                }
-            }
+    private Bitmap createSketch(SketchStyle sketchStyle, int[] pixels, int width, int height, int radius,
+                                Tracer tracer, CancellationToken token) {
+        int[] out = buffers.acquire(width * height);
+        renderStyle(sketchStyle, pixels, out, width, height, radius, tracer, token);
+        buffers.release(pixels);
+
+        tracer.begin("toBitmap");
+        Bitmap sketch = bitmaps.acquire(width, height, Bitmap.Config.ARGB_8888);
+        sketch.setPixels(out, 0, width, 0, 0, width, height);
+        buffers.release(out);
+        tracer.end();
+        return sketch;
+    }
 
-            blurred.setPixels(pix, 0, w, 0, 0, w, h);
-            return blurred;
-        } catch (Exception e) {
-            Log.e(TAG, "Blur error: " + e.getMessage());
-            return null;
+    // Intermediate planes are 8-bit and pooled; only the styled result is widened to ARGB.
+    // Every node the graph computes shows up as its own stage nested under the style.
+    private void renderStyle(SketchStyle sketchStyle, int[] source, int[] out, int width, int height,
+                             int radius, Tracer tracer, CancellationToken token) {
+        tracer.begin("render:" + sketchStyle.name());
+        try (FilterGraph graph = new FilterGraph(source, width, height, buffers, tracer)) {
+            sketchStyle.render(graph, radius, blurFor(radius), out, token);
         }
+        tracer.end();
     }
 
-    private Bitmap colorDodge(Bitmap top, Bitmap bottom) {
-        try {
-            Bitmap result = Bitmap.createBitmap(top.getWidth(), top.getHeight(), Bitmap.Config.RGB_565);
-            int[] topPixels = new int[top.getWidth() * top.getHeight()];
-            int[] bottomPixels = new int[top.getWidth() * top.getHeight()];
-            int[] resultPixels = new int[top.getWidth() * top.getHeight()];
-
-            top.getPixels(topPixels, 0, top.getWidth(), 0, 0, top.getWidth(), top.getHeight());
-            bottom.getPixels(bottomPixels, 0, top.getWidth(), 0, 0, top.getWidth(), top.getHeight());
-
-            for (int i = 0; i < topPixels.length; i++) {
-                int topRed = Color.red(topPixels[i]);
-                int bottomRed = Color.red(bottomPixels[i]);
-
-                int red = (bottomRed == 255) ? 255 : Math.min(255, (topRed << 8) / (255 - bottomRed));
-                resultPixels[i] = Color.rgb(red, red, red);
-            }
-
-            result.setPixels(resultPixels, 0, top.getWidth(), 0, 0, top.getWidth(), top.getHeight());
-            return result;
-        } catch (Exception e) {
-            Log.e(TAG, "Color dodge error: " + e.getMessage());
-            return null;
+    private void chooseExportFormat() {
+        List<ExportFormat> formats = ExportFormat.available();
+        CharSequence[] labels = new CharSequence[formats.size()];
+        for (int i = 0; i < labels.length; i++) {
+            labels[i] = formats.get(i).label;
         }
+        new AlertDialog.Builder(this)
+                .setTitle("Save as")
+                .setItems(labels, (dialog, which) -> {
+                    exportFormat = formats.get(which);
+                    saveImageToGallery(exportFormat);
+                })
+                .setNegativeButton("Cancel", null)
+                .show();
     }
 
-    private void saveImageToGallery() {
+    private void saveImageToGallery(ExportFormat format) {
         if (sketchBitmap == null) {
             showError("No sketch to save");
             return;
         }
 
-        if (ContextCompat.checkSelfPermission(this, Manifest.permission.WRITE_EXTERNAL_STORAGE)
-                != PackageManager.PERMISSION_GRANTED) {
-            ActivityCompat.requestPermissions(this,
-                    new String[]{Manifest.permission.WRITE_EXTERNAL_STORAGE},
-                    STORAGE_PERMISSION_REQUEST);
-            return;
-        }
+        if (awaitWritePermission(SAVE_PERMISSION_REQUEST)) return;
+
+        // Encoding only reads the bitmap, so it runs on an I/O thread while the user keeps
+        // converting; the bitmap is held back from the pool until the save is done
+        Bitmap bitmap = sketchBitmap;
+        savingBitmaps.add(bitmap);
+        jobs.submitIo(token -> {
+                    Instrumentation.Session session = instrumentation.start("save:" + format.name(),
+                            bitmap.getWidth(), bitmap.getHeight(), 0);
+                    try {
+                        return exporter.save(bitmap, format, Gallery.sketchFileName(""), session, token);
+                    } finally {
+                        session.finish();
+                    }
+                },
+                new JobScheduler.Callback<SketchExporter.Result>() {
+                    @Override
+                    public void onSuccess(SketchExporter.Result result) {
+                        finishSave(bitmap);
+                        Toast.makeText(MainActivity.this, String.format(Locale.US, "Saved %s, %d KB in %.0f ms",
+                                result.format.label, result.bytes / 1024, result.encodeMillis()),
+                                Toast.LENGTH_SHORT).show();
+                    }
+
+                    @Override
+                    public void onFailure(Throwable e) {
+                        finishSave(bitmap);
+                        Log.e(TAG, "Save error: " + e.getMessage());
+                        showError("Failed to save sketch");
+                    }
 
-        new SaveImageTask().execute(sketchBitmap);
+                    @Override
+                    public void onDiscarded(SketchExporter.Result result) {
+                        finishSave(bitmap);
+                    }
+                });
+    }
+
+    private void finishSave(Bitmap bitmap) {
+        savingBitmaps.remove(bitmap);
+        // Replaced while it was being written out
+        if (bitmap != sketchBitmap) recycleBitmap(bitmap);
     }
 
-    private class SaveImageTask extends AsyncTask<Bitmap, Void, Boolean> {
-        @Override
-        protected void onPreExecute() {
-            btnSave.setEnabled(false);
-            progressBar.setVisibility(View.VISIBLE);
+    private void exportFullResolution() {
+        if (sourceUri == null || originalBitmap == null) {
+            showError("No image selected");
+            return;
         }
 
-        @Override
-        protected Boolean doInBackground(Bitmap... bitmaps) {
-            try {
-                String timeStamp = new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.getDefault()).format(new Date());
-                String imageFileName = "SKETCH_" + timeStamp + ".jpg";
+        if (awaitWritePermission(EXPORT_PERMISSION_REQUEST)) return;
 
-                ContentValues values = new ContentValues();
-                values.put(MediaStore.Images.Media.DISPLAY_NAME, imageFileName);
-                values.put(MediaStore.Images.Media.MIME_TYPE, "image/jpeg");
-                values.put(MediaStore.Images.Media.RELATIVE_PATH, Environment.DIRECTORY_PICTURES + "/PencilSketches");
+        Uri source = sourceUri;
+        String key = sourceKey;
+        // The viewer must not open the pyramid while it is being replaced
+        zoomSourceKey = null;
+        int previewWidth = originalBitmap.getWidth();
+        int previewRadius = workingRadius(blurRadius);
+        QualityGovernor.Decision decision = decideQuality("export");
+        btnSave.setEnabled(false);
+        progressBar.setVisibility(View.VISIBLE);
+        exportJob = jobs.submitCpu(
+                token -> writeFullResolutionSketch(source, previewWidth, previewRadius, decision, token),
+                new JobScheduler.Callback<Uri>() {
+                    @Override
+                    public void onSuccess(Uri uri) {
+                        progressBar.setVisibility(View.GONE);
+                        btnSave.setEnabled(sketchBitmap != null);
+                        zoomSourceKey = key;
+                        Toast.makeText(MainActivity.this, "Full resolution sketch saved to gallery; tap it to zoom in",
+                                Toast.LENGTH_SHORT).show();
+                    }
 
-                Uri uri = getContentResolver().insert(MediaStore.Images.Media.EXTERNAL_CONTENT_URI, values);
+                    @Override
+                    public void onFailure(Throwable e) {
+                        progressBar.setVisibility(View.GONE);
+                        btnSave.setEnabled(sketchBitmap != null);
+                        Log.e(TAG, "Full resolution export error: " + e.getMessage());
+                        showError("Failed to export full resolution sketch");
+                    }
+                });
+    }
 
-                try (OutputStream out = getContentResolver().openOutputStream(uri)) {
-                    bitmaps[0].compress(Bitmap.CompressFormat.JPEG, 90, out);
-                    sendBroadcast(new Intent(Intent.ACTION_MEDIA_SCANNER_SCAN_FILE, uri));
-                    return true;
+    // Converts the original photo at full resolution and streams it out as grayscale PNG, and
+    // into the tile pyramid the zoom viewer reads. The whole image is converted at once outside
+    // the Java heap when the device can spare the memory; otherwise strip by strip, so memory
+    // use depends on the strip height the governor chose instead of the image size.
+    private Uri writeFullResolutionSketch(Uri sourceImage, int previewWidth, int previewRadius,
+                                          QualityGovernor.Decision decision, CancellationToken token)
+            throws IOException {
+        try (RegionDecoderStripSource source = new RegionDecoderStripSource(getContentResolver(), sourceImage)) {
+            // Scale the blur so the full-resolution sketch looks like the preview; both widths are upright
+            int radius = Math.max(1, Math.round(previewRadius * source.width() / (float) previewWidth));
+
+            Uri uri = Gallery.insert(getContentResolver(), Gallery.sketchFileName("_full.png"), "image/png");
+            boolean published = false;
+            try {
+                try (OutputStream out = getContentResolver().openOutputStream(uri);
+                     GrayPngWriter png = new GrayPngWriter(new BufferedOutputStream(out), source.width(), source.height());
+                     MipPyramid.Writer pyramid = MipPyramid.writer(zoomDir(), source.width(), source.height())) {
+                    StripSink sink = (argb, offset, rows) -> {
+                        png.write(argb, offset, rows);
+                        pyramid.write(argb, offset, rows);
+                    };
+                    Blur blur = backends.blurFor(radius, decision.threads);
+                    if (!offHeapSketcher.sketch(source, blur, radius, sink, token)) {
+                        new StripSketcher(blur, radius, decision.stripHeight, buffers)
+                                .sketch(source, sink, token);
+                    }
                 }
-            } catch (Exception e) {
-                Log.e(TAG, "Save error: " + e.getMessage());
-                return false;
+                Gallery.publish(getContentResolver(), uri);
+                published = true;
+                return uri;
+            } finally {
+                if (!published) Gallery.discard(getContentResolver(), uri);
             }
         }
+    }
 
-        @Override
-        protected void onPostExecute(Boolean success) {
-            progressBar.setVisibility(View.GONE);
-            btnSave.setEnabled(true);
-
-            if (success) {
-                Toast.makeText(MainActivity.this, "Sketch saved to gallery", Toast.LENGTH_SHORT).show();
-            } else {
-                showError("Failed to save sketch");
-            }
-        }
+    private File zoomDir() {
+        return new File(getCacheDir(), "zoom");
     }
 
     private void recycleBitmap(Bitmap bitmap) {
-        if (bitmap != null && !bitmap.isRecycled()) {
-            bitmap.recycle();
+        // Returned to the pool for the next conversion, unless a save job is still reading it
+        if (bitmap != null && !savingBitmaps.contains(bitmap)) {
+            bitmaps.release(bitmap);
         }
     }
 
@@ -569,7 +974,15 @@ public class MainActivity extends AppCompatActivity {
     @Override
     protected void onDestroy() {
         super.onDestroy();
+        livePreview.release();
+        if (thumbnailJob != null) thumbnailJob.cancel();
+        if (batchJob != null) batchJob.cancel();
+        if (exportJob != null) exportJob.cancel();
+        // Also cancels the decode and conversion, so nothing is delivered to this activity
+        jobs.shutdown();
         recycleBitmap(originalBitmap);
         recycleBitmap(sketchBitmap);
+        bitmaps.clear();
+        buffers.clear();
     }
 }
\ No newline at end of file
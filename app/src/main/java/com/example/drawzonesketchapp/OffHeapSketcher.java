@@ -0,0 +1,137 @@
+package com.example.drawzonesketchapp;
+
+import android.app.ActivityManager;
+import android.content.Context;
+import android.os.Build;
+import android.os.SharedMemory;
+import android.system.ErrnoException;
+import android.util.Log;
+
+import androidx.annotation.RequiresApi;
+
+import com.example.drawzonesketchapp.sketch.Blur;
+import com.example.drawzonesketchapp.sketch.BufferPool;
+import com.example.drawzonesketchapp.sketch.CancellationToken;
+import com.example.drawzonesketchapp.sketch.SketchEngine;
+import com.example.drawzonesketchapp.sketch.StripSink;
+import com.example.drawzonesketchapp.sketch.StripSketcher;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Converts a full-resolution image in one piece, with its pixels and blur plane held outside
+ * the Java heap.
+ * <p>
+ * Both buffers are mapped from {@link SharedMemory}, which does not count against the heap
+ * limit; a direct {@link ByteBuffer} would not help here, since ART allocates those on the
+ * Java heap. Bands are decoded straight into the RGBA buffer, the sketch runs on the buffers
+ * in place, and the result is streamed out a band at a time, so the heap only ever holds one
+ * band and the blur's window. Since the blur sees the whole image, no strip overlap is
+ * recomputed.
+ * <p>
+ * Mapped pages are only committed as they are touched, so a mapping that succeeds can still
+ * push the device into low memory halfway through. The free memory is therefore checked
+ * first, and whenever it is short, or the mapping fails, nothing is written and the caller
+ * falls back to {@link StripSketcher}.
+ */
+class OffHeapSketcher {
+
+    private static final String TAG = "PencilSketchApp";
+    // Leave at least half of what the system can spare to everyone else
+    private static final int AVAILABLE_MEMORY_SHARE = 2;
+    private static final int OUTPUT_ROWS = 64;
+
+    private final ActivityManager activityManager;
+    private final BufferPool buffers;
+
+    OffHeapSketcher(Context context, BufferPool buffers) {
+        this.activityManager = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        this.buffers = buffers;
+    }
+
+    /**
+     * Sketches {@code source} with {@code blur} and writes it to {@code sink}. Returns false,
+     * having written nothing, if the buffers cannot be had; tile the image instead then.
+     *
+     * @throws java.util.concurrent.CancellationException if the token is cancelled
+     */
+    boolean sketch(RegionDecoderStripSource source, Blur blur, int radius, StripSink sink,
+                   CancellationToken token) throws IOException {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.O_MR1) return false;
+
+        int width = source.width();
+        int height = source.height();
+        long pixels = (long) width * height;
+        // RGBA plus one plane byte per pixel, and one mapping per buffer must stay int-indexed
+        if (4 * pixels > Integer.MAX_VALUE || !canSpare(5 * pixels)) return false;
+
+        try (Mapping rgba = Mapping.map("sketch-rgba", (int) (4 * pixels));
+             Mapping plane = Mapping.map("sketch-plane", (int) pixels)) {
+            for (int top = 0; top < height; top += StripSketcher.DEFAULT_STRIP_HEIGHT) {
+                token.throwIfCancelled();
+                source.read(top, Math.min(StripSketcher.DEFAULT_STRIP_HEIGHT, height - top), rgba.buffer);
+            }
+            SketchEngine.sketch(rgba.buffer, plane.buffer, width, height, radius, blur, token);
+            write(rgba.buffer, width, height, sink, token);
+            return true;
+        } catch (ErrnoException e) {
+            Log.w(TAG, "Off-heap buffers unavailable, tiling instead: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private boolean canSpare(long bytes) {
+        ActivityManager.MemoryInfo info = new ActivityManager.MemoryInfo();
+        activityManager.getMemoryInfo(info);
+        return !info.lowMemory && bytes <= (info.availMem - info.threshold) / AVAILABLE_MEMORY_SHARE;
+    }
+
+    /** Streams the gray RGBA result to {@code sink} as ARGB bands. */
+    private void write(ByteBuffer rgba, int width, int height, StripSink sink, CancellationToken token)
+            throws IOException {
+        int[] band = buffers.acquire(width * OUTPUT_ROWS);
+        try {
+            for (int top = 0; top < height; top += OUTPUT_ROWS) {
+                token.throwIfCancelled();
+                int rows = Math.min(OUTPUT_ROWS, height - top);
+                for (int i = 0, p = 4 * top * width; i < rows * width; i++, p += 4) {
+                    band[i] = 0xff000000 | (rgba.get(p) & 0xff) * 0x010101;
+                }
+                sink.write(band, 0, rows);
+            }
+        } finally {
+            buffers.release(band);
+        }
+    }
+
+    /** A native-order buffer mapped from its own shared memory region. */
+    @RequiresApi(Build.VERSION_CODES.O_MR1)
+    private static final class Mapping implements Closeable {
+        final SharedMemory memory;
+        final ByteBuffer buffer;
+
+        private Mapping(SharedMemory memory, ByteBuffer buffer) {
+            this.memory = memory;
+            this.buffer = buffer;
+        }
+
+        static Mapping map(String name, int bytes) throws ErrnoException {
+            SharedMemory memory = SharedMemory.create(name, bytes);
+            try {
+                return new Mapping(memory, memory.mapReadWrite().order(ByteOrder.nativeOrder()));
+            } catch (ErrnoException | RuntimeException e) {
+                memory.close();
+                throw e;
+            }
+        }
+
+        @Override
+        public void close() {
+            SharedMemory.unmap(buffer);
+            memory.close();
+        }
+    }
+}
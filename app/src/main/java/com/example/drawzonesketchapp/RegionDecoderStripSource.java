@@ -0,0 +1,184 @@
+package com.example.drawzonesketchapp;
+
+import android.content.ContentResolver;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Rect;
+import android.net.Uri;
+import android.os.Build;
+
+import androidx.exifinterface.media.ExifInterface;
+
+import com.example.drawzonesketchapp.sketch.StripSource;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Decodes a full-resolution image band by band with {@link BitmapRegionDecoder}, so the
+ * whole photo never has to be held as one bitmap. Bands can also be copied straight into an
+ * RGBA buffer with {@link #read(int, int, ByteBuffer)}.
+ * <p>
+ * Sizes and rows are those of the upright image, as {@link SampledDecoder} shows it: the EXIF
+ * orientation is read once, and each upright band is decoded from the raw rows or columns it
+ * comes from and then flipped or rotated into place. Sideways photos therefore decode a
+ * column of the raw image per band, which is slower than a row but still only one band.
+ */
+class RegionDecoderStripSource implements StripSource, Closeable {
+
+    private final BitmapRegionDecoder decoder;
+    private final BitmapFactory.Options options = new BitmapFactory.Options();
+    private final Rect region = new Rect();
+    private final int orientation;
+    private Bitmap band;
+    // Raw pixels of a band before it is turned upright, and the upright band for byte buffers
+    private int[] scratch;
+    private int[] upright;
+
+    RegionDecoderStripSource(ContentResolver resolver, Uri uri) throws IOException {
+        try (InputStream in = resolver.openInputStream(uri)) {
+            if (in == null) throw new IOException("Cannot open " + uri);
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S) {
+                decoder = BitmapRegionDecoder.newInstance(in);
+            } else {
+                //noinspection deprecation
+                decoder = BitmapRegionDecoder.newInstance(in, false);
+            }
+        }
+        if (decoder == null) throw new IOException("Unsupported image " + uri);
+        options.inPreferredConfig = Bitmap.Config.ARGB_8888;
+        orientation = readOrientation(resolver, uri);
+    }
+
+    private static int readOrientation(ContentResolver resolver, Uri uri) {
+        try (InputStream in = resolver.openInputStream(uri)) {
+            if (in == null) return ExifInterface.ORIENTATION_NORMAL;
+            int orientation = new ExifInterface(in)
+                    .getAttributeInt(ExifInterface.TAG_ORIENTATION, ExifInterface.ORIENTATION_NORMAL);
+            // Undefined and out-of-range values mean upright, as for the preview
+            return orientation >= ExifInterface.ORIENTATION_FLIP_HORIZONTAL
+                    && orientation <= ExifInterface.ORIENTATION_ROTATE_270
+                    ? orientation : ExifInterface.ORIENTATION_NORMAL;
+        } catch (IOException e) {
+            // No readable EXIF; treat as upright
+            return ExifInterface.ORIENTATION_NORMAL;
+        }
+    }
+
+    @Override
+    public int width() {
+        return SampledDecoder.swapsDimensions(orientation) ? decoder.getHeight() : decoder.getWidth();
+    }
+
+    @Override
+    public int height() {
+        return SampledDecoder.swapsDimensions(orientation) ? decoder.getWidth() : decoder.getHeight();
+    }
+
+    @Override
+    public void read(int top, int rows, int[] argb) throws IOException {
+        if (orientation == ExifInterface.ORIENTATION_NORMAL) {
+            int width = decoder.getWidth();
+            region.set(0, top, width, top + rows);
+            decodeRegion().getPixels(argb, 0, width, 0, 0, width, rows);
+        } else {
+            readOriented(top, rows, argb);
+        }
+    }
+
+    /**
+     * Decodes rows {@code [top, top + rows)} into {@code rgba}, which holds the whole image
+     * as ARGB_8888 bytes from index 0. The buffer's position is not changed.
+     */
+    void read(int top, int rows, ByteBuffer rgba) throws IOException {
+        ByteBuffer view = rgba.duplicate();
+        view.position(4 * top * width());
+        if (orientation == ExifInterface.ORIENTATION_NORMAL) {
+            region.set(0, top, decoder.getWidth(), top + rows);
+            decodeRegion().copyPixelsToBuffer(view);
+            return;
+        }
+
+        int count = width() * rows;
+        if (upright == null || upright.length < count) upright = new int[count];
+        readOriented(top, rows, upright);
+        // Same byte order as copyPixelsToBuffer gives for ARGB_8888
+        for (int i = 0; i < count; i++) {
+            int c = upright[i];
+            view.put((byte) (c >> 16)).put((byte) (c >> 8)).put((byte) c).put((byte) (c >>> 24));
+        }
+    }
+
+    /**
+     * Decodes the raw pixels that upright rows {@code [top, top + rows)} come from and writes
+     * them upright into {@code argb}; the inverse of {@link SampledDecoder}'s orientation matrix.
+     */
+    private void readOriented(int top, int rows, int[] argb) throws IOException {
+        int rawWidth = decoder.getWidth();
+        int rawHeight = decoder.getHeight();
+        boolean sideways = SampledDecoder.swapsDimensions(orientation);
+        // Orientations that read the band from the far end of the raw image
+        boolean fromEnd = orientation == ExifInterface.ORIENTATION_ROTATE_180
+                || orientation == ExifInterface.ORIENTATION_FLIP_VERTICAL
+                || orientation == ExifInterface.ORIENTATION_TRANSVERSE
+                || orientation == ExifInterface.ORIENTATION_ROTATE_270;
+        int start = fromEnd ? (sideways ? rawWidth : rawHeight) - top - rows : top;
+        if (sideways) {
+            region.set(start, 0, start + rows, rawHeight);
+        } else {
+            region.set(0, start, rawWidth, start + rows);
+        }
+
+        int stride = region.width();
+        int count = stride * region.height();
+        if (scratch == null || scratch.length < count) scratch = new int[count];
+        decodeRegion().getPixels(scratch, 0, stride, 0, 0, stride, region.height());
+
+        int width = width();
+        for (int y = 0; y < rows; y++) {
+            // Band-relative raw row, or column for sideways orientations
+            int line = fromEnd ? rows - 1 - y : y;
+            int out = y * width;
+            for (int x = 0; x < width; x++) {
+                int index;
+                switch (orientation) {
+                    case ExifInterface.ORIENTATION_FLIP_HORIZONTAL:
+                    case ExifInterface.ORIENTATION_ROTATE_180:
+                        index = line * stride + rawWidth - 1 - x;
+                        break;
+                    case ExifInterface.ORIENTATION_FLIP_VERTICAL:
+                        index = line * stride + x;
+                        break;
+                    case ExifInterface.ORIENTATION_TRANSPOSE:
+                    case ExifInterface.ORIENTATION_ROTATE_270:
+                        index = x * stride + line;
+                        break;
+                    default: // ROTATE_90, TRANSVERSE
+                        index = (rawHeight - 1 - x) * stride + line;
+                        break;
+                }
+                argb[out + x] = scratch[index];
+            }
+        }
+    }
+
+    private Bitmap decodeRegion() throws IOException {
+        // Reuse the band bitmap for every strip of the same size
+        options.inBitmap = (band != null && band.getWidth() == region.width()
+                && band.getHeight() == region.height()) ? band : null;
+        Bitmap decoded = decoder.decodeRegion(region, options);
+        if (decoded == null) throw new IOException("Failed to decode region " + region);
+        if (decoded != band && band != null) band.recycle();
+        band = decoded;
+        return band;
+    }
+
+    @Override
+    public void close() {
+        decoder.recycle();
+        if (band != null) band.recycle();
+    }
+}
@@ -0,0 +1,276 @@
+package com.example.drawzonesketchapp;
+
+import android.content.ContentResolver;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.ImageDecoder;
+import android.graphics.Matrix;
+import android.net.Uri;
+import android.os.Build;
+import android.os.ParcelFileDescriptor;
+import android.os.SystemClock;
+import android.util.Log;
+import android.util.Size;
+
+import androidx.annotation.RequiresApi;
+import androidx.exifinterface.media.ExifInterface;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Locale;
+
+/**
+ * Decodes an image scaled to fit a target size, upright, opening the URI only once.
+ * <p>
+ * On API 28+ {@link ImageDecoder} reads the header and scales to the exact target size in a
+ * single pass, and applies EXIF orientation itself. Older devices use {@link BitmapFactory}:
+ * the URI is opened once as a seekable file descriptor (or read into memory when the
+ * provider only offers a pipe), bounds and pixels are decoded from that same source,
+ * subsampling gets close to the target and density scaling makes it exact, and the EXIF
+ * orientation is applied afterwards. That path decodes into a pooled bitmap when one is large
+ * enough. Each decode logs how long it took.
+ */
+class SampledDecoder {
+
+    private static final String TAG = "PencilSketchApp";
+
+    private final ContentResolver resolver;
+    private final BitmapPool bitmaps;
+
+    SampledDecoder(ContentResolver resolver, BitmapPool bitmaps) {
+        this.resolver = resolver;
+        this.bitmaps = bitmaps;
+    }
+
+    /**
+     * Decodes {@code uri} scaled down to fit {@code maxWidth x maxHeight}, keeping the aspect
+     * ratio and never scaling up. Returns null if the image cannot be decoded.
+     */
+    Bitmap decode(Uri uri, int maxWidth, int maxHeight) throws IOException {
+        long start = SystemClock.elapsedRealtimeNanos();
+        Bitmap bitmap;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.P) {
+            bitmap = decodeWithImageDecoder(uri, maxWidth, maxHeight);
+        } else {
+            bitmap = decodeWithBitmapFactory(uri, maxWidth, maxHeight);
+        }
+        if (bitmap != null) {
+            Log.d(TAG, String.format(Locale.US, "Decoded %dx%d in %.1f ms",
+                    bitmap.getWidth(), bitmap.getHeight(), (SystemClock.elapsedRealtimeNanos() - start) / 1e6));
+        }
+        return bitmap;
+    }
+
+    @RequiresApi(Build.VERSION_CODES.P)
+    private Bitmap decodeWithImageDecoder(Uri uri, int maxWidth, int maxHeight) throws IOException {
+        ImageDecoder.Source source = ImageDecoder.createSource(resolver, uri);
+        return ImageDecoder.decodeBitmap(source, (decoder, info, src) -> {
+            // The reported size is already upright
+            Size size = info.getSize();
+            float scale = fitScale(size.getWidth(), size.getHeight(), maxWidth, maxHeight);
+            decoder.setTargetSize(Math.max(1, Math.round(size.getWidth() * scale)),
+                    Math.max(1, Math.round(size.getHeight() * scale)));
+            // Software and mutable, so pixels can be read back and the bitmap pooled
+            decoder.setAllocator(ImageDecoder.ALLOCATOR_SOFTWARE);
+            decoder.setMutableRequired(true);
+        });
+    }
+
+    private Bitmap decodeWithBitmapFactory(Uri uri, int maxWidth, int maxHeight) throws IOException {
+        try (EncodedImage image = EncodedImage.open(resolver, uri)) {
+            BitmapFactory.Options options = new BitmapFactory.Options();
+            options.inJustDecodeBounds = true;
+            image.decode(options);
+            if (options.outWidth <= 0 || options.outHeight <= 0) return null;
+
+            // Fit the upright image, so swap the bounds for sideways orientations
+            int orientation = image.exifOrientation();
+            boolean sideways = swapsDimensions(orientation);
+            float scale = fitScale(options.outWidth, options.outHeight,
+                    sideways ? maxHeight : maxWidth, sideways ? maxWidth : maxHeight);
+            int targetWidth = Math.max(1, Math.round(options.outWidth * scale));
+            int targetHeight = Math.max(1, Math.round(options.outHeight * scale));
+
+            options.inJustDecodeBounds = false;
+            // Full 8 bits per channel; the dodge reads the red channel, which 565 cuts to 5 bits
+            options.inPreferredConfig = Bitmap.Config.ARGB_8888;
+            options.inMutable = true;
+            // Cheap subsampling to at least the target size, then exact density scaling
+            options.inSampleSize = calculateInSampleSize(options.outWidth, options.outHeight,
+                    targetWidth, targetHeight);
+            int sampledWidth = options.outWidth / options.inSampleSize;
+            if (sampledWidth != targetWidth) {
+                options.inScaled = true;
+                options.inDensity = sampledWidth;
+                options.inTargetDensity = targetWidth;
+            }
+            // Decode into a pooled bitmap when one is large enough; the decoder resizes it
+            options.inBitmap = bitmaps.acquireForDecode(targetWidth, targetHeight, options.inPreferredConfig);
+
+            Bitmap bitmap;
+            try {
+                bitmap = image.decode(options);
+            } catch (IllegalArgumentException e) {
+                // The decoder refused the pooled bitmap; fall back to a fresh allocation
+                bitmaps.release(options.inBitmap);
+                options.inBitmap = null;
+                bitmap = image.decode(options);
+            }
+            if (bitmap == null) {
+                bitmaps.release(options.inBitmap);
+                return null;
+            }
+            return applyOrientation(bitmap, orientation);
+        }
+    }
+
+    /** Scale that fits {@code width x height} inside the bounds, never above 1. */
+    private static float fitScale(int width, int height, int maxWidth, int maxHeight) {
+        return Math.min(1f, Math.min(maxWidth / (float) width, maxHeight / (float) height));
+    }
+
+    /** Largest power of two that still leaves the image at least the target size. */
+    private static int calculateInSampleSize(int width, int height, int targetWidth, int targetHeight) {
+        int inSampleSize = 1;
+        while (width / (inSampleSize * 2) >= targetWidth && height / (inSampleSize * 2) >= targetHeight) {
+            inSampleSize *= 2;
+        }
+        return inSampleSize;
+    }
+
+    /** Whether an image with this EXIF orientation is upright with width and height swapped. */
+    static boolean swapsDimensions(int orientation) {
+        return orientation == ExifInterface.ORIENTATION_ROTATE_90
+                || orientation == ExifInterface.ORIENTATION_ROTATE_270
+                || orientation == ExifInterface.ORIENTATION_TRANSPOSE
+                || orientation == ExifInterface.ORIENTATION_TRANSVERSE;
+    }
+
+    private Bitmap applyOrientation(Bitmap bitmap, int orientation) {
+        Matrix matrix = new Matrix();
+        switch (orientation) {
+            case ExifInterface.ORIENTATION_FLIP_HORIZONTAL:
+                matrix.postScale(-1, 1);
+                break;
+            case ExifInterface.ORIENTATION_ROTATE_180:
+                matrix.postRotate(180);
+                break;
+            case ExifInterface.ORIENTATION_FLIP_VERTICAL:
+                matrix.postScale(1, -1);
+                break;
+            case ExifInterface.ORIENTATION_TRANSPOSE:
+                matrix.postRotate(90);
+                matrix.postScale(-1, 1);
+                break;
+            case ExifInterface.ORIENTATION_ROTATE_90:
+                matrix.postRotate(90);
+                break;
+            case ExifInterface.ORIENTATION_TRANSVERSE:
+                matrix.postRotate(270);
+                matrix.postScale(-1, 1);
+                break;
+            case ExifInterface.ORIENTATION_ROTATE_270:
+                matrix.postRotate(270);
+                break;
+            default:
+                return bitmap;
+        }
+        Bitmap upright = Bitmap.createBitmap(bitmap, 0, 0, bitmap.getWidth(), bitmap.getHeight(), matrix, true);
+        if (upright != bitmap) bitmaps.release(bitmap);
+        return upright;
+    }
+
+    /**
+     * The encoded bytes of one URI, opened once. Backed by a seekable file descriptor when
+     * the provider offers one, otherwise by an in-memory copy of the stream.
+     */
+    private static final class EncodedImage implements Closeable {
+        private final ParcelFileDescriptor descriptor;
+        private final FileInputStream file;
+        private final byte[] bytes;
+        private final int length;
+
+        private EncodedImage(ParcelFileDescriptor descriptor) {
+            this.descriptor = descriptor;
+            this.file = new FileInputStream(descriptor.getFileDescriptor());
+            this.bytes = null;
+            this.length = 0;
+        }
+
+        private EncodedImage(byte[] bytes, int length) {
+            this.descriptor = null;
+            this.file = null;
+            this.bytes = bytes;
+            this.length = length;
+        }
+
+        static EncodedImage open(ContentResolver resolver, Uri uri) throws IOException {
+            ParcelFileDescriptor descriptor;
+            try {
+                descriptor = resolver.openFileDescriptor(uri, "r");
+            } catch (FileNotFoundException e) {
+                descriptor = null;
+            }
+            if (descriptor != null && descriptor.getStatSize() >= 0) {
+                return new EncodedImage(descriptor);
+            }
+
+            // A pipe or socket can only be read once, so keep the bytes
+            try (InputStream in = descriptor != null
+                    ? new ParcelFileDescriptor.AutoCloseInputStream(descriptor)
+                    : resolver.openInputStream(uri)) {
+                if (in == null) throw new IOException("Cannot open " + uri);
+                ExposedByteArrayOutputStream out = new ExposedByteArrayOutputStream();
+                byte[] buffer = new byte[64 * 1024];
+                for (int read; (read = in.read(buffer)) != -1; ) {
+                    out.write(buffer, 0, read);
+                }
+                return new EncodedImage(out.buffer(), out.size());
+            }
+        }
+
+        Bitmap decode(BitmapFactory.Options options) throws IOException {
+            if (descriptor == null) return BitmapFactory.decodeByteArray(bytes, 0, length, options);
+            file.getChannel().position(0);
+            return BitmapFactory.decodeFileDescriptor(fileDescriptor(), null, options);
+        }
+
+        int exifOrientation() {
+            try {
+                ExifInterface exif;
+                if (descriptor == null) {
+                    exif = new ExifInterface(new ByteArrayInputStream(bytes, 0, length));
+                } else {
+                    file.getChannel().position(0);
+                    exif = new ExifInterface(fileDescriptor());
+                }
+                return exif.getAttributeInt(ExifInterface.TAG_ORIENTATION, ExifInterface.ORIENTATION_NORMAL);
+            } catch (IOException e) {
+                // No readable EXIF; treat as upright
+                return ExifInterface.ORIENTATION_NORMAL;
+            }
+        }
+
+        private FileDescriptor fileDescriptor() {
+            return descriptor.getFileDescriptor();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (descriptor != null) descriptor.close();
+        }
+    }
+
+    /** Hands out its buffer instead of copying it. */
+    private static final class ExposedByteArrayOutputStream extends ByteArrayOutputStream {
+        byte[] buffer() {
+            return buf;
+        }
+    }
+}
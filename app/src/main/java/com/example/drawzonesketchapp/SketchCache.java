@@ -0,0 +1,223 @@
+package com.example.drawzonesketchapp;
+
+import android.content.ComponentCallbacks2;
+import android.content.ContentResolver;
+import android.database.Cursor;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.net.Uri;
+import android.provider.DocumentsContract;
+import android.provider.MediaStore;
+import android.provider.OpenableColumns;
+import android.util.Log;
+import android.util.LruCache;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Two-tier cache of decoded sources and finished sketches.
+ * <p>
+ * The memory tier is an LRU sized in bytes; the disk tier is a directory of lossless PNGs
+ * under the app cache dir that survives process death and is trimmed oldest-first. Keys
+ * identify the source by URI plus its modified time and size (or a content hash when the
+ * provider reports neither), the decode size, and the sketch parameters, so an edited
+ * photo or a different strength never hits a stale entry.
+ * <p>
+ * Bitmaps are copied on the way in and out, so callers keep full ownership of what they
+ * pass and get, and may pool or recycle them freely.
+ */
+class SketchCache {
+
+    private static final String TAG = "PencilSketchApp";
+    // Bump whenever decoded or sketched output changes, so older disk entries are not reused
+    private static final int FORMAT_VERSION = 3;
+    private static final String PARTIAL_SUFFIX = ".tmp";
+
+    private final LruCache<String, Bitmap> memory;
+    private final File dir;
+    private final long maxDiskBytes;
+    private final JobScheduler jobs;
+
+    SketchCache(File dir, int maxMemoryBytes, long maxDiskBytes, JobScheduler jobs) {
+        this.memory = new LruCache<String, Bitmap>(maxMemoryBytes) {
+            @Override
+            protected int sizeOf(String key, Bitmap bitmap) {
+                return bitmap.getAllocationByteCount();
+            }
+        };
+        this.dir = dir;
+        this.maxDiskBytes = maxDiskBytes;
+        this.jobs = jobs;
+    }
+
+    /**
+     * Key for {@code uri} decoded to fit {@code maxDimension}. Queries the provider, so call
+     * off the main thread.
+     */
+    static String sourceKey(ContentResolver resolver, Uri uri, int maxDimension) throws IOException {
+        return "v" + FORMAT_VERSION + "|" + uri + "|" + sourceVersion(resolver, uri) + "|" + maxDimension;
+    }
+
+    /** Key for a sketch of the source behind {@code sourceKey}. */
+    static String sketchKey(String sourceKey, String params) {
+        return sourceKey + "|" + params;
+    }
+
+    /** A copy of the cached bitmap if it is in memory; cheap enough for the main thread. */
+    Bitmap getFromMemory(String key) {
+        Bitmap cached = memory.get(key);
+        return cached != null ? cached.copy(cached.getConfig(), true) : null;
+    }
+
+    /** Memory first, then disk; null on a miss. Reads files, so call off the main thread. */
+    Bitmap get(String key) {
+        Bitmap bitmap = getFromMemory(key);
+        if (bitmap != null) return bitmap;
+
+        File file = fileFor(key);
+        if (!file.exists()) return null;
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inPreferredConfig = Bitmap.Config.ARGB_8888;
+        options.inMutable = true;
+        bitmap = BitmapFactory.decodeFile(file.getPath(), options);
+        if (bitmap == null) {
+            // Truncated by a crash mid-write
+            file.delete();
+            return null;
+        }
+        file.setLastModified(System.currentTimeMillis());
+        memory.put(key, bitmap.copy(bitmap.getConfig(), false));
+        return bitmap;
+    }
+
+    /** Stores a copy of {@code bitmap}; the disk write happens in the background. */
+    void put(String key, Bitmap bitmap) {
+        Bitmap copy = bitmap.copy(bitmap.getConfig(), false);
+        memory.put(key, copy);
+        jobs.submitIo(token -> {
+            writeToDisk(key, copy);
+            return key;
+        }, new JobScheduler.Callback<String>() {
+            @Override
+            public void onSuccess(String result) {
+            }
+
+            @Override
+            public void onFailure(Throwable e) {
+                Log.e(TAG, "Cache write error: " + e.getMessage());
+            }
+        });
+    }
+
+    /** Drops memory entries as the system asks; disk entries stay. */
+    void onTrimMemory(int level) {
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND
+                || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+            memory.evictAll();
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+            memory.trimToSize(memory.maxSize() / 2);
+        }
+    }
+
+    private void writeToDisk(String key, Bitmap bitmap) throws IOException {
+        if (!dir.isDirectory() && !dir.mkdirs()) throw new IOException("Cannot create " + dir);
+        File file = fileFor(key);
+        // Write aside and rename, so a reader never sees half a file; every write gets its own
+        // partial file, since both I/O threads may be storing the same key
+        File partial = File.createTempFile(file.getName() + ".", PARTIAL_SUFFIX, dir);
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(partial))) {
+            bitmap.compress(Bitmap.CompressFormat.PNG, 100, out);
+        } catch (IOException e) {
+            partial.delete();
+            throw e;
+        }
+        if (!partial.renameTo(file)) {
+            partial.delete();
+            throw new IOException("Cannot write " + file);
+        }
+        trimDisk();
+    }
+
+    private synchronized void trimDisk() {
+        // Partial files belong to writes still in progress
+        File[] files = dir.listFiles(file -> !file.getName().endsWith(PARTIAL_SUFFIX));
+        if (files == null) return;
+        long total = 0;
+        for (File file : files) {
+            total += file.length();
+        }
+        Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+        for (int i = 0; i < files.length && total > maxDiskBytes; i++) {
+            total -= files[i].length();
+            files[i].delete();
+        }
+    }
+
+    private File fileFor(String key) {
+        return new File(dir, sha1(key) + ".png");
+    }
+
+    /**
+     * Modified time and size from the provider, or a hash of the content when the provider
+     * reports neither.
+     */
+    private static String sourceVersion(ContentResolver resolver, Uri uri) throws IOException {
+        try (Cursor cursor = resolver.query(uri, null, null, null, null)) {
+            if (cursor != null && cursor.moveToFirst()) {
+                String modified = column(cursor, MediaStore.MediaColumns.DATE_MODIFIED);
+                if (modified == null) {
+                    modified = column(cursor, DocumentsContract.Document.COLUMN_LAST_MODIFIED);
+                }
+                String size = column(cursor, OpenableColumns.SIZE);
+                if (modified != null && size != null) return modified + ":" + size;
+            }
+        } catch (RuntimeException e) {
+            // Some providers reject arbitrary projections; fall through to hashing
+        }
+
+        try (InputStream in = resolver.openInputStream(uri)) {
+            if (in == null) throw new IOException("Cannot open " + uri);
+            MessageDigest digest = sha1Digest();
+            byte[] buffer = new byte[64 * 1024];
+            for (int read; (read = in.read(buffer)) != -1; ) {
+                digest.update(buffer, 0, read);
+            }
+            return hex(digest.digest());
+        }
+    }
+
+    private static String column(Cursor cursor, String name) {
+        int index = cursor.getColumnIndex(name);
+        return index >= 0 && !cursor.isNull(index) ? cursor.getString(index) : null;
+    }
+
+    private static String sha1(String key) {
+        return hex(sha1Digest().digest(key.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static MessageDigest sha1Digest() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String hex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return hex.toString();
+    }
+}
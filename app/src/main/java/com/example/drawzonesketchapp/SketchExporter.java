@@ -0,0 +1,151 @@
+package com.example.drawzonesketchapp;
+
+import android.content.ContentResolver;
+import android.graphics.Bitmap;
+import android.net.Uri;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.example.drawzonesketchapp.sketch.BufferPool;
+import com.example.drawzonesketchapp.sketch.CancellationToken;
+import com.example.drawzonesketchapp.sketch.GrayPngWriter;
+import com.example.drawzonesketchapp.sketch.Tracer;
+
+import java.io.BufferedOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Locale;
+
+/**
+ * Saves sketches to the gallery in any {@link ExportFormat}.
+ * <p>
+ * Each save inserts a pending MediaStore entry, streams the encoded image into it through a
+ * buffered stream and only then publishes it, so other apps never see a partial file; a
+ * failed or cancelled save removes its entry. {@link ExportFormat#GRAY_PNG} is written strip
+ * by strip from the bitmap without any platform encoder. Saves only read the bitmap, so they
+ * run on I/O threads alongside the next conversion. Each save logs its encode time and size
+ * and returns them.
+ */
+class SketchExporter {
+
+    /** What one save produced. */
+    static final class Result {
+        final Uri uri;
+        final ExportFormat format;
+        final long bytes;
+        final long encodeNanos;
+
+        Result(Uri uri, ExportFormat format, long bytes, long encodeNanos) {
+            this.uri = uri;
+            this.format = format;
+            this.bytes = bytes;
+            this.encodeNanos = encodeNanos;
+        }
+
+        double encodeMillis() {
+            return encodeNanos / 1e6;
+        }
+    }
+
+    private static final String TAG = "PencilSketchApp";
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int STRIP_ROWS = 64;
+
+    private final ContentResolver resolver;
+    private final BufferPool buffers;
+
+    SketchExporter(ContentResolver resolver, BufferPool buffers) {
+        this.resolver = resolver;
+        this.buffers = buffers;
+    }
+
+    /**
+     * Encodes {@code sketch} as {@code format} into a new gallery entry named
+     * {@code baseName} plus the format's extension. Call from a worker thread.
+     *
+     * @throws java.util.concurrent.CancellationException if the token is cancelled
+     */
+    Result save(Bitmap sketch, ExportFormat format, String baseName, CancellationToken token) throws IOException {
+        return save(sketch, format, baseName, Tracer.NONE, token);
+    }
+
+    /** {@link #save(Bitmap, ExportFormat, String, CancellationToken)} reporting its stages to {@code tracer}. */
+    Result save(Bitmap sketch, ExportFormat format, String baseName, Tracer tracer, CancellationToken token)
+            throws IOException {
+        // A stage left open by an exception is closed when the caller's session finishes
+        tracer.begin("insert");
+        Uri uri = Gallery.insert(resolver, baseName + format.extension, format.mimeType);
+        tracer.end();
+        boolean published = false;
+        try {
+            tracer.begin("encode");
+            long start = SystemClock.elapsedRealtimeNanos();
+            OutputStream target = resolver.openOutputStream(uri);
+            if (target == null) throw new IOException("Cannot open " + uri);
+            CountingOutputStream counter = new CountingOutputStream(target);
+            try (OutputStream out = new BufferedOutputStream(counter, BUFFER_SIZE)) {
+                encode(sketch, format, out, token);
+            }
+            long encodeNanos = SystemClock.elapsedRealtimeNanos() - start;
+            tracer.end();
+
+            tracer.begin("publish");
+            Gallery.publish(resolver, uri);
+            tracer.end();
+            published = true;
+            Result result = new Result(uri, format, counter.count, encodeNanos);
+            Log.i(TAG, String.format(Locale.US, "Saved %dx%d %s: %d KB in %.1f ms",
+                    sketch.getWidth(), sketch.getHeight(), format.label, result.bytes / 1024, result.encodeMillis()));
+            return result;
+        } finally {
+            if (!published) Gallery.discard(resolver, uri);
+        }
+    }
+
+    private void encode(Bitmap sketch, ExportFormat format, OutputStream out, CancellationToken token)
+            throws IOException {
+        Bitmap.CompressFormat compressFormat = format.compressFormat();
+        if (compressFormat != null) {
+            if (!sketch.compress(compressFormat, format.quality, out)) {
+                throw new IOException("Cannot encode " + format.label);
+            }
+            return;
+        }
+
+        int width = sketch.getWidth();
+        int height = sketch.getHeight();
+        int[] strip = buffers.acquire(width * STRIP_ROWS);
+        try (GrayPngWriter png = new GrayPngWriter(out, width, height)) {
+            for (int y = 0; y < height; y += STRIP_ROWS) {
+                token.throwIfCancelled();
+                int rows = Math.min(STRIP_ROWS, height - y);
+                sketch.getPixels(strip, 0, width, 0, y, width, rows);
+                png.write(strip, 0, rows);
+            }
+        } finally {
+            buffers.release(strip);
+        }
+    }
+
+    /** Counts the bytes that reach the gallery entry. */
+    private static final class CountingOutputStream extends FilterOutputStream {
+        long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+}
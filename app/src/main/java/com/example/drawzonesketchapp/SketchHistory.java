@@ -0,0 +1,209 @@
+package com.example.drawzonesketchapp;
+
+import android.graphics.Bitmap;
+import android.util.Log;
+
+import com.example.drawzonesketchapp.sketch.BufferPool;
+import com.example.drawzonesketchapp.sketch.EditHistory;
+import com.example.drawzonesketchapp.sketch.SketchStyle;
+
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.Objects;
+
+/**
+ * Undo and redo of the sketches shown for the current image.
+ * <p>
+ * Backed by an {@link EditHistory}: each step keeps its style and strength plus a compressed
+ * tile delta, held in memory up to a budget and spilled to the cache directory past it.
+ * Requests are made on the main thread and run one at a time on an I/O thread, in the order
+ * they were made, so encoding a step never blocks the UI and an undo always sees every step
+ * recorded before it.
+ */
+class SketchHistory {
+
+    /** What produced a sketch; restored along with it. */
+    static final class Edit {
+        final SketchStyle style;
+        final int radius;
+
+        Edit(SketchStyle style, int radius) {
+            this.style = style;
+            this.radius = radius;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Edit)) return false;
+            Edit other = (Edit) o;
+            return style == other.style && radius == other.radius;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(style.name(), radius);
+        }
+    }
+
+    interface Listener {
+        /**
+         * Main thread; an undo or redo brought back {@code sketch}, which the listener now
+         * owns.
+         */
+        void onRestored(Bitmap sketch, Edit edit);
+
+        /** Main thread, after every request. */
+        void onChanged(boolean canUndo, boolean canRedo);
+    }
+
+    /** Result of one request. */
+    private static final class Outcome {
+        final Bitmap sketch;
+        final Edit edit;
+        final boolean canUndo, canRedo;
+
+        Outcome(Bitmap sketch, Edit edit, boolean canUndo, boolean canRedo) {
+            this.sketch = sketch;
+            this.edit = edit;
+            this.canUndo = canUndo;
+            this.canRedo = canRedo;
+        }
+    }
+
+    private interface Request {
+        /** Runs on the I/O thread with the history as it stands; may replace it. */
+        Outcome run() throws Exception;
+    }
+
+    private static final String TAG = "PencilSketchApp";
+    private static final int MAX_STEPS = 50;
+
+    private final File dir;
+    private final long memoryBudget;
+    private final JobScheduler jobs;
+    private final BufferPool buffers;
+    private final BitmapPool bitmaps;
+    private final Listener listener;
+    // Each entry submits one request
+    private final ArrayDeque<Runnable> pending = new ArrayDeque<>();
+    private boolean running;
+    // Bumped by clear(), so a restore that finishes after a new image came in is dropped
+    private int generation;
+
+    // Only touched by requests, which never overlap
+    private EditHistory<Edit> history;
+    private int width, height;
+
+    SketchHistory(File dir, long memoryBudget, JobScheduler jobs, BufferPool buffers, BitmapPool bitmaps,
+                  Listener listener) {
+        this.dir = dir;
+        this.memoryBudget = memoryBudget;
+        this.jobs = jobs;
+        this.buffers = buffers;
+        this.bitmaps = bitmaps;
+        this.listener = listener;
+        // Left over if the process died with a history open
+        enqueue(() -> {
+            File[] stale = dir.listFiles();
+            if (stale != null) {
+                for (File file : stale) {
+                    file.delete();
+                }
+            }
+            return null;
+        });
+    }
+
+    /** Adds {@code sketch} as a new step; the caller keeps the bitmap. Main thread. */
+    void record(Bitmap sketch, Edit edit) {
+        int sketchWidth = sketch.getWidth();
+        int sketchHeight = sketch.getHeight();
+        int[] pixels = buffers.acquire(sketchWidth * sketchHeight);
+        sketch.getPixels(pixels, 0, sketchWidth, 0, 0, sketchWidth, sketchHeight);
+        enqueue(() -> {
+            try {
+                if (history == null || width != sketchWidth || height != sketchHeight) {
+                    close();
+                    history = new EditHistory<>(sketchWidth, sketchHeight, MAX_STEPS, memoryBudget, dir);
+                    width = sketchWidth;
+                    height = sketchHeight;
+                }
+                history.record(pixels, edit);
+            } finally {
+                buffers.release(pixels);
+            }
+            return new Outcome(null, null, history.canUndo(), history.canRedo());
+        });
+    }
+
+    /** Forgets every step, for a new image. Main thread. */
+    void clear() {
+        generation++;
+        enqueue(() -> {
+            close();
+            return new Outcome(null, null, false, false);
+        });
+    }
+
+    void undo() {
+        enqueue(() -> restore(true));
+    }
+
+    void redo() {
+        enqueue(() -> restore(false));
+    }
+
+    private Outcome restore(boolean back) throws Exception {
+        if (history == null) return null;
+        int[] pixels = buffers.acquire(width * height);
+        try {
+            Edit edit = back ? history.undo(pixels) : history.redo(pixels);
+            Bitmap sketch = null;
+            if (edit != null) {
+                sketch = bitmaps.acquire(width, height, Bitmap.Config.ARGB_8888);
+                sketch.setPixels(pixels, 0, width, 0, 0, width, height);
+            }
+            return new Outcome(sketch, edit, history.canUndo(), history.canRedo());
+        } finally {
+            buffers.release(pixels);
+        }
+    }
+
+    private void close() {
+        if (history != null) history.close();
+        history = null;
+    }
+
+    private void enqueue(Request request) {
+        int requestGeneration = generation;
+        pending.add(() -> submit(request, requestGeneration));
+        if (!running) runNext();
+    }
+
+    private void runNext() {
+        Runnable next = pending.poll();
+        running = next != null;
+        if (next != null) next.run();
+    }
+
+    private void submit(Request request, int requestGeneration) {
+        jobs.submitIo(token -> request.run(), new JobScheduler.Callback<Outcome>() {
+            @Override
+            public void onSuccess(Outcome outcome) {
+                if (outcome != null && requestGeneration != generation) {
+                    bitmaps.release(outcome.sketch);
+                } else if (outcome != null) {
+                    if (outcome.sketch != null) listener.onRestored(outcome.sketch, outcome.edit);
+                    listener.onChanged(outcome.canUndo, outcome.canRedo);
+                }
+                runNext();
+            }
+
+            @Override
+            public void onFailure(Throwable e) {
+                Log.e(TAG, "History error: " + e.getMessage());
+                runNext();
+            }
+        });
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.drawzonesketchapp;
+
+import android.os.Bundle;
+import android.util.Log;
+import android.widget.Toast;
+
+import androidx.appcompat.app.AppCompatActivity;
+
+import com.example.drawzonesketchapp.sketch.BufferPool;
+import com.example.drawzonesketchapp.sketch.MipPyramid;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Full-screen deep zoom into a full-resolution sketch, through the tile pyramid written
+ * alongside its export. Nothing larger than a tile is ever decoded or drawn.
+ */
+public class SketchViewerActivity extends AppCompatActivity {
+
+    /** Absolute path of the directory a {@link MipPyramid.Writer} finished. */
+    static final String EXTRA_PYRAMID_DIR = "pyramidDir";
+
+    private static final String TAG = "PencilSketchApp";
+    // Room for the read buffers of the tiles in flight
+    private static final int POOLED_TILES = 8;
+
+    private TiledImageView tiledView;
+    private JobScheduler jobs;
+    private final BufferPool buffers = new BufferPool((long) POOLED_TILES * MipPyramid.TILE_BYTES);
+    private MipPyramid pyramid;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_viewer);
+        tiledView = findViewById(R.id.tiledView);
+        jobs = new JobScheduler();
+
+        File dir = new File(getIntent().getStringExtra(EXTRA_PYRAMID_DIR));
+        jobs.submitIo(token -> MipPyramid.open(dir), new JobScheduler.Callback<MipPyramid>() {
+            @Override
+            public void onSuccess(MipPyramid opened) {
+                if (isFinishing()) {
+                    close(opened);
+                    return;
+                }
+                pyramid = opened;
+                tiledView.setPyramid(pyramid, jobs, buffers);
+            }
+
+            @Override
+            public void onFailure(Throwable e) {
+                Log.e(TAG, "Viewer error: " + e.getMessage());
+                Toast.makeText(SketchViewerActivity.this, "Sketch is no longer available", Toast.LENGTH_SHORT).show();
+                finish();
+            }
+
+            @Override
+            public void onDiscarded(MipPyramid opened) {
+                close(opened);
+            }
+        });
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        tiledView.release();
+        jobs.shutdown();
+        close(pyramid);
+        buffers.clear();
+    }
+
+    private static void close(MipPyramid pyramid) {
+        if (pyramid == null) return;
+        try {
+            pyramid.close();
+        } catch (IOException e) {
+            Log.e(TAG, "Viewer close error: " + e.getMessage());
+        }
+    }
+}
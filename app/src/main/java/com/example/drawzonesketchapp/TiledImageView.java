@@ -0,0 +1,282 @@
+package com.example.drawzonesketchapp;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.util.AttributeSet;
+import android.util.Log;
+import android.util.LruCache;
+import android.view.GestureDetector;
+import android.view.MotionEvent;
+import android.view.ScaleGestureDetector;
+import android.view.View;
+
+import com.example.drawzonesketchapp.sketch.BufferPool;
+import com.example.drawzonesketchapp.sketch.MipPyramid;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Pan and zoom over a {@link MipPyramid}, reading only the tiles on screen.
+ * <p>
+ * Each frame draws the pyramid's single top tile under the whole image, then the visible
+ * tiles of the level that matches the zoom from an LRU cache. Tiles not cached yet are read
+ * on I/O threads, a few at a time, and tiles that scroll away before their turn are
+ * cancelled; until one arrives, the coarse base shows through. Drawing never waits for the
+ * disk, so panning and zooming stay smooth at any image size. Sketches are gray, so a tile is
+ * an {@code ALPHA_8} bitmap of inverted values drawn in black on white: one byte per pixel,
+ * with exactly the sketch's values on screen, because a tile first covers the base under it
+ * with paper.
+ */
+public class TiledImageView extends View {
+
+    private static final String TAG = "PencilSketchApp";
+    /** Furthest zoom, in screen pixels per image pixel. */
+    private static final float MAX_SCALE = 4f;
+    private static final float DOUBLE_TAP_SCALE = 1f;
+    private static final int MAX_LOADS_IN_FLIGHT = 4;
+    // Tiles may hold up to this fraction of the heap
+    private static final int CACHE_HEAP_DIVISOR = 8;
+
+    private MipPyramid pyramid;
+    private JobScheduler jobs;
+    private BufferPool buffers;
+    private final LruCache<Long, Bitmap> tiles = new LruCache<Long, Bitmap>(
+            (int) Math.min(Integer.MAX_VALUE, Runtime.getRuntime().maxMemory() / CACHE_HEAP_DIVISOR)) {
+        @Override
+        protected int sizeOf(Long key, Bitmap tile) {
+            return tile.getAllocationByteCount();
+        }
+    };
+    private final Map<Long, JobScheduler.Handle> loading = new HashMap<>();
+    private final Set<Long> visible = new HashSet<>();
+
+    // Screen position = image position * scale + offset
+    private float scale, minScale, offsetX, offsetY;
+
+    private final Paint tilePaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+    private final Paint paperPaint = new Paint();
+    private final Rect src = new Rect();
+    private final RectF dst = new RectF();
+
+    private final ScaleGestureDetector scaleDetector;
+    private final GestureDetector gestureDetector;
+
+    public TiledImageView(Context context) {
+        this(context, null);
+    }
+
+    public TiledImageView(Context context, AttributeSet attrs) {
+        super(context, attrs);
+        tilePaint.setColor(Color.BLACK);
+        paperPaint.setColor(Color.WHITE);
+        scaleDetector = new ScaleGestureDetector(context, new ScaleGestureDetector.SimpleOnScaleGestureListener() {
+            @Override
+            public boolean onScale(ScaleGestureDetector detector) {
+                zoomTo(scale * detector.getScaleFactor(), detector.getFocusX(), detector.getFocusY());
+                return true;
+            }
+        });
+        gestureDetector = new GestureDetector(context, new GestureDetector.SimpleOnGestureListener() {
+            @Override
+            public boolean onDown(MotionEvent e) {
+                return true;
+            }
+
+            @Override
+            public boolean onScroll(MotionEvent e1, MotionEvent e2, float dx, float dy) {
+                // Nothing to pan before the pyramid opens or after release()
+                if (pyramid == null) return false;
+                offsetX -= dx;
+                offsetY -= dy;
+                clampOffsets();
+                invalidate();
+                return true;
+            }
+
+            @Override
+            public boolean onDoubleTap(MotionEvent e) {
+                zoomTo(scale < DOUBLE_TAP_SCALE ? DOUBLE_TAP_SCALE : minScale, e.getX(), e.getY());
+                return true;
+            }
+        });
+    }
+
+    /** Shows {@code pyramid}, fitted to the view; the view does not close it. */
+    void setPyramid(MipPyramid pyramid, JobScheduler jobs, BufferPool buffers) {
+        release();
+        this.pyramid = pyramid;
+        this.jobs = jobs;
+        this.buffers = buffers;
+        fit();
+        invalidate();
+    }
+
+    /** Cancels pending reads and drops the cached tiles. */
+    void release() {
+        for (JobScheduler.Handle handle : loading.values()) {
+            handle.cancel();
+        }
+        loading.clear();
+        tiles.evictAll();
+        pyramid = null;
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        fit();
+    }
+
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        scaleDetector.onTouchEvent(event);
+        if (!scaleDetector.isInProgress()) gestureDetector.onTouchEvent(event);
+        return true;
+    }
+
+    private void fit() {
+        if (pyramid == null || getWidth() == 0 || getHeight() == 0) return;
+        minScale = Math.min(1f, Math.min(getWidth() / (float) pyramid.width(), getHeight() / (float) pyramid.height()));
+        scale = minScale;
+        clampOffsets();
+    }
+
+    /** Zooms to {@code target}, keeping the image point under the focus where it is. */
+    private void zoomTo(float target, float focusX, float focusY) {
+        if (pyramid == null) return;
+        float next = Math.max(minScale, Math.min(MAX_SCALE, target));
+        offsetX = focusX - (focusX - offsetX) * next / scale;
+        offsetY = focusY - (focusY - offsetY) * next / scale;
+        scale = next;
+        clampOffsets();
+        invalidate();
+    }
+
+    /** Centers a side smaller than the view; otherwise keeps the view covered. */
+    private void clampOffsets() {
+        if (pyramid == null) return;
+        float imageWidth = pyramid.width() * scale;
+        float imageHeight = pyramid.height() * scale;
+        offsetX = imageWidth <= getWidth() ? (getWidth() - imageWidth) / 2
+                : Math.max(getWidth() - imageWidth, Math.min(0, offsetX));
+        offsetY = imageHeight <= getHeight() ? (getHeight() - imageHeight) / 2
+                : Math.max(getHeight() - imageHeight, Math.min(0, offsetY));
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+        if (pyramid == null) return;
+
+        canvas.drawRect(offsetX, offsetY, offsetX + pyramid.width() * scale, offsetY + pyramid.height() * scale,
+                paperPaint);
+        visible.clear();
+        int top = pyramid.levels() - 1;
+        drawTile(canvas, top, 0, 0);
+
+        int level = pyramid.levelFor(scale);
+        if (level != top) {
+            // Image pixels covered by one tile of this level
+            float span = MipPyramid.TILE_SIZE << level;
+            int left = Math.max(0, (int) (-offsetX / scale / span));
+            int topRow = Math.max(0, (int) (-offsetY / scale / span));
+            int right = Math.min(pyramid.tilesAcross(level) - 1, (int) ((getWidth() - offsetX) / scale / span));
+            int bottom = Math.min(pyramid.tilesDown(level) - 1, (int) ((getHeight() - offsetY) / scale / span));
+            for (int ty = topRow; ty <= bottom; ty++) {
+                for (int tx = left; tx <= right; tx++) {
+                    drawTile(canvas, level, tx, ty);
+                }
+            }
+        }
+
+        // Reads for tiles that scrolled away or belong to another zoom level are not needed
+        Iterator<Map.Entry<Long, JobScheduler.Handle>> it = loading.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Long, JobScheduler.Handle> entry = it.next();
+            if (!visible.contains(entry.getKey())) {
+                entry.getValue().cancel();
+                it.remove();
+            }
+        }
+    }
+
+    private void drawTile(Canvas canvas, int level, int tx, int ty) {
+        long key = key(level, tx, ty);
+        visible.add(key);
+        Bitmap tile = tiles.get(key);
+        if (tile == null) {
+            load(level, tx, ty, key);
+            return;
+        }
+        float tileScale = scale * (1 << level);
+        float x = offsetX + tx * MipPyramid.TILE_SIZE * tileScale;
+        float y = offsetY + ty * MipPyramid.TILE_SIZE * tileScale;
+        src.set(0, 0, tile.getWidth(), tile.getHeight());
+        dst.set(x, y, x + tile.getWidth() * tileScale, y + tile.getHeight() * tileScale);
+        // Light pixels are transparent, so the blurred base would darken a sharper tile
+        if (level != pyramid.levels() - 1) canvas.drawRect(dst, paperPaint);
+        canvas.drawBitmap(tile, src, dst, tilePaint);
+    }
+
+    private void load(int level, int tx, int ty, long key) {
+        if (loading.containsKey(key) || loading.size() >= MAX_LOADS_IN_FLIGHT) return;
+
+        MipPyramid source = pyramid;
+        BufferPool pool = buffers;
+        int width = source.tileWidth(level, tx);
+        int height = source.tileHeight(level, ty);
+        loading.put(key, jobs.submitIo(token -> readTile(source, pool, level, tx, ty, width, height),
+                new JobScheduler.Callback<Bitmap>() {
+                    @Override
+                    public void onSuccess(Bitmap tile) {
+                        loading.remove(key);
+                        if (source == pyramid) tiles.put(key, tile);
+                        // Draws it, and asks for the tiles that were waiting for a free slot
+                        invalidate();
+                    }
+
+                    @Override
+                    public void onFailure(Throwable e) {
+                        loading.remove(key);
+                        Log.e(TAG, "Tile read error: " + e.getMessage());
+                    }
+                }));
+    }
+
+    private static Bitmap readTile(MipPyramid source, BufferPool pool, int level, int tx, int ty, int width,
+                                   int height) throws IOException {
+        byte[] tile = pool.acquireBytes(MipPyramid.TILE_BYTES);
+        try {
+            source.readTile(level, tx, ty, tile);
+            // Packed rows of inverted values, so dark strokes are opaque
+            byte[] alpha = new byte[width * height];
+            for (int y = 0; y < height; y++) {
+                int from = y * MipPyramid.TILE_SIZE;
+                int to = y * width;
+                for (int x = 0; x < width; x++) {
+                    alpha[to + x] = (byte) ~tile[from + x];
+                }
+            }
+            Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ALPHA_8);
+            bitmap.copyPixelsFromBuffer(ByteBuffer.wrap(alpha));
+            return bitmap;
+        } finally {
+            pool.release(tile);
+        }
+    }
+
+    private static long key(int level, int tx, int ty) {
+        return ((long) level << 48) | ((long) ty << 24) | tx;
+    }
+}
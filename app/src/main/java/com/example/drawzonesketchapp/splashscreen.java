@@ -1,31 +0,0 @@
-package com.example.drawzonesketchapp;
-
-import android.content.Intent;
-import android.os.Bundle;
-import android.os.Handler;
-import android.window.SplashScreen;
-
-import androidx.activity.EdgeToEdge;
-import androidx.appcompat.app.AppCompatActivity;
-import androidx.core.graphics.Insets;
-import androidx.core.view.ViewCompat;
-import androidx.core.view.WindowInsetsCompat;
-
-public class splashscreen extends AppCompatActivity {
-
-    @Override
-    protected void onCreate(Bundle savedInstanceState) {
-        super.onCreate(savedInstanceState);
-        EdgeToEdge.enable(this);
-        setContentView(R.layout.activity_splashscreen);
-        new Handler().postDelayed(new Runnable() {
-            @Override
-            public void run() {
-                Intent intent=new Intent(splashscreen.this,MainActivity.class);
-                startActivity(intent);
-                finish();
-            }
-        },2000);
-    }
-}
-
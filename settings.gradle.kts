@@ -21,4 +21,6 @@ dependencyResolutionManagement {
 
 rootProject.name = "DrawZone(Sketch App)"
 include(":app")
+include(":sketch-core")
+include(":sketch-cli")
  
\ No newline at end of file
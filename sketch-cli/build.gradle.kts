@@ -0,0 +1,19 @@
+plugins {
+    application
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_11
+    targetCompatibility = JavaVersion.VERSION_11
+}
+
+dependencies {
+    implementation(project(":sketch-core"))
+    testImplementation(libs.junit)
+}
+
+// ./gradlew :sketch-cli:installDist, then sketch-cli/build/install/sketch-cli/bin/sketch-cli
+application {
+    mainClass.set("com.example.drawzonesketchapp.cli.SketchCli")
+    applicationName = "sketch-cli"
+}
@@ -0,0 +1,355 @@
+package com.example.drawzonesketchapp.cli;
+
+import com.example.drawzonesketchapp.sketch.BatchPipeline;
+import com.example.drawzonesketchapp.sketch.Blur;
+import com.example.drawzonesketchapp.sketch.BoxBlur;
+import com.example.drawzonesketchapp.sketch.BufferPool;
+import com.example.drawzonesketchapp.sketch.CancellationToken;
+import com.example.drawzonesketchapp.sketch.FilterGraph;
+import com.example.drawzonesketchapp.sketch.GrayPngWriter;
+import com.example.drawzonesketchapp.sketch.SketchStyle;
+import com.example.drawzonesketchapp.sketch.SketchStyles;
+import com.example.drawzonesketchapp.sketch.StackBlur;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * Converts a directory of images to sketches on a plain JVM.
+ * <p>
+ * Images are read and written with {@link ImageIO} and run through the same
+ * {@link BatchPipeline}, {@link FilterGraph} and styles as the app's batch conversion, one
+ * image per worker with a serial blur. Given the same source pixels, style, radius and blur,
+ * the output matches the app pixel for pixel. The decode is the one part that differs:
+ * ImageIO ignores EXIF orientation, and {@code --max-dim} scales with Java2D rather than the
+ * Android decoder, so leave it off when comparing against the app.
+ */
+public final class SketchCli {
+
+    static final String USAGE = String.join("\n",
+            "Usage: sketch-cli [options] <input-dir> <output-dir>",
+            "  --style NAME     pencil, charcoal, colored or ink (default pencil)",
+            "  --radius N       blur radius in pixels (default 5)",
+            "  --blur NAME      stack or box (default stack)",
+            "  --workers N      images converted at once (default: all cores)",
+            "  --max-dim N      scale images down to fit N x N first (default: full size)",
+            "  --format NAME    png, gray-png or jpeg (default png)",
+            "  --quality N      JPEG quality, 0..100 (default 90)");
+
+    /** Output encodings; the PNGs are lossless, so they keep the exact sketch values. */
+    enum Format {
+        PNG("png", ".png"),
+        GRAY_PNG("gray-png", ".png"),
+        JPEG("jpeg", ".jpg");
+
+        final String option;
+        final String extension;
+
+        Format(String option, String extension) {
+            this.option = option;
+            this.extension = extension;
+        }
+
+        static Format named(String option) {
+            for (Format format : values()) {
+                if (format.option.equals(option)) return format;
+            }
+            throw new IllegalArgumentException("Unknown format: " + option);
+        }
+    }
+
+    /** Parsed command line. */
+    static final class Options {
+        Path input;
+        Path output;
+        SketchStyle style = SketchStyles.PENCIL;
+        int radius = 5;
+        String blur = "stack";
+        int workers = Runtime.getRuntime().availableProcessors();
+        int maxDimension;
+        Format format = Format.PNG;
+        int quality = 90;
+
+        /** @throws IllegalArgumentException with a message for the user if the arguments are wrong */
+        static Options parse(String[] args) {
+            Options options = new Options();
+            List<String> paths = new ArrayList<>();
+            for (int i = 0; i < args.length; i++) {
+                String arg = args[i];
+                if (!arg.startsWith("--")) {
+                    paths.add(arg);
+                    continue;
+                }
+                if (i + 1 == args.length) throw new IllegalArgumentException("Missing value for " + arg);
+                String value = args[++i];
+                switch (arg) {
+                    case "--style":
+                        options.style = SketchStyles.named(value);
+                        // named() falls back to pencil, which would hide a typo here
+                        if (!options.style.name().equals(value)) {
+                            throw new IllegalArgumentException("Unknown style: " + value);
+                        }
+                        break;
+                    case "--radius":
+                        options.radius = positive(arg, value);
+                        break;
+                    case "--blur":
+                        if (!value.equals("stack") && !value.equals("box")) {
+                            throw new IllegalArgumentException("Unknown blur: " + value);
+                        }
+                        options.blur = value;
+                        break;
+                    case "--workers":
+                        options.workers = positive(arg, value);
+                        break;
+                    case "--max-dim":
+                        options.maxDimension = positive(arg, value);
+                        break;
+                    case "--format":
+                        options.format = Format.named(value);
+                        break;
+                    case "--quality":
+                        options.quality = integer(arg, value);
+                        if (options.quality > 100) throw new IllegalArgumentException("--quality must be 0..100");
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown option: " + arg);
+                }
+            }
+            if (paths.size() != 2) throw new IllegalArgumentException("Expected an input and an output directory");
+            options.input = Paths.get(paths.get(0));
+            options.output = Paths.get(paths.get(1));
+            return options;
+        }
+
+        private static int positive(String option, String value) {
+            int n = integer(option, value);
+            if (n < 1) throw new IllegalArgumentException(option + " must be positive");
+            return n;
+        }
+
+        private static int integer(String option, String value) {
+            try {
+                int n = Integer.parseInt(value);
+                if (n < 0) throw new IllegalArgumentException(option + " must not be negative");
+                return n;
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException(option + " expects a number, got " + value);
+            }
+        }
+    }
+
+    /** A decoded or sketched image as a pooled pixel buffer. */
+    private static final class Frame {
+        final Path path;
+        final int[] pixels;
+        final int width, height;
+
+        Frame(Path path, int[] pixels, int width, int height) {
+            this.path = path;
+            this.pixels = pixels;
+            this.width = width;
+            this.height = height;
+        }
+    }
+
+    private static final int QUEUE_CAPACITY = 2;
+    // The pool may hold up to this fraction of the heap, as in the app
+    private static final int POOL_HEAP_DIVISOR = 8;
+
+    private SketchCli() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options;
+        try {
+            options = Options.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+            return;
+        }
+        BatchPipeline.Stats stats;
+        try {
+            stats = run(options, System.out, System.err);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.exit(2);
+            return;
+        }
+        System.exit(stats.failed > 0 ? 1 : 0);
+    }
+
+    /**
+     * Converts every readable image directly in the input directory into the output
+     * directory, which is created if needed. Per-image failures are reported on {@code err}
+     * and do not stop the batch.
+     *
+     * @throws IllegalArgumentException before converting anything if two inputs would be
+     *                                  written to the same output file
+     */
+    static BatchPipeline.Stats run(Options options, PrintStream out, PrintStream err)
+            throws IOException, InterruptedException {
+        List<Path> inputs = listImages(options.input);
+        checkTargets(inputs, options);
+        Files.createDirectories(options.output);
+
+        BufferPool pool = new BufferPool(Runtime.getRuntime().maxMemory() / POOL_HEAP_DIVISOR);
+        Blur blur = options.blur.equals("box") ? new BoxBlur(pool) : StackBlur.SERIAL;
+        BatchPipeline<Path, Frame, Frame> pipeline = new BatchPipeline<>(
+                (path, t) -> decode(path, options.maxDimension, pool),
+                (frame, t) -> {
+                    int[] sketch = pool.acquire(frame.width * frame.height);
+                    try (FilterGraph graph = new FilterGraph(frame.pixels, frame.width, frame.height, pool)) {
+                        options.style.render(graph, options.radius, blur, sketch, t);
+                    }
+                    pool.release(frame.pixels);
+                    return new Frame(frame.path, sketch, frame.width, frame.height);
+                },
+                (frame, t) -> {
+                    try {
+                        encode(frame, options);
+                    } finally {
+                        pool.release(frame.pixels);
+                    }
+                    return frame.path;
+                },
+                options.workers, QUEUE_CAPACITY);
+
+        BatchPipeline.Stats stats = pipeline.run(inputs, (path, error, progress) -> {
+            if (error != null) err.println(path.getFileName() + ": " + error.getMessage());
+        }, CancellationToken.NONE);
+        out.println(String.format(Locale.US, "%d converted, %d failed in %.1f s (%.1f images/s, %d workers)",
+                stats.completed, stats.failed, stats.elapsedNanos / 1e9, stats.imagesPerSecond(), options.workers));
+        return stats;
+    }
+
+    /** Regular files in {@code dir} with a suffix ImageIO can read, by name. */
+    private static List<Path> listImages(Path dir) throws IOException {
+        Set<String> suffixes = new HashSet<>();
+        for (String suffix : ImageIO.getReaderFileSuffixes()) {
+            suffixes.add(suffix.toLowerCase(Locale.ROOT));
+        }
+        List<Path> images = new ArrayList<>();
+        try (Stream<Path> files = Files.list(dir)) {
+            files.filter(Files::isRegularFile)
+                    .filter(path -> suffixes.contains(suffix(path)))
+                    .sorted()
+                    .forEach(images::add);
+        }
+        return images;
+    }
+
+    /**
+     * Fails if two inputs share a base name, such as {@code photo.jpg} and {@code photo.png},
+     * so that one sketch would silently overwrite the other. Names are compared ignoring case,
+     * as the output may be on a case-insensitive file system.
+     */
+    private static void checkTargets(List<Path> inputs, Options options) {
+        Map<String, Path> sources = new HashMap<>();
+        for (Path input : inputs) {
+            Path target = targetFor(input, options);
+            Path other = sources.put(target.getFileName().toString().toLowerCase(Locale.ROOT), input);
+            if (other != null) {
+                throw new IllegalArgumentException(other.getFileName() + " and " + input.getFileName()
+                        + " would both be written to " + target.getFileName() + "; rename one of them");
+            }
+        }
+    }
+
+    private static Path targetFor(Path input, Options options) {
+        String name = input.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return options.output.resolve((dot < 0 ? name : name.substring(0, dot)) + options.format.extension);
+    }
+
+    private static String suffix(Path path) {
+        String name = path.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return dot < 0 ? "" : name.substring(dot + 1).toLowerCase(Locale.ROOT);
+    }
+
+    private static Frame decode(Path path, int maxDimension, BufferPool pool) throws IOException {
+        BufferedImage image = ImageIO.read(path.toFile());
+        if (image == null) throw new IOException("Unsupported image " + path);
+
+        int width = image.getWidth();
+        int height = image.getHeight();
+        if (maxDimension > 0 && Math.max(width, height) > maxDimension) {
+            // Fit the bounds, never scaling up, as the app's decoder does
+            float scale = maxDimension / (float) Math.max(width, height);
+            width = Math.max(1, Math.round(width * scale));
+            height = Math.max(1, Math.round(height * scale));
+            BufferedImage scaled = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+            Graphics2D g = scaled.createGraphics();
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.drawImage(image, 0, 0, width, height, null);
+            g.dispose();
+            image = scaled;
+        }
+        int[] pixels = pool.acquire(width * height);
+        if (image.getType() == BufferedImage.TYPE_BYTE_GRAY) {
+            // getRGB() would map gray through a linear color space; Android reads it as sRGB gray
+            int[] gray = image.getRaster().getPixels(0, 0, width, height, (int[]) null);
+            for (int i = 0; i < gray.length; i++) {
+                pixels[i] = 0xff000000 | gray[i] * 0x010101;
+            }
+        } else {
+            image.getRGB(0, 0, width, height, pixels, 0, width);
+        }
+        return new Frame(path, pixels, width, height);
+    }
+
+    private static void encode(Frame frame, Options options) throws IOException {
+        Path target = targetFor(frame.path, options);
+
+        if (options.format == Format.GRAY_PNG) {
+            try (GrayPngWriter png = new GrayPngWriter(new BufferedOutputStream(Files.newOutputStream(target)),
+                    frame.width, frame.height)) {
+                png.write(frame.pixels, 0, frame.height);
+            }
+            return;
+        }
+
+        BufferedImage image = new BufferedImage(frame.width, frame.height, BufferedImage.TYPE_INT_RGB);
+        image.setRGB(0, 0, frame.width, frame.height, frame.pixels, 0, frame.width);
+        try (OutputStream file = new BufferedOutputStream(Files.newOutputStream(target))) {
+            if (options.format == Format.PNG) {
+                ImageIO.write(image, "png", file);
+                return;
+            }
+            ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+            try (ImageOutputStream stream = ImageIO.createImageOutputStream(file)) {
+                writer.setOutput(stream);
+                ImageWriteParam param = writer.getDefaultWriteParam();
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                param.setCompressionQuality(options.quality / 100f);
+                writer.write(null, new IIOImage(image, null, null), param);
+            } finally {
+                writer.dispose();
+            }
+        }
+    }
+}
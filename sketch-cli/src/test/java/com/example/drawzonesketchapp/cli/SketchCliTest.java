@@ -0,0 +1,139 @@
+package com.example.drawzonesketchapp.cli;
+
+import com.example.drawzonesketchapp.sketch.BatchPipeline;
+import com.example.drawzonesketchapp.sketch.BufferPool;
+import com.example.drawzonesketchapp.sketch.CancellationToken;
+import com.example.drawzonesketchapp.sketch.FilterGraph;
+import com.example.drawzonesketchapp.sketch.SketchStyles;
+import com.example.drawzonesketchapp.sketch.StackBlur;
+import org.junit.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class SketchCliTest {
+
+    private static int[] randomArgb(int width, int height, long seed) {
+        Random random = new Random(seed);
+        int[] pixels = new int[width * height];
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = 0xff000000 | random.nextInt(0x1000000);
+        }
+        return pixels;
+    }
+
+    private static void writePng(int[] argb, int width, int height, Path file) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        image.setRGB(0, 0, width, height, argb, 0, width);
+        ImageIO.write(image, "png", file.toFile());
+    }
+
+    /** The app's batch render of the same pixels. */
+    private static int[] expectedSketch(int[] argb, int width, int height, int radius) {
+        int[] out = new int[width * height];
+        try (FilterGraph graph = new FilterGraph(argb, width, height, BufferPool.NONE)) {
+            SketchStyles.COLORED_PENCIL.render(graph, radius, StackBlur::blur, out, CancellationToken.NONE);
+        }
+        return out;
+    }
+
+    private static BatchPipeline.Stats run(String... args) throws Exception {
+        PrintStream quiet = new PrintStream(new ByteArrayOutputStream());
+        return SketchCli.run(SketchCli.Options.parse(args), quiet, quiet);
+    }
+
+    @Test
+    public void matchesCoreRenderPixelForPixel() throws Exception {
+        Path in = Files.createTempDirectory("cli-in");
+        Path out = in.resolveSibling(in.getFileName() + "-out");
+        int[][] sizes = {{120, 80}, {33, 71}};
+        for (int i = 0; i < sizes.length; i++) {
+            writePng(randomArgb(sizes[i][0], sizes[i][1], i), sizes[i][0], sizes[i][1], in.resolve("image" + i + ".png"));
+        }
+        Files.write(in.resolve("notes.txt"), new byte[]{1, 2, 3});
+
+        BatchPipeline.Stats stats = run("--style", "colored", "--radius", "7", "--workers", "2",
+                in.toString(), out.toString());
+
+        assertEquals(2, stats.completed);
+        assertEquals(0, stats.failed);
+        for (int i = 0; i < sizes.length; i++) {
+            int width = sizes[i][0];
+            int height = sizes[i][1];
+            BufferedImage sketch = ImageIO.read(out.resolve("image" + i + ".png").toFile());
+            int[] actual = sketch.getRGB(0, 0, width, height, null, 0, width);
+            assertArrayEquals(expectedSketch(randomArgb(width, height, i), width, height, 7), actual);
+        }
+    }
+
+    @Test
+    public void grayPngKeepsSketchValues() throws Exception {
+        Path in = Files.createTempDirectory("cli-in");
+        Path out = in.resolveSibling(in.getFileName() + "-out");
+        int width = 64;
+        int height = 48;
+        int[] source = randomArgb(width, height, 9);
+        writePng(source, width, height, in.resolve("photo.png"));
+
+        run("--format", "gray-png", in.toString(), out.toString());
+
+        int[] expected = new int[width * height];
+        try (FilterGraph graph = new FilterGraph(source, width, height, BufferPool.NONE)) {
+            SketchStyles.PENCIL.render(graph, 5, StackBlur::blur, expected, CancellationToken.NONE);
+        }
+        File file = out.resolve("photo.png").toFile();
+        int[] gray = ImageIO.read(file).getRaster().getPixels(0, 0, width, height, (int[]) null);
+        for (int i = 0; i < gray.length; i++) {
+            assertEquals(expected[i] & 0xff, gray[i]);
+        }
+    }
+
+    @Test
+    public void unreadableImageFailsOnlyThatImage() throws Exception {
+        Path in = Files.createTempDirectory("cli-in");
+        Path out = in.resolveSibling(in.getFileName() + "-out");
+        writePng(randomArgb(10, 10, 1), 10, 10, in.resolve("good.png"));
+        Files.write(in.resolve("broken.png"), new byte[]{1, 2, 3});
+
+        BatchPipeline.Stats stats = run(in.toString(), out.toString());
+
+        assertEquals(1, stats.completed);
+        assertEquals(1, stats.failed);
+    }
+
+    @Test
+    public void sameBaseNameFailsBeforeConverting() throws Exception {
+        Path in = Files.createTempDirectory("cli-in");
+        Path out = in.resolveSibling(in.getFileName() + "-out");
+        writePng(randomArgb(10, 10, 1), 10, 10, in.resolve("photo.png"));
+        BufferedImage bmp = new BufferedImage(10, 10, BufferedImage.TYPE_INT_RGB);
+        ImageIO.write(bmp, "bmp", in.resolve("photo.bmp").toFile());
+
+        try {
+            run(in.toString(), out.toString());
+            fail("Expected the output name collision to be rejected");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("photo.png"));
+        }
+        assertFalse(Files.exists(out));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsUnknownStyle() {
+        SketchCli.Options.parse(new String[]{"--style", "crayon", "in", "out"});
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void requiresBothDirectories() {
+        SketchCli.Options.parse(new String[]{"--radius", "3", "in"});
+    }
+}
@@ -0,0 +1,31 @@
+plugins {
+    `java-library`
+    alias(libs.plugins.jmh)
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_11
+    targetCompatibility = JavaVersion.VERSION_11
+}
+
+dependencies {
+    testImplementation(libs.junit)
+}
+
+// ./gradlew :sketch-core:jmh
+// Results land in build/results/jmh/results.json so they can be diffed between releases.
+jmh {
+    jmhVersion.set(libs.versions.jmh)
+    resultFormat.set("JSON")
+    fork.set(1)
+    warmupIterations.set(3)
+    iterations.set(5)
+}
+
+tasks.test {
+    // ./gradlew :sketch-core:test -Pgolden.update rewrites the golden images from the current output
+    systemProperty("golden.update", project.hasProperty("golden.update"))
+    systemProperty("golden.dir", file("src/test/resources/golden").path)
+    // Stage time budgets are for a laptop; -Pperf.budgetScale=2 doubles them on slower machines
+    systemProperty("perf.budgetScale", project.findProperty("perf.budgetScale") ?: "1")
+}
@@ -0,0 +1,37 @@
+package com.example.drawzonesketchapp.sketch;
+
+import java.util.Random;
+
+/**
+ * Deterministic synthetic photos for the benchmarks.
+ */
+final class BenchmarkImages {
+
+    private BenchmarkImages() {
+    }
+
+    /** Width of a 4:3 image with roughly {@code megapixels} million pixels. */
+    static int width(double megapixels) {
+        return (int) Math.round(Math.sqrt(megapixels * 1_000_000 * 4 / 3));
+    }
+
+    /** Height of a 4:3 image with roughly {@code megapixels} million pixels. */
+    static int height(double megapixels) {
+        return width(megapixels) * 3 / 4;
+    }
+
+    /** Gradients plus noise, so every stage sees a realistic value spread. */
+    static int[] argb(int width, int height) {
+        Random random = new Random(42);
+        int[] pixels = new int[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int r = (x * 255 / width + random.nextInt(32)) & 0xff;
+                int g = (y * 255 / height + random.nextInt(32)) & 0xff;
+                int b = ((x + y) >> 3) & 0xff;
+                pixels[y * width + x] = 0xff000000 | (r << 16) | (g << 8) | b;
+            }
+        }
+        return pixels;
+    }
+}
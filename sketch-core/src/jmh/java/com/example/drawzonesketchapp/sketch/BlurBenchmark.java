@@ -0,0 +1,102 @@
+package com.example.drawzonesketchapp.sketch;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Blur stage across image size and radius. {@code boxBlur} should stay flat across the radius
+ * parameter while {@code stackBlur} grows with it. The {@code *Bytes} cases run the same
+ * kernels on an 8-bit plane, and the {@code *Direct} cases on that plane in a direct buffer,
+ * which costs the window copies on top.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class BlurBenchmark {
+
+    @Param({"0.5", "1", "4", "12"})
+    public double megapixels;
+
+    @Param({"1", "5", "10", "25", "50"})
+    public int radius;
+
+    private int width;
+    private int height;
+    private int[] plane;
+    private byte[] bytes;
+    private ByteBuffer direct;
+    private final Blur parallel = new ParallelStackBlur();
+    private final Blur box = new BoxBlur();
+
+    @Setup
+    public void setUp() {
+        width = BenchmarkImages.width(megapixels);
+        height = BenchmarkImages.height(megapixels);
+        plane = new int[width * height];
+        Luminance.toInvertedPlane(BenchmarkImages.argb(width, height), plane, plane.length);
+        bytes = new byte[plane.length];
+        Luminance.toInvertedPlane(BenchmarkImages.argb(width, height), bytes, bytes.length);
+        direct = ByteBuffer.allocateDirect(bytes.length);
+        direct.put(bytes);
+        direct.rewind();
+    }
+
+    @Benchmark
+    public int[] stackBlur() {
+        // Stack blur cost does not depend on pixel values, so blurring in place each
+        // iteration measures the same work as blurring a fresh copy.
+        StackBlur.blur(plane, width, height, radius);
+        return plane;
+    }
+
+    @Benchmark
+    public int[] parallelStackBlur() {
+        parallel.blur(plane, width, height, radius);
+        return plane;
+    }
+
+    @Benchmark
+    public int[] boxBlur() {
+        box.blur(plane, width, height, radius);
+        return plane;
+    }
+
+    @Benchmark
+    public byte[] stackBlurBytes() {
+        StackBlur.blur(bytes, width, height, radius, CancellationToken.NONE);
+        return bytes;
+    }
+
+    @Benchmark
+    public byte[] boxBlurBytes() {
+        box.blur(bytes, width, height, radius, CancellationToken.NONE);
+        return bytes;
+    }
+
+    @Benchmark
+    public ByteBuffer stackBlurDirect() {
+        StackBlur.blur(direct, width, height, radius, CancellationToken.NONE);
+        return direct;
+    }
+
+    @Benchmark
+    public ByteBuffer parallelStackBlurDirect() {
+        parallel.blur(direct, width, height, radius, CancellationToken.NONE);
+        return direct;
+    }
+
+    @Benchmark
+    public ByteBuffer boxBlurDirect() {
+        box.blur(direct, width, height, radius, CancellationToken.NONE);
+        return direct;
+    }
+}
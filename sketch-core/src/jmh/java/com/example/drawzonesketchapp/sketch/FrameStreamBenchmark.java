@@ -0,0 +1,101 @@
+package com.example.drawzonesketchapp.sketch;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A synthetic camera feeding {@link FrameProcessor} at a fixed frame rate.
+ * <p>
+ * Each invocation streams {@link #FRAMES} luma frames paced at {@code fps} and waits for the
+ * last one. The score is the wall time of the stream. The latency and drop counters come from
+ * the processor's own stats, so a device-sized frame at 30 fps shows directly whether the
+ * kernels keep up.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class FrameStreamBenchmark {
+
+    static final int FRAMES = 90;
+
+    /** Preview sizes CameraX commonly delivers for analysis. */
+    @Param({"640x480", "1280x720"})
+    public String size;
+
+    @Param({"30"})
+    public int fps;
+
+    @Param({"5", "15"})
+    public int radius;
+
+    /** Per-iteration results; JMH reports them next to the score. */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Frames {
+        public double meanLatencyMillis;
+        public double maxLatencyMillis;
+        public double droppedPercent;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            meanLatencyMillis = maxLatencyMillis = droppedPercent = 0;
+        }
+    }
+
+    private int width;
+    private int height;
+    private byte[][] frames;
+
+    @Setup
+    public void setUp() {
+        String[] parts = size.split("x");
+        width = Integer.parseInt(parts[0]);
+        height = Integer.parseInt(parts[1]);
+        // A few distinct frames, so consecutive offers are not identical
+        frames = new byte[4][];
+        int[] argb = BenchmarkImages.argb(width + frames.length, height);
+        for (int f = 0; f < frames.length; f++) {
+            frames[f] = new byte[width * height];
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < width; x++) {
+                    frames[f][y * width + x] = (byte) Luminance.luma(argb[y * (width + frames.length) + x + f]);
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public FrameProcessor.Stats stream(Frames counters) throws InterruptedException {
+        long interval = TimeUnit.SECONDS.toNanos(1) / fps;
+        FrameProcessor.Stats stats;
+        try (FrameProcessor processor = new FrameProcessor(StackBlur.SERIAL, radius, (sketch, w, h, t) -> {
+        })) {
+            long next = System.nanoTime();
+            for (int i = 0; i < FRAMES; i++) {
+                processor.offer(frames[i % frames.length], width, height, next);
+                next += interval;
+                LockSupport.parkNanos(next - System.nanoTime());
+            }
+            stats = processor.stats();
+            while (stats.processed + stats.dropped + stats.failed < stats.offered) {
+                Thread.sleep(1);
+                stats = processor.stats();
+            }
+        }
+        counters.meanLatencyMillis = stats.meanLatencyNanos() / 1e6;
+        counters.maxLatencyMillis = stats.maxLatencyNanos / 1e6;
+        counters.droppedPercent = stats.droppedRate() * 100;
+        return stats;
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.drawzonesketchapp.sketch;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Whole sketch conversion, source pixels to dodged output.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class PipelineBenchmark {
+
+    @Param({"0.5", "1", "4", "12"})
+    public double megapixels;
+
+    @Param({"1", "5", "10", "25", "50"})
+    public int radius;
+
+    private int width;
+    private int height;
+    private int[] source;
+    private int[] pixels;
+    private byte[] gray;
+    private final BufferPool pool = new BufferPool(256L << 20);
+
+    @Setup
+    public void setUp() {
+        width = BenchmarkImages.width(megapixels);
+        height = BenchmarkImages.height(megapixels);
+        source = BenchmarkImages.argb(width, height);
+        pixels = new int[source.length];
+        gray = new byte[source.length];
+    }
+
+    @Setup(Level.Invocation)
+    public void reset() {
+        System.arraycopy(source, 0, pixels, 0, source.length);
+    }
+
+    @Benchmark
+    public int[] sketch() {
+        SketchEngine.sketch(pixels, width, height, radius);
+        return pixels;
+    }
+
+    /** Steady-state re-conversion with a warm pool; run with {@code -prof gc} to see allocation. */
+    @Benchmark
+    public int[] sketchPooled() {
+        SketchEngine.sketch(pixels, width, height, radius, StackBlur::blur, pool, CancellationToken.NONE);
+        return pixels;
+    }
+
+    /** 8-bit working plane and output; the source is only read. */
+    @Benchmark
+    public byte[] sketchGray() {
+        SketchEngine.sketchGray(source, gray, width, height, radius, StackBlur.SERIAL, CancellationToken.NONE);
+        return gray;
+    }
+
+    /** Every built-in style on one graph, sharing luminance and blurred planes. */
+    @Benchmark
+    public int[] allStylesShared() {
+        try (FilterGraph graph = new FilterGraph(source, width, height, pool)) {
+            for (SketchStyle style : SketchStyles.all()) {
+                style.render(graph, radius, StackBlur.SERIAL, pixels, CancellationToken.NONE);
+            }
+        }
+        return pixels;
+    }
+
+    /** Every built-in style on its own graph, as if each were a separate conversion. */
+    @Benchmark
+    public int[] allStylesSeparate() {
+        for (SketchStyle style : SketchStyles.all()) {
+            try (FilterGraph graph = new FilterGraph(source, width, height, pool)) {
+                style.render(graph, radius, StackBlur.SERIAL, pixels, CancellationToken.NONE);
+            }
+        }
+        return pixels;
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.drawzonesketchapp.sketch;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-pixel stages whose cost does not depend on the blur radius.
+ * <p>
+ * The {@code Reference} variants are the straightforward per-pixel versions the table and
+ * packed kernels replace, kept here to measure the speedup; the results are identical.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class StageBenchmark {
+
+    @Param({"0.5", "1", "4", "12"})
+    public double megapixels;
+
+    private int n;
+    private int[] argb;
+    private int[] plane;
+    private int[] out;
+    private byte[] gray;
+    private byte[] grayOut;
+
+    @Setup
+    public void setUp() {
+        int width = BenchmarkImages.width(megapixels);
+        int height = BenchmarkImages.height(megapixels);
+        n = width * height;
+        argb = BenchmarkImages.argb(width, height);
+        plane = new int[n];
+        out = new int[n];
+        Luminance.toInvertedPlane(argb, plane, n);
+        gray = new byte[n];
+        grayOut = new byte[n];
+        Luminance.toInvertedPlane(argb, gray, n);
+    }
+
+    @Benchmark
+    public int[] grayscale() {
+        Luminance.toPlane(argb, out, n);
+        return out;
+    }
+
+    @Benchmark
+    public int[] invert() {
+        Luminance.invert(plane, n);
+        return plane;
+    }
+
+    @Benchmark
+    public int[] grayscaleInverted() {
+        Luminance.toInvertedPlane(argb, out, n);
+        return out;
+    }
+
+    @Benchmark
+    public int[] colorDodge() {
+        ColorDodge.blend(argb, plane, out, n);
+        return out;
+    }
+
+    @Benchmark
+    public int[] colorDodgeReference() {
+        for (int i = 0; i < n; i++) {
+            int v = ColorDodge.dodge((argb[i] >> 16) & 0xff, plane[i]);
+            out[i] = 0xff000000 | (v << 16) | (v << 8) | v;
+        }
+        return out;
+    }
+
+    @Benchmark
+    public byte[] colorDodgeGray() {
+        ColorDodge.blend(argb, gray, grayOut, n);
+        return grayOut;
+    }
+
+    @Benchmark
+    public int[] invertArgb() {
+        Luminance.invertArgb(out, n);
+        return out;
+    }
+
+    @Benchmark
+    public int[] invertArgbReference() {
+        for (int i = 0; i < n; i++) {
+            int c = out[i];
+            out[i] = (c & 0xff000000)
+                    | ((255 - ((c >> 16) & 0xff)) << 16)
+                    | ((255 - ((c >> 8) & 0xff)) << 8)
+                    | (255 - (c & 0xff));
+        }
+        return out;
+    }
+}
@@ -0,0 +1,211 @@
+package com.example.drawzonesketchapp.sketch;
+
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Three-stage batch conversion: decode, sketch, encode.
+ * <p>
+ * Decode and encode each run on one thread (they are I/O bound); sketching runs on
+ * {@code workers} threads. Stages are joined by bounded queues, so a slow stage blocks the
+ * one feeding it instead of letting decoded images pile up. At most
+ * {@code 2 * queueCapacity + workers + 2} items are in memory at any time, however many
+ * inputs there are. Order of completion is not the input order.
+ *
+ * @param <I> input, e.g. an image location
+ * @param <D> decoded image
+ * @param <S> sketched image
+ */
+public final class BatchPipeline<I, D, S> {
+
+    /** One pipeline stage; may throw to fail the item without stopping the batch. */
+    public interface Stage<A, B> {
+        B apply(A input, CancellationToken token) throws Exception;
+    }
+
+    public interface Listener<I> {
+        /**
+         * Called on a pipeline thread when {@code input} has been encoded or has failed in
+         * any stage; {@code error} is null on success.
+         */
+        void onItemFinished(I input, Exception error, Stats progress);
+    }
+
+    /** Counts and throughput for a batch, so far or in total. */
+    public static final class Stats {
+        public final int total;
+        public final int completed;
+        public final int failed;
+        public final long elapsedNanos;
+
+        Stats(int total, int completed, int failed, long elapsedNanos) {
+            this.total = total;
+            this.completed = completed;
+            this.failed = failed;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        /** Successfully encoded images per second of wall time. */
+        public double imagesPerSecond() {
+            return elapsedNanos > 0 ? completed * 1e9 / elapsedNanos : 0;
+        }
+    }
+
+    private static final Object END = new Object();
+
+    private final Stage<I, D> decode;
+    private final Stage<D, S> sketch;
+    private final Stage<S, ?> encode;
+    private final int workers;
+    private final int queueCapacity;
+
+    public BatchPipeline(Stage<I, D> decode, Stage<D, S> sketch, Stage<S, ?> encode, int workers,
+                         int queueCapacity) {
+        if (workers < 1 || queueCapacity < 1) {
+            throw new IllegalArgumentException("workers and queueCapacity must be positive");
+        }
+        this.decode = decode;
+        this.sketch = sketch;
+        this.encode = encode;
+        this.workers = workers;
+        this.queueCapacity = queueCapacity;
+    }
+
+    /**
+     * Converts every input and blocks until the batch is done. Items that fail are reported
+     * to the listener and skipped.
+     *
+     * @throws CancellationException if the token is cancelled
+     */
+    public Stats run(List<I> inputs, Listener<I> listener, CancellationToken token) throws InterruptedException {
+        Run run = new Run(inputs.size(), listener, token);
+        ExecutorService threads = Executors.newFixedThreadPool(workers + 2, runnable -> {
+            Thread thread = new Thread(runnable, "sketch-batch");
+            thread.setDaemon(true);
+            return thread;
+        });
+        CompletionService<Void> stages = new ExecutorCompletionService<>(threads);
+        Throwable failure = null;
+        try {
+            stages.submit(() -> run.decodeAll(inputs));
+            for (int i = 0; i < workers; i++) {
+                stages.submit(run::sketchAll);
+            }
+            stages.submit(run::encodeAll);
+            for (int i = 0; i < workers + 2; i++) {
+                try {
+                    stages.take().get();
+                } catch (ExecutionException e) {
+                    // Item failures are reported, not thrown, so a stage only ends early when
+                    // the batch is cancelled or broken; interrupt the stages blocked on it
+                    if (failure == null) failure = e.getCause();
+                    threads.shutdownNow();
+                }
+            }
+        } finally {
+            threads.shutdownNow();
+        }
+        token.throwIfCancelled();
+        if (failure != null) throw new IllegalStateException("Batch stage failed", failure);
+        return run.stats();
+    }
+
+    private static final class Item<I, T> {
+        final I input;
+        final T value;
+
+        Item(I input, T value) {
+            this.input = input;
+            this.value = value;
+        }
+    }
+
+    /** Queues and counters for one {@link #run}. */
+    private final class Run {
+        private final BlockingQueue<Object> decoded = new ArrayBlockingQueue<>(queueCapacity);
+        private final BlockingQueue<Object> sketched = new ArrayBlockingQueue<>(queueCapacity);
+        private final AtomicInteger sketchersLeft = new AtomicInteger(workers);
+        private final int total;
+        private final Listener<I> listener;
+        private final CancellationToken token;
+        private final long start = System.nanoTime();
+        private int completed, failed;
+
+        Run(int total, Listener<I> listener, CancellationToken token) {
+            this.total = total;
+            this.listener = listener;
+            this.token = token;
+        }
+
+        Void decodeAll(List<I> inputs) throws InterruptedException {
+            for (I input : inputs) {
+                token.throwIfCancelled();
+                D image = apply(decode, input, input);
+                if (image != null) decoded.put(new Item<>(input, image));
+            }
+            for (int i = 0; i < workers; i++) {
+                decoded.put(END);
+            }
+            return null;
+        }
+
+        @SuppressWarnings("unchecked")
+        Void sketchAll() throws InterruptedException {
+            for (Object next; (next = decoded.take()) != END; ) {
+                token.throwIfCancelled();
+                Item<I, D> item = (Item<I, D>) next;
+                S image = apply(sketch, item.input, item.value);
+                if (image != null) sketched.put(new Item<>(item.input, image));
+            }
+            // The last sketcher out closes the encode queue
+            if (sketchersLeft.decrementAndGet() == 0) sketched.put(END);
+            return null;
+        }
+
+        @SuppressWarnings("unchecked")
+        Void encodeAll() throws InterruptedException {
+            for (Object next; (next = sketched.take()) != END; ) {
+                token.throwIfCancelled();
+                Item<I, S> item = (Item<I, S>) next;
+                if (apply(encode, item.input, item.value) != null) finished(item.input, null);
+            }
+            return null;
+        }
+
+        /** Runs one stage on one item; a failure is reported and yields null. */
+        private <A, B> B apply(Stage<A, B> stage, I input, A value) {
+            try {
+                B result = stage.apply(value, token);
+                if (result == null) throw new IllegalStateException("Stage returned no result");
+                return result;
+            } catch (CancellationException e) {
+                throw e;
+            } catch (Exception e) {
+                finished(input, e);
+                return null;
+            }
+        }
+
+        private void finished(I input, Exception error) {
+            Stats progress;
+            synchronized (this) {
+                if (error == null) completed++;
+                else failed++;
+                progress = stats();
+            }
+            listener.onItemFinished(input, error, progress);
+        }
+
+        synchronized Stats stats() {
+            return new Stats(total, completed, failed, System.nanoTime() - start);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.drawzonesketchapp.sketch;
+
+import java.nio.ByteBuffer;
+
+/**
+ * An in-place blur of a single-channel plane: {@code int[]}, 8-bit {@code byte[]}, or 8-bit
+ * {@link ByteBuffer}.
+ * Implementations are selectable per conversion.
+ */
+public interface Blur {
+
+    /**
+     * Blurs {@code plane} in place, polling {@code token} between lines.
+     *
+     * @throws java.util.concurrent.CancellationException if the token is cancelled
+     */
+    void blur(int[] plane, int width, int height, int radius, CancellationToken token);
+
+    default void blur(int[] plane, int width, int height, int radius) {
+        blur(plane, width, height, radius, CancellationToken.NONE);
+    }
+
+    /**
+     * Blurs an 8-bit plane (values read unsigned) in place. The default widens through a
+     * temporary {@code int} plane; the built-in backends override it to work on the bytes
+     * directly.
+     *
+     * @throws java.util.concurrent.CancellationException if the token is cancelled
+     */
+    default void blur(byte[] plane, int width, int height, int radius, CancellationToken token) {
+        int n = width * height;
+        int[] wide = new int[n];
+        for (int i = 0; i < n; i++) {
+            wide[i] = plane[i] & 0xff;
+        }
+        blur(wide, width, height, radius, token);
+        for (int i = 0; i < n; i++) {
+            plane[i] = (byte) wide[i];
+        }
+    }
+
+    /**
+     * Blurs an 8-bit plane held in {@code plane} from index 0, typically a direct buffer kept
+     * off the Java heap. The default copies it through a temporary {@code byte[]}; the
+     * built-in backends override it to stream the buffer through small heap windows instead.
+     * The buffer's position and limit are not changed.
+     *
+     * @throws java.util.concurrent.CancellationException if the token is cancelled
+     */
+    default void blur(ByteBuffer plane, int width, int height, int radius, CancellationToken token) {
+        byte[] heap = new byte[width * height];
+        ByteBuffer view = plane.duplicate();
+        view.position(0);
+        view.get(heap);
+        blur(heap, width, height, radius, token);
+        view.position(0);
+        view.put(heap);
+    }
+
+    /**
+     * How many pixels away an output pixel can be influenced from. Strip processing uses this
+     * as the overlap between bands.
+     */
+    default int reach(int radius) {
+        return radius;
+    }
+}
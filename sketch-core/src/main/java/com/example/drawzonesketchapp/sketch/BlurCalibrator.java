@@ -0,0 +1,69 @@
+package com.example.drawzonesketchapp.sketch;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Picks the fastest of several {@link Blur}s on this machine.
+ * <p>
+ * Every candidate blurs the same synthetic 8-bit plane, once to warm up and then
+ * {@code runs} more times; the candidate with the lowest median time wins. Meant to run once,
+ * in the background, with the result persisted by the caller.
+ */
+public final class BlurCalibrator {
+
+    private BlurCalibrator() {
+    }
+
+    /**
+     * Key of the fastest candidate for a {@code width x height} plane at {@code radius}. Ties
+     * go to the candidate that comes first in iteration order.
+     *
+     * @throws java.util.concurrent.CancellationException if the token is cancelled
+     */
+    public static String fastest(Map<String, Blur> candidates, int width, int height, int radius, int runs,
+                                 CancellationToken token) {
+        if (candidates.isEmpty()) {
+            throw new IllegalArgumentException("No candidates");
+        }
+        if (runs < 1) {
+            throw new IllegalArgumentException("runs must be positive: " + runs);
+        }
+        byte[] sample = samplePlane(width, height);
+        byte[] plane = new byte[sample.length];
+        long[] times = new long[runs];
+
+        String best = null;
+        long bestTime = Long.MAX_VALUE;
+        for (Map.Entry<String, Blur> candidate : candidates.entrySet()) {
+            Blur blur = candidate.getValue();
+            for (int run = -1; run < runs; run++) {
+                System.arraycopy(sample, 0, plane, 0, sample.length);
+                long start = System.nanoTime();
+                blur.blur(plane, width, height, radius, token);
+                if (run >= 0) times[run] = System.nanoTime() - start;
+            }
+            Arrays.sort(times);
+            long median = times[runs / 2];
+            if (median < bestTime) {
+                best = candidate.getKey();
+                bestTime = median;
+            }
+        }
+        return best;
+    }
+
+    /** Smooth gradients with noise, roughly like an inverted photo. */
+    private static byte[] samplePlane(int width, int height) {
+        Random random = new Random(width * 31L + height);
+        byte[] plane = new byte[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int v = (x * 255 / Math.max(1, width - 1) + y * 255 / Math.max(1, height - 1)) / 2;
+                plane[y * width + x] = (byte) Math.min(255, v + random.nextInt(32));
+            }
+        }
+        return plane;
+    }
+}
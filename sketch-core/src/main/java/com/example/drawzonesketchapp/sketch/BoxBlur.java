@@ -0,0 +1,245 @@
+package com.example.drawzonesketchapp.sketch;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Gaussian approximation from three successive box blurs on running sums.
+ * <p>
+ * Every pass adds one pixel and drops one pixel per output, so the cost per pixel is flat
+ * in the radius and no radius-sized lookup tables are needed. The box sizes are chosen so the
+ * combined kernel has the same variance as a {@link StackBlur} of the same radius, which
+ * keeps the look of a given radius the same when switching backends. Edges are clamped the
+ * same way the stack blur clamps them. A {@link ByteBuffer} plane is streamed through
+ * {@link PlaneWindows}, one box pass at a time.
+ */
+public final class BoxBlur implements Blur {
+
+    private static final int PASSES = 3;
+    // Fixed-point reciprocal of the box width; 255 * 2^22 still fits in an int
+    private static final int SHIFT = 22;
+
+    private final BufferPool pool;
+
+    public BoxBlur() {
+        this(BufferPool.NONE);
+    }
+
+    /** Borrows the row, column-sum and ring scratch buffers from {@code pool}. */
+    public BoxBlur(BufferPool pool) {
+        this.pool = pool;
+    }
+
+    @Override
+    public void blur(int[] plane, int width, int height, int radius, CancellationToken token) {
+        if (radius < 1) return;
+
+        int[] radii = boxRadii(radius);
+        int[] line = pool.acquire(width);
+        int[] sums = pool.acquire(width);
+        int[] ring = pool.acquire((radii[PASSES - 1] + 1) * width);
+        try {
+            for (int box : radii) {
+                if (box < 1) continue;
+                int inv = ((1 << SHIFT) + box) / (box + box + 1);
+                for (int y = 0; y < height; y++) {
+                    token.throwIfCancelled();
+                    boxRow(plane, y * width, width, box, inv, line);
+                }
+                boxColumns(plane, width, height, box, inv, sums, ring, token);
+            }
+        } finally {
+            pool.release(line);
+            pool.release(sums);
+            pool.release(ring);
+        }
+    }
+
+    @Override
+    public void blur(byte[] plane, int width, int height, int radius, CancellationToken token) {
+        if (radius < 1) return;
+
+        int[] radii = boxRadii(radius);
+        int[] line = pool.acquire(width);
+        int[] sums = pool.acquire(width);
+        byte[] ring = pool.acquireBytes((radii[PASSES - 1] + 1) * width);
+        try {
+            for (int box : radii) {
+                if (box < 1) continue;
+                int inv = ((1 << SHIFT) + box) / (box + box + 1);
+                for (int y = 0; y < height; y++) {
+                    token.throwIfCancelled();
+                    boxRow(plane, y * width, width, box, inv, line);
+                }
+                boxColumns(plane, width, height, box, inv, sums, ring, token);
+            }
+        } finally {
+            pool.release(line);
+            pool.release(sums);
+            pool.release(ring);
+        }
+    }
+
+    @Override
+    public void blur(ByteBuffer plane, int width, int height, int radius, CancellationToken token) {
+        if (radius < 1) return;
+
+        int[] radii = boxRadii(radius);
+        byte[] window = PlaneWindows.window(width, height);
+        // Column blocks are never wider than the window allows, nor than the image
+        int block = Math.min(width, Math.max(1, window.length / height));
+        int[] line = pool.acquire(width);
+        int[] sums = pool.acquire(block);
+        byte[] ring = pool.acquireBytes((radii[PASSES - 1] + 1) * block);
+        try {
+            for (int box : radii) {
+                if (box < 1) continue;
+                int inv = ((1 << SHIFT) + box) / (box + box + 1);
+                PlaneWindows.rows(plane, width, 0, height, window, (lines, w, h) -> {
+                    for (int y = 0; y < h; y++) {
+                        token.throwIfCancelled();
+                        boxRow(lines, y * w, w, box, inv, line);
+                    }
+                });
+                PlaneWindows.columns(plane, width, height, 0, width, window,
+                        (lines, w, h) -> boxColumns(lines, w, h, box, inv, sums, ring, token));
+            }
+        } finally {
+            pool.release(line);
+            pool.release(sums);
+            pool.release(ring);
+        }
+    }
+
+    @Override
+    public int reach(int radius) {
+        int reach = 0;
+        for (int box : boxRadii(radius)) {
+            reach += box;
+        }
+        return reach;
+    }
+
+    /**
+     * Radii of the three boxes whose combined variance matches a stack blur of
+     * {@code radius}. The stack blur's tent kernel has variance {@code r(r + 2) / 6}; a box of
+     * radius {@code b} has variance {@code b(b + 1) / 3}.
+     */
+    static int[] boxRadii(int radius) {
+        double variance = radius * (radius + 2) / 6.0;
+        // Ideal box width for PASSES equal boxes, then split between the odd widths around it
+        double ideal = Math.sqrt(12 * variance / PASSES + 1);
+        int lower = (int) Math.floor(ideal);
+        if (lower % 2 == 0) lower--;
+        int upper = lower + 2;
+        int m = (int) Math.round((12 * variance - PASSES * lower * lower - 4 * PASSES * lower - 3 * PASSES)
+                / (-4.0 * lower - 4));
+        int[] radii = new int[PASSES];
+        for (int i = 0; i < PASSES; i++) {
+            radii[i] = ((i < m ? lower : upper) - 1) / 2;
+        }
+        return radii;
+    }
+
+    /** Horizontal box pass over one row starting at {@code offset}. */
+    private static void boxRow(int[] plane, int offset, int width, int box, int inv, int[] line) {
+        System.arraycopy(plane, offset, line, 0, width);
+
+        int last = width - 1;
+        int sum = 0;
+        for (int i = -box; i <= box; i++) {
+            sum += line[Math.min(last, Math.max(i, 0))];
+        }
+
+        for (int x = 0; x < width; x++) {
+            plane[offset + x] = (sum * inv + (1 << (SHIFT - 1))) >> SHIFT;
+            sum += line[Math.min(last, x + box + 1)] - line[Math.max(0, x - box)];
+        }
+    }
+
+    /**
+     * Vertical box pass that sweeps whole rows, keeping one running sum per column, so memory
+     * is walked sequentially instead of column by column. Rows are overwritten as the sweep
+     * goes; the original values that still have to leave the window are kept in a ring of
+     * {@code box + 1} rows.
+     */
+    private static void boxColumns(int[] plane, int width, int height, int box, int inv, int[] sums, int[] ring,
+                                   CancellationToken token) {
+        int last = height - 1;
+        int slots = box + 1;
+        Arrays.fill(sums, 0);
+        for (int i = -box; i <= box; i++) {
+            int row = Math.min(last, Math.max(i, 0)) * width;
+            for (int x = 0; x < width; x++) {
+                sums[x] += plane[row + x];
+            }
+        }
+
+        for (int y = 0; y < height; y++) {
+            token.throwIfCancelled();
+            int row = y * width;
+            int saved = (y % slots) * width;
+            int in = Math.min(last, y + box + 1) * width;
+            int out = (Math.max(0, y - box) % slots) * width;
+            for (int x = 0; x < width; x++) {
+                ring[saved + x] = plane[row + x];
+                plane[row + x] = (sums[x] * inv + (1 << (SHIFT - 1))) >> SHIFT;
+            }
+            // The leaving row was saved to the ring when the sweep passed it (row 0 covers
+            // the clamped top edge); the entering row is still original.
+            for (int x = 0; x < width; x++) {
+                sums[x] += plane[in + x] - ring[out + x];
+            }
+        }
+    }
+
+    /** {@link #boxRow(int[], int, int, int, int, int[])} on an 8-bit plane. */
+    private static void boxRow(byte[] plane, int offset, int width, int box, int inv, int[] line) {
+        for (int x = 0; x < width; x++) {
+            line[x] = plane[offset + x] & 0xff;
+        }
+
+        int last = width - 1;
+        int sum = 0;
+        for (int i = -box; i <= box; i++) {
+            sum += line[Math.min(last, Math.max(i, 0))];
+        }
+
+        for (int x = 0; x < width; x++) {
+            plane[offset + x] = (byte) ((sum * inv + (1 << (SHIFT - 1))) >> SHIFT);
+            sum += line[Math.min(last, x + box + 1)] - line[Math.max(0, x - box)];
+        }
+    }
+
+    /**
+     * {@link #boxColumns(int[], int, int, int, int, int[], int[], CancellationToken)} on an
+     * 8-bit plane, with an 8-bit ring.
+     */
+    private static void boxColumns(byte[] plane, int width, int height, int box, int inv, int[] sums, byte[] ring,
+                                   CancellationToken token) {
+        int last = height - 1;
+        int slots = box + 1;
+        Arrays.fill(sums, 0);
+        for (int i = -box; i <= box; i++) {
+            int row = Math.min(last, Math.max(i, 0)) * width;
+            for (int x = 0; x < width; x++) {
+                sums[x] += plane[row + x] & 0xff;
+            }
+        }
+
+        for (int y = 0; y < height; y++) {
+            token.throwIfCancelled();
+            int row = y * width;
+            int saved = (y % slots) * width;
+            int in = Math.min(last, y + box + 1) * width;
+            int out = (Math.max(0, y - box) % slots) * width;
+            for (int x = 0; x < width; x++) {
+                ring[saved + x] = plane[row + x];
+                plane[row + x] = (byte) ((sums[x] * inv + (1 << (SHIFT - 1))) >> SHIFT);
+            }
+            for (int x = 0; x < width; x++) {
+                sums[x] += (plane[in + x] & 0xff) - (ring[out + x] & 0xff);
+            }
+        }
+    }
+}
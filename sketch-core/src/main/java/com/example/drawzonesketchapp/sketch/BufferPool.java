@@ -0,0 +1,135 @@
+package com.example.drawzonesketchapp.sketch;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Recycles {@code int[]} and {@code byte[]} working planes between conversions.
+ * <p>
+ * Buffers are keyed by type and exact length, since a re-conversion of the same image asks
+ * for the same sizes every time. Pooled memory is capped; when a release would go over the
+ * cap, the shapes that were used least recently are dropped first. Acquired buffers hold stale data,
+ * so callers must overwrite them before reading. Thread-safe.
+ */
+public final class BufferPool {
+
+    /** A pool that never retains anything; every acquire allocates. */
+    public static final BufferPool NONE = new BufferPool(0);
+
+    private final long maxBytes;
+    // Access-ordered, so iteration starts at the least recently used shape
+    private final LinkedHashMap<Shape, ArrayDeque<Object>> free = new LinkedHashMap<>(16, 0.75f, true);
+    private long pooledBytes;
+    private long hits, misses;
+
+    public BufferPool(long maxBytes) {
+        if (maxBytes < 0) {
+            throw new IllegalArgumentException("maxBytes must not be negative: " + maxBytes);
+        }
+        this.maxBytes = maxBytes;
+    }
+
+    /** Returns a buffer of exactly {@code length} ints with unspecified contents. */
+    public int[] acquire(int length) {
+        Object buffer = take(new Shape(false, length));
+        return buffer != null ? (int[]) buffer : new int[length];
+    }
+
+    /** Returns a buffer of exactly {@code length} bytes with unspecified contents. */
+    public byte[] acquireBytes(int length) {
+        Object buffer = take(new Shape(true, length));
+        return buffer != null ? (byte[]) buffer : new byte[length];
+    }
+
+    /** Hands {@code buffer} back; the caller must not touch it afterwards. Null is ignored. */
+    public void release(int[] buffer) {
+        if (buffer != null) put(new Shape(false, buffer.length), buffer);
+    }
+
+    /** Hands {@code buffer} back; the caller must not touch it afterwards. Null is ignored. */
+    public void release(byte[] buffer) {
+        if (buffer != null) put(new Shape(true, buffer.length), buffer);
+    }
+
+    /** Drops least recently used buffers until at most {@code bytes} are pooled. */
+    public synchronized void trimTo(long bytes) {
+        Iterator<Map.Entry<Shape, ArrayDeque<Object>>> shapes = free.entrySet().iterator();
+        while (pooledBytes > bytes && shapes.hasNext()) {
+            Map.Entry<Shape, ArrayDeque<Object>> entry = shapes.next();
+            ArrayDeque<Object> buffers = entry.getValue();
+            while (pooledBytes > bytes && !buffers.isEmpty()) {
+                buffers.pollLast();
+                pooledBytes -= entry.getKey().bytes();
+            }
+            if (buffers.isEmpty()) shapes.remove();
+        }
+    }
+
+    public void clear() {
+        trimTo(0);
+    }
+
+    public synchronized long pooledBytes() {
+        return pooledBytes;
+    }
+
+    /** Acquires served from the pool. */
+    public synchronized long hits() {
+        return hits;
+    }
+
+    /** Acquires that had to allocate. */
+    public synchronized long misses() {
+        return misses;
+    }
+
+    private synchronized Object take(Shape shape) {
+        ArrayDeque<Object> buffers = free.get(shape);
+        if (buffers == null) {
+            misses++;
+            return null;
+        }
+        Object buffer = buffers.pop();
+        if (buffers.isEmpty()) free.remove(shape);
+        pooledBytes -= shape.bytes();
+        hits++;
+        return buffer;
+    }
+
+    private synchronized void put(Shape shape, Object buffer) {
+        if (shape.bytes() > maxBytes) return;
+
+        free.computeIfAbsent(shape, s -> new ArrayDeque<>()).push(buffer);
+        pooledBytes += shape.bytes();
+        trimTo(maxBytes);
+    }
+
+    /** Element type and length of a pooled buffer. */
+    private static final class Shape {
+        final boolean ofBytes;
+        final int length;
+
+        Shape(boolean ofBytes, int length) {
+            this.ofBytes = ofBytes;
+            this.length = length;
+        }
+
+        long bytes() {
+            return ofBytes ? length : 4L * length;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Shape)) return false;
+            Shape other = (Shape) o;
+            return ofBytes == other.ofBytes && length == other.length;
+        }
+
+        @Override
+        public int hashCode() {
+            return ofBytes ? ~length : length;
+        }
+    }
+}
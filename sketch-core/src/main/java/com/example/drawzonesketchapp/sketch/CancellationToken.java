@@ -0,0 +1,32 @@
+package com.example.drawzonesketchapp.sketch;
+
+import java.util.concurrent.CancellationException;
+
+/**
+ * Cooperative cancellation flag polled by the kernels between lines and stages, so a
+ * superseded conversion stops within a row instead of running to the end.
+ */
+public final class CancellationToken {
+
+    /** A token that is never cancelled. */
+    public static final CancellationToken NONE = new CancellationToken();
+
+    private volatile boolean cancelled;
+
+    public void cancel() {
+        if (this != NONE) {
+            cancelled = true;
+        }
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /** @throws CancellationException if {@link #cancel()} has been called */
+    public void throwIfCancelled() {
+        if (cancelled) {
+            throw new CancellationException();
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.drawzonesketchapp.sketch;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Color dodge blend stage.
+ * <p>
+ * The blends look every result up in a 64 KB table of all 256 x 256 (top, bottom) pairs,
+ * built once from {@link #dodge(int, int)}, so the per-pixel loops have no division and no
+ * branch and give exactly the same values.
+ */
+public final class ColorDodge {
+
+    // DODGE[(bottom << 8) | top] == dodge(top, bottom), stored unsigned
+    private static final byte[] DODGE = new byte[256 * 256];
+
+    static {
+        for (int bottom = 0; bottom < 256; bottom++) {
+            for (int top = 0; top < 256; top++) {
+                DODGE[(bottom << 8) | top] = (byte) dodge(top, bottom);
+            }
+        }
+    }
+
+    private ColorDodge() {
+    }
+
+    /** Dodge of one top channel value over one bottom channel value. */
+    public static int dodge(int top, int bottom) {
+        return (bottom == 255) ? 255 : Math.min(255, (top << 8) / (255 - bottom));
+    }
+
+    /**
+     * Dodges the red channel of {@code top} (ARGB) over {@code bottom} (plane) and writes an
+     * opaque gray ARGB pixel into {@code out}. {@code out} may be the same array as {@code top}.
+     */
+    public static void blend(int[] top, int[] bottom, int[] out, int n) {
+        byte[] table = DODGE;
+        for (int i = 0; i < n; i++) {
+            int v = table[(bottom[i] << 8) | ((top[i] >> 16) & 0xff)] & 0xff;
+            out[i] = 0xff000000 | (v * 0x010101);
+        }
+    }
+
+    /**
+     * Dodges the red channel of {@code top} (ARGB) over an 8-bit {@code bottom} plane and
+     * writes an opaque gray ARGB pixel into {@code out}, which may be the same array as
+     * {@code top}.
+     */
+    public static void blend(int[] top, byte[] bottom, int[] out, int n) {
+        byte[] table = DODGE;
+        for (int i = 0; i < n; i++) {
+            int v = table[((bottom[i] & 0xff) << 8) | ((top[i] >> 16) & 0xff)] & 0xff;
+            out[i] = 0xff000000 | (v * 0x010101);
+        }
+    }
+
+    /**
+     * Dodges each color channel of {@code top} (ARGB) over an 8-bit {@code bottom} plane and
+     * writes the opaque color result into {@code out}, which may be the same array as
+     * {@code top}.
+     */
+    public static void blendColor(int[] top, byte[] bottom, int[] out, int n) {
+        byte[] table = DODGE;
+        for (int i = 0; i < n; i++) {
+            int row = (bottom[i] & 0xff) << 8;
+            int c = top[i];
+            int r = table[row | ((c >> 16) & 0xff)] & 0xff;
+            int g = table[row | ((c >> 8) & 0xff)] & 0xff;
+            int b = table[row | (c & 0xff)] & 0xff;
+            out[i] = 0xff000000 | (r << 16) | (g << 8) | b;
+        }
+    }
+
+    /**
+     * Dodges the red channel of {@code top} (ARGB) over an 8-bit {@code bottom} plane and
+     * writes the 8-bit gray result into {@code out}, which may be the same array as
+     * {@code bottom}.
+     */
+    public static void blend(int[] top, byte[] bottom, byte[] out, int n) {
+        byte[] table = DODGE;
+        for (int i = 0; i < n; i++) {
+            out[i] = table[((bottom[i] & 0xff) << 8) | ((top[i] >> 16) & 0xff)];
+        }
+    }
+
+    /**
+     * Dodges an 8-bit gray {@code top} plane over an 8-bit {@code bottom} plane and writes
+     * opaque gray ARGB pixels into {@code out}.
+     */
+    public static void blend(byte[] top, byte[] bottom, int[] out, int n) {
+        byte[] table = DODGE;
+        for (int i = 0; i < n; i++) {
+            int v = table[((bottom[i] & 0xff) << 8) | (top[i] & 0xff)] & 0xff;
+            out[i] = 0xff000000 | (v * 0x010101);
+        }
+    }
+
+    /**
+     * Dodges the red channel of {@code top} (RGBA bytes, see {@link Luminance}) over an 8-bit
+     * {@code bottom} plane and writes opaque gray RGBA pixels into {@code out}, which may be
+     * the same buffer as {@code top}. All three are indexed from 0 and keep their positions.
+     */
+    public static void blend(ByteBuffer top, ByteBuffer bottom, ByteBuffer out, int n) {
+        byte[] table = DODGE;
+        for (int i = 0, p = 0; i < n; i++, p += 4) {
+            byte v = table[((bottom.get(i) & 0xff) << 8) | (top.get(p) & 0xff)];
+            out.put(p, v);
+            out.put(p + 1, v);
+            out.put(p + 2, v);
+            out.put(p + 3, (byte) 0xff);
+        }
+    }
+}
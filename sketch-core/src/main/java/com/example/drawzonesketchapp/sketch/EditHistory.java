@@ -0,0 +1,313 @@
+package com.example.drawzonesketchapp.sketch;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Undo and redo for a sequence of same-sized ARGB images, each recorded with the parameters
+ * that produced it.
+ * <p>
+ * Only the current image is held in full. Every other step is kept as the delta to the step
+ * before it: the image is cut into {@link #TILE_SIZE} tiles, and each tile that changed is
+ * stored as the XOR of its old and new pixels, split into alpha, red, green and blue byte
+ * planes and deflated. Unchanged channels come out as runs of zeros, and a gray sketch has
+ * three identical color planes, so deltas are small. XOR undoes itself, so the same delta
+ * steps back for undo and forward for redo, and only the tiles in it are touched.
+ * <p>
+ * Deltas are held in memory up to a byte budget. Past it, the ones farthest from the
+ * current step are written to files in a spill directory, so the steps next to the current
+ * one stay instant, and farther ones cost one file read. Thread-safe.
+ *
+ * @param <P> parameters recorded with each step, handed back on undo and redo
+ */
+public final class EditHistory<P> implements Closeable {
+
+    public static final int TILE_SIZE = 64;
+
+    /** One recorded image: its parameters and, except for the oldest, its delta. */
+    private static final class Step<P> {
+        final P params;
+        byte[] delta;
+        File spilled;
+
+        Step(P params, byte[] delta) {
+            this.params = params;
+            this.delta = delta;
+        }
+    }
+
+    private final int width;
+    private final int height;
+    private final int maxSteps;
+    private final long memoryBudget;
+    private final File spillDir;
+    private final List<Step<P>> steps = new ArrayList<>();
+    private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    private final Inflater inflater = new Inflater();
+    // Scratch for one tile's planes
+    private final byte[] tile = new byte[4 * TILE_SIZE * TILE_SIZE];
+    private int[] current;
+    private int cursor = -1;
+    private long memoryBytes;
+
+    /**
+     * @param maxSteps     steps kept; recording past it forgets the oldest
+     * @param memoryBudget bytes of deltas kept in memory before they spill to disk
+     * @param spillDir     directory for spilled deltas, created when first needed
+     */
+    public EditHistory(int width, int height, int maxSteps, long memoryBudget, File spillDir) {
+        if (width < 1 || height < 1) {
+            throw new IllegalArgumentException("Empty image: " + width + "x" + height);
+        }
+        if (maxSteps < 1) throw new IllegalArgumentException("maxSteps must be positive: " + maxSteps);
+        this.width = width;
+        this.height = height;
+        this.maxSteps = maxSteps;
+        this.memoryBudget = memoryBudget;
+        this.spillDir = spillDir;
+    }
+
+    /**
+     * Makes {@code argb} the current step, recorded with {@code params}. Any steps that were
+     * undone are dropped. An image and parameters equal to the current ones are not recorded
+     * again.
+     */
+    public synchronized void record(int[] argb, P params) throws IOException {
+        int n = width * height;
+        if (argb.length < n) throw new IllegalArgumentException("Expected " + n + " pixels, got " + argb.length);
+
+        if (current == null) {
+            current = new int[n];
+        } else {
+            byte[] delta = encode(current, argb);
+            if (delta == null && Objects.equals(steps.get(cursor).params, params)) return;
+            while (steps.size() > cursor + 1) {
+                forget(steps.remove(steps.size() - 1));
+            }
+            steps.add(new Step<>(params, delta != null ? delta : new byte[0]));
+            memoryBytes += steps.get(steps.size() - 1).delta.length;
+        }
+        System.arraycopy(argb, 0, current, 0, n);
+        if (steps.isEmpty()) steps.add(new Step<>(params, null));
+        cursor = steps.size() - 1;
+
+        if (steps.size() > maxSteps) {
+            // The second step becomes the oldest, which needs no delta
+            forget(steps.remove(0));
+            Step<P> oldest = steps.get(0);
+            forget(oldest);
+            oldest.delta = null;
+            cursor--;
+        }
+        spillOverBudget();
+    }
+
+    public synchronized boolean canUndo() {
+        return cursor > 0;
+    }
+
+    public synchronized boolean canRedo() {
+        return cursor >= 0 && cursor < steps.size() - 1;
+    }
+
+    /**
+     * Steps back and copies the image there into {@code out}. Returns its parameters, or null
+     * if there is nothing to undo.
+     */
+    public synchronized P undo(int[] out) throws IOException {
+        if (!canUndo()) return null;
+        apply(steps.get(cursor));
+        cursor--;
+        return restore(out);
+    }
+
+    /**
+     * Steps forward again after an undo and copies the image there into {@code out}. Returns
+     * its parameters, or null if there is nothing to redo.
+     */
+    public synchronized P redo(int[] out) throws IOException {
+        if (!canRedo()) return null;
+        cursor++;
+        apply(steps.get(cursor));
+        return restore(out);
+    }
+
+    /** Number of steps, including the current one and any that can be redone. */
+    public synchronized int size() {
+        return steps.size();
+    }
+
+    /** Bytes of deltas held in memory. */
+    public synchronized long memoryBytes() {
+        return memoryBytes;
+    }
+
+    /** Number of deltas that live in the spill directory. */
+    public synchronized int spilledSteps() {
+        int spilled = 0;
+        for (Step<P> step : steps) {
+            if (step.spilled != null) spilled++;
+        }
+        return spilled;
+    }
+
+    /** Deletes every spilled delta. The history cannot be used afterwards. */
+    @Override
+    public synchronized void close() {
+        for (Step<P> step : steps) {
+            forget(step);
+        }
+        steps.clear();
+        current = null;
+        cursor = -1;
+        memoryBytes = 0;
+        deflater.end();
+        inflater.end();
+    }
+
+    private P restore(int[] out) {
+        System.arraycopy(current, 0, out, 0, width * height);
+        return steps.get(cursor).params;
+    }
+
+    private void forget(Step<P> step) {
+        if (step.delta != null) memoryBytes -= step.delta.length;
+        if (step.spilled != null) {
+            step.spilled.delete();
+            step.spilled = null;
+        }
+    }
+
+    /** Spills in-memory deltas, farthest from the current step first, until under budget. */
+    private void spillOverBudget() throws IOException {
+        while (memoryBytes > memoryBudget) {
+            Step<P> farthest = null;
+            int distance = -1;
+            for (int i = 0; i < steps.size(); i++) {
+                Step<P> step = steps.get(i);
+                if (step.delta != null && step.delta.length > 0 && Math.abs(i - cursor) > distance) {
+                    farthest = step;
+                    distance = Math.abs(i - cursor);
+                }
+            }
+            if (farthest == null) return;
+
+            if (!spillDir.isDirectory() && !spillDir.mkdirs()) throw new IOException("Cannot create " + spillDir);
+            File file = File.createTempFile("history", ".delta", spillDir);
+            try (OutputStream out = new FileOutputStream(file)) {
+                out.write(farthest.delta);
+            } catch (IOException e) {
+                file.delete();
+                throw e;
+            }
+            memoryBytes -= farthest.delta.length;
+            farthest.delta = null;
+            farthest.spilled = file;
+        }
+    }
+
+    /**
+     * Deflated XOR of every tile that differs between {@code from} and {@code to}, or null
+     * when none does. Each tile is its index followed by its alpha, red, green and blue
+     * planes.
+     */
+    private byte[] encode(int[] from, int[] to) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        deflater.reset();
+        boolean changed = false;
+        try (DataOutputStream out = new DataOutputStream(new DeflaterOutputStream(bytes, deflater))) {
+            int columns = (width + TILE_SIZE - 1) / TILE_SIZE;
+            int rows = (height + TILE_SIZE - 1) / TILE_SIZE;
+            for (int index = 0; index < columns * rows; index++) {
+                int x0 = (index % columns) * TILE_SIZE;
+                int y0 = (index / columns) * TILE_SIZE;
+                int tileWidth = Math.min(TILE_SIZE, width - x0);
+                int tileHeight = Math.min(TILE_SIZE, height - y0);
+                if (!differs(from, to, x0, y0, tileWidth, tileHeight)) continue;
+
+                int area = tileWidth * tileHeight;
+                for (int y = 0, i = 0; y < tileHeight; y++) {
+                    int p = (y0 + y) * width + x0;
+                    for (int x = 0; x < tileWidth; x++, i++, p++) {
+                        int xor = from[p] ^ to[p];
+                        tile[i] = (byte) (xor >>> 24);
+                        tile[area + i] = (byte) (xor >> 16);
+                        tile[2 * area + i] = (byte) (xor >> 8);
+                        tile[3 * area + i] = (byte) xor;
+                    }
+                }
+                out.writeInt(index);
+                out.write(tile, 0, 4 * area);
+                changed = true;
+            }
+        }
+        return changed ? bytes.toByteArray() : null;
+    }
+
+    private boolean differs(int[] from, int[] to, int x0, int y0, int tileWidth, int tileHeight) {
+        for (int y = 0; y < tileHeight; y++) {
+            int p = (y0 + y) * width + x0;
+            for (int x = 0; x < tileWidth; x++, p++) {
+                if (from[p] != to[p]) return true;
+            }
+        }
+        return false;
+    }
+
+    /** XORs the delta of {@code step} into the current image, from memory or from disk. */
+    private void apply(Step<P> step) throws IOException {
+        InputStream source;
+        if (step.delta != null) {
+            if (step.delta.length == 0) return;
+            source = new ByteArrayInputStream(step.delta);
+        } else {
+            source = new BufferedInputStream(new FileInputStream(step.spilled), 64 * 1024);
+        }
+        inflater.reset();
+        int columns = (width + TILE_SIZE - 1) / TILE_SIZE;
+        try (DataInputStream in = new DataInputStream(new InflaterInputStream(source, inflater))) {
+            while (true) {
+                // The stream holds nothing but whole tiles, so a clean end can only come here
+                int index;
+                try {
+                    index = in.readInt();
+                } catch (EOFException e) {
+                    return;
+                }
+                int x0 = (index % columns) * TILE_SIZE;
+                int y0 = (index / columns) * TILE_SIZE;
+                int tileWidth = Math.min(TILE_SIZE, width - x0);
+                int tileHeight = Math.min(TILE_SIZE, height - y0);
+                int area = tileWidth * tileHeight;
+                in.readFully(tile, 0, 4 * area);
+                for (int y = 0, i = 0; y < tileHeight; y++) {
+                    int p = (y0 + y) * width + x0;
+                    for (int x = 0; x < tileWidth; x++, i++, p++) {
+                        current[p] ^= (tile[i] & 0xff) << 24
+                                | (tile[area + i] & 0xff) << 16
+                                | (tile[2 * area + i] & 0xff) << 8
+                                | (tile[3 * area + i] & 0xff);
+                    }
+                }
+            }
+        }
+    }
+}
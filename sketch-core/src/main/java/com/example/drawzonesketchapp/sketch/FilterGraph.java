@@ -0,0 +1,127 @@
+package com.example.drawzonesketchapp.sketch;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Memoized intermediate planes of one source image.
+ * <p>
+ * Every intermediate result (luminance, inverted plane, blurred plane, edges) is a
+ * {@link Node}. The first request for a node computes its 8-bit plane, pulling whatever
+ * nodes it depends on through the same graph; later requests with an equal key get the same
+ * plane back. Rendering several {@link SketchStyle}s on one graph therefore computes each
+ * shared plane, in particular each blur, only once.
+ * <p>
+ * Each node's computation is reported to the graph's {@link Tracer} as a section named by its
+ * key, nested inside the sections of the nodes that pulled it in.
+ * <p>
+ * Planes are borrowed from a {@link BufferPool} and handed back on {@link #close()}. Planes
+ * returned by {@link #plane} are read-only and only valid until then. Not thread-safe; use
+ * one graph per conversion thread.
+ */
+public final class FilterGraph implements AutoCloseable {
+
+    /** One intermediate result, computed at most once per graph. */
+    public interface Node {
+        /** Identifies the result; nodes with equal keys share one plane. */
+        String key();
+
+        /**
+         * Writes this node's {@code width * height} plane into {@code out}, reading the source
+         * and other nodes through {@code graph}.
+         *
+         * @throws java.util.concurrent.CancellationException if the token is cancelled
+         */
+        void compute(FilterGraph graph, byte[] out, CancellationToken token);
+    }
+
+    private final int[] source;
+    private final int width;
+    private final int height;
+    private final BufferPool pool;
+    private final Tracer tracer;
+    private final Map<String, byte[]> planes = new HashMap<>();
+    private final List<byte[]> borrowed = new ArrayList<>();
+
+    /** A graph over {@code source} (ARGB, row-major), which is only read. */
+    public FilterGraph(int[] source, int width, int height, BufferPool pool) {
+        this(source, width, height, pool, Tracer.NONE);
+    }
+
+    /** A graph that reports every node it computes to {@code tracer}. */
+    public FilterGraph(int[] source, int width, int height, BufferPool pool, Tracer tracer) {
+        this.source = source;
+        this.width = width;
+        this.height = height;
+        this.pool = pool;
+        this.tracer = tracer;
+    }
+
+    public int[] source() {
+        return source;
+    }
+
+    public int width() {
+        return width;
+    }
+
+    public int height() {
+        return height;
+    }
+
+    /** Where node computations are reported; styles may add their own sections. */
+    public Tracer tracer() {
+        return tracer;
+    }
+
+    /** Number of pixels, the length every plane is used up to. */
+    public int size() {
+        return width * height;
+    }
+
+    /**
+     * The plane of {@code node}, computed on first use.
+     *
+     * @throws java.util.concurrent.CancellationException if the token is cancelled
+     */
+    public byte[] plane(Node node, CancellationToken token) {
+        byte[] plane = planes.get(node.key());
+        if (plane != null) return plane;
+
+        plane = borrow();
+        tracer.begin(node.key());
+        try {
+            node.compute(this, plane, token);
+        } finally {
+            tracer.end();
+        }
+        planes.put(node.key(), plane);
+        return plane;
+    }
+
+    /**
+     * A scratch plane with unspecified contents, handed back to the pool with the rest on
+     * {@link #close()}.
+     */
+    public byte[] scratch() {
+        return borrow();
+    }
+
+    private byte[] borrow() {
+        byte[] plane = pool.acquireBytes(size());
+        borrowed.add(plane);
+        return plane;
+    }
+
+    /** Hands every plane back to the pool. */
+    @Override
+    public void close() {
+        for (byte[] plane : borrowed) {
+            pool.release(plane);
+        }
+        borrowed.clear();
+        planes.clear();
+    }
+}
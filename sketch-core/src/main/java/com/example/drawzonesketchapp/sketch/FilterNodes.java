@@ -0,0 +1,93 @@
+package com.example.drawzonesketchapp.sketch;
+
+/**
+ * The shared intermediate planes sketch styles are built from.
+ */
+public final class FilterNodes {
+
+    /** Luma of the source, 0..255. */
+    public static final FilterGraph.Node LUMA = new FilterGraph.Node() {
+        @Override
+        public String key() {
+            return "luma";
+        }
+
+        @Override
+        public void compute(FilterGraph graph, byte[] out, CancellationToken token) {
+            Luminance.toPlane(graph.source(), out, graph.size());
+        }
+    };
+
+    /** {@code 255 - luma}, read straight from the source in one pass. */
+    public static final FilterGraph.Node INVERTED = new FilterGraph.Node() {
+        @Override
+        public String key() {
+            return "inverted";
+        }
+
+        @Override
+        public void compute(FilterGraph graph, byte[] out, CancellationToken token) {
+            Luminance.toInvertedPlane(graph.source(), out, graph.size());
+        }
+    };
+
+    /**
+     * Sobel gradient magnitude of {@link #LUMA}, {@code (|gx| + |gy|) / 4} clamped to 255.
+     * Edge pixels repeat the border.
+     */
+    public static final FilterGraph.Node EDGES = new FilterGraph.Node() {
+        @Override
+        public String key() {
+            return "edges";
+        }
+
+        @Override
+        public void compute(FilterGraph graph, byte[] out, CancellationToken token) {
+            sobel(graph.plane(LUMA, token), out, graph.width(), graph.height(), token);
+        }
+    };
+
+    private FilterNodes() {
+    }
+
+    /** {@link #INVERTED} blurred by {@code blur} with {@code radius}. */
+    public static FilterGraph.Node blurredInverted(int radius, Blur blur) {
+        return new FilterGraph.Node() {
+            @Override
+            public String key() {
+                return "blurred:" + radius + ":" + blur.getClass().getName();
+            }
+
+            @Override
+            public void compute(FilterGraph graph, byte[] out, CancellationToken token) {
+                System.arraycopy(graph.plane(INVERTED, token), 0, out, 0, graph.size());
+                blur.blur(out, graph.width(), graph.height(), radius, token);
+            }
+        };
+    }
+
+    static void sobel(byte[] in, byte[] out, int width, int height, CancellationToken token) {
+        for (int y = 0; y < height; y++) {
+            int above = Math.max(y - 1, 0) * width;
+            int row = y * width;
+            int below = Math.min(y + 1, height - 1) * width;
+            for (int x = 0; x < width; x++) {
+                int left = Math.max(x - 1, 0);
+                int right = Math.min(x + 1, width - 1);
+                int topLeft = in[above + left] & 0xff;
+                int top = in[above + x] & 0xff;
+                int topRight = in[above + right] & 0xff;
+                int midLeft = in[row + left] & 0xff;
+                int midRight = in[row + right] & 0xff;
+                int bottomLeft = in[below + left] & 0xff;
+                int bottom = in[below + x] & 0xff;
+                int bottomRight = in[below + right] & 0xff;
+
+                int gx = (topRight + 2 * midRight + bottomRight) - (topLeft + 2 * midLeft + bottomLeft);
+                int gy = (bottomLeft + 2 * bottom + bottomRight) - (topLeft + 2 * top + topRight);
+                out[row + x] = (byte) Math.min(255, (Math.abs(gx) + Math.abs(gy)) >> 2);
+            }
+            token.throwIfCancelled();
+        }
+    }
+}
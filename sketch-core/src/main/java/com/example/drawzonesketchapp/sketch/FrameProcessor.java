@@ -0,0 +1,231 @@
+package com.example.drawzonesketchapp.sketch;
+
+import java.io.Closeable;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CancellationException;
+
+/**
+ * Sketches a stream of grayscale frames, such as a camera's Y plane, on its own thread,
+ * always working on the most recent frame.
+ * <p>
+ * The luma plane is already the grayscale image, so each frame is only inverted, blurred and
+ * dodged, all in buffers kept from the previous frame of the same size. Frames are handed
+ * over through three buffers: the producer copies into its own, then swaps it with the
+ * shared one, and the processing thread swaps that with its own when it is ready for more.
+ * A frame that is replaced before the processing thread takes it is dropped, so a slow
+ * device shows fewer frames rather than older ones, and {@link #offer} never waits for a
+ * frame to be processed.
+ */
+public final class FrameProcessor implements Closeable {
+
+    public interface Listener {
+        /**
+         * Called on the processing thread with the sketch of a frame as opaque gray ARGB. The
+         * array is reused for the next frame, so copy it out before returning.
+         */
+        void onFrame(int[] sketch, int width, int height, long timestampNanos);
+
+        /** Called on the processing thread when a frame failed; later frames still run. */
+        default void onError(RuntimeException e) {
+        }
+    }
+
+    /** Frame counts and latencies so far. */
+    public static final class Stats {
+        public final long offered;
+        public final long processed;
+        public final long dropped;
+        public final long failed;
+        /** From {@link #offer} to the listener returning, for the most recent frame. */
+        public final long lastLatencyNanos;
+        public final long maxLatencyNanos;
+        private final long totalLatencyNanos;
+
+        Stats(long offered, long processed, long dropped, long failed, long lastLatencyNanos,
+              long maxLatencyNanos, long totalLatencyNanos) {
+            this.offered = offered;
+            this.processed = processed;
+            this.dropped = dropped;
+            this.failed = failed;
+            this.lastLatencyNanos = lastLatencyNanos;
+            this.maxLatencyNanos = maxLatencyNanos;
+            this.totalLatencyNanos = totalLatencyNanos;
+        }
+
+        public long meanLatencyNanos() {
+            return processed > 0 ? totalLatencyNanos / processed : 0;
+        }
+
+        /** Fraction of offered frames that were replaced by a newer one before processing. */
+        public double droppedRate() {
+            return offered > 0 ? dropped / (double) offered : 0;
+        }
+    }
+
+    /** One frame's luma, tightly packed. */
+    private static final class Frame {
+        byte[] luma = new byte[0];
+        int width, height;
+        long timestampNanos;
+        long offeredAt;
+
+        void resize(int width, int height) {
+            if (luma.length < width * height) luma = new byte[width * height];
+            this.width = width;
+            this.height = height;
+        }
+    }
+
+    private final Blur blur;
+    private final Listener listener;
+    private final CancellationToken token = new CancellationToken();
+    private final Thread thread;
+    private volatile int radius;
+
+    private final Object lock = new Object();
+    // Owned by the producer, the processing thread, and shared between them, respectively
+    private Frame back = new Frame();
+    private Frame front = new Frame();
+    private Frame middle = new Frame();
+    // Guarded by lock: middle holds a frame that has not been taken yet
+    private boolean fresh;
+    private boolean closed;
+    private long offered, processed, dropped, failed;
+    private long lastLatencyNanos, maxLatencyNanos, totalLatencyNanos;
+
+    // Processing thread only
+    private byte[] plane = new byte[0];
+    private int[] sketch = new int[0];
+
+    /** Starts the processing thread; {@code radius} is in frame pixels. */
+    public FrameProcessor(Blur blur, int radius, Listener listener) {
+        this.blur = blur;
+        this.radius = radius;
+        this.listener = listener;
+        thread = new Thread(this::loop, "sketch-frames");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /** Applies from the next frame processed. */
+    public void setRadius(int radius) {
+        this.radius = radius;
+    }
+
+    /**
+     * Copies a frame from an 8-bit luma plane whose rows start {@code rowStride} bytes apart,
+     * read from index 0 without moving the buffer's position. Call from one thread at a time.
+     */
+    public void offer(ByteBuffer luma, int rowStride, int width, int height, long timestampNanos) {
+        Frame frame = back;
+        frame.resize(width, height);
+        ByteBuffer rows = luma.duplicate();
+        for (int y = 0; y < height; y++) {
+            rows.position(y * rowStride);
+            rows.get(frame.luma, y * width, width);
+        }
+        publish(frame, timestampNanos);
+    }
+
+    /** {@link #offer(ByteBuffer, int, int, int, long)} from a tightly packed array. */
+    public void offer(byte[] luma, int width, int height, long timestampNanos) {
+        Frame frame = back;
+        frame.resize(width, height);
+        System.arraycopy(luma, 0, frame.luma, 0, width * height);
+        publish(frame, timestampNanos);
+    }
+
+    private void publish(Frame frame, long timestampNanos) {
+        frame.timestampNanos = timestampNanos;
+        frame.offeredAt = System.nanoTime();
+        synchronized (lock) {
+            if (closed) return;
+            offered++;
+            if (fresh) dropped++;
+            back = middle;
+            middle = frame;
+            fresh = true;
+            lock.notify();
+        }
+    }
+
+    public Stats stats() {
+        synchronized (lock) {
+            return new Stats(offered, processed, dropped, failed, lastLatencyNanos, maxLatencyNanos,
+                    totalLatencyNanos);
+        }
+    }
+
+    /** Stops the processing thread, abandoning the frame in progress, and waits for it. */
+    @Override
+    public void close() {
+        synchronized (lock) {
+            closed = true;
+            lock.notify();
+        }
+        token.cancel();
+        boolean interrupted = false;
+        while (thread.isAlive()) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+    }
+
+    private void loop() {
+        while (true) {
+            Frame frame;
+            synchronized (lock) {
+                while (!fresh && !closed) {
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (closed) return;
+                frame = middle;
+                middle = front;
+                front = frame;
+                fresh = false;
+            }
+            try {
+                process(frame);
+            } catch (CancellationException e) {
+                return;
+            } catch (RuntimeException e) {
+                synchronized (lock) {
+                    failed++;
+                }
+                listener.onError(e);
+            }
+        }
+    }
+
+    private void process(Frame frame) {
+        int width = frame.width;
+        int height = frame.height;
+        int n = width * height;
+        if (plane.length != n) {
+            plane = new byte[n];
+            sketch = new int[n];
+        }
+
+        Luminance.toInvertedPlane(frame.luma, plane, n);
+        blur.blur(plane, width, height, radius, token);
+        token.throwIfCancelled();
+        ColorDodge.blend(frame.luma, plane, sketch, n);
+        listener.onFrame(sketch, width, height, frame.timestampNanos);
+
+        long latency = System.nanoTime() - frame.offeredAt;
+        synchronized (lock) {
+            processed++;
+            lastLatencyNanos = latency;
+            maxLatencyNanos = Math.max(maxLatencyNanos, latency);
+            totalLatencyNanos += latency;
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.drawzonesketchapp.sketch;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Streaming encoder for 8-bit grayscale PNG. Rows are compressed as they arrive, so a
+ * full-resolution sketch never has to exist in memory as one image.
+ * <p>
+ * Sketch pixels are gray, so only the low (blue) byte of each ARGB value is written.
+ */
+public final class GrayPngWriter implements StripSink, Closeable {
+
+    private static final byte[] SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n'};
+    private static final int IDAT_CHUNK_SIZE = 64 * 1024;
+
+    private final DataOutputStream out;
+    private final int width;
+    private final int height;
+    private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+    private final DeflaterOutputStream idat;
+    private final byte[] row;
+    private int rowsWritten;
+
+    public GrayPngWriter(OutputStream out, int width, int height) throws IOException {
+        this.out = new DataOutputStream(out);
+        this.width = width;
+        this.height = height;
+        this.row = new byte[width + 1]; // leading filter byte, 0 = none
+        this.idat = new DeflaterOutputStream(new IdatStream(), deflater, IDAT_CHUNK_SIZE);
+
+        this.out.write(SIGNATURE);
+        ByteArrayOutputStream header = new ByteArrayOutputStream(13);
+        DataOutputStream ihdr = new DataOutputStream(header);
+        ihdr.writeInt(width);
+        ihdr.writeInt(height);
+        ihdr.writeByte(8); // bit depth
+        ihdr.writeByte(0); // color type: grayscale
+        ihdr.writeByte(0); // compression
+        ihdr.writeByte(0); // filter
+        ihdr.writeByte(0); // interlace
+        writeChunk("IHDR", header.toByteArray(), 0, 13);
+    }
+
+    @Override
+    public void write(int[] argb, int offset, int rows) throws IOException {
+        if (rowsWritten + rows > height) {
+            throw new IOException("Too many rows: " + (rowsWritten + rows) + " > " + height);
+        }
+        for (int y = 0; y < rows; y++) {
+            int p = offset + y * width;
+            for (int x = 0; x < width; x++) {
+                row[x + 1] = (byte) argb[p + x];
+            }
+            idat.write(row, 0, row.length);
+        }
+        rowsWritten += rows;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (rowsWritten != height) {
+                throw new IOException("Incomplete image: " + rowsWritten + " of " + height + " rows");
+            }
+            idat.finish();
+            writeChunk("IEND", new byte[0], 0, 0);
+            out.flush();
+        } finally {
+            deflater.end();
+            out.close();
+        }
+    }
+
+    private void writeChunk(String type, byte[] data, int offset, int length) throws IOException {
+        byte[] typeBytes = type.getBytes("US-ASCII");
+        CRC32 crc = new CRC32();
+        crc.update(typeBytes);
+        crc.update(data, offset, length);
+        out.writeInt(length);
+        out.write(typeBytes);
+        out.write(data, offset, length);
+        out.writeInt((int) crc.getValue());
+    }
+
+    /** Wraps whatever the deflater flushes into IDAT chunks. */
+    private final class IdatStream extends OutputStream {
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (len > 0) {
+                writeChunk("IDAT", b, off, len);
+            }
+        }
+    }
+}
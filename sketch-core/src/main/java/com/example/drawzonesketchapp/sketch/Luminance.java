@@ -0,0 +1,106 @@
+package com.example.drawzonesketchapp.sketch;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Grayscale and invert stages on plain pixel planes.
+ * <p>
+ * A plane is a row-major {@code int[]} holding one 0..255 channel per pixel, or a
+ * {@code byte[]} or {@link ByteBuffer} holding the same values unsigned. Pixels in a buffer
+ * are four bytes in R, G, B, A order, which is how an ARGB_8888 bitmap lays them out.
+ */
+public final class Luminance {
+
+    // Luma weights of ColorMatrix.setSaturation(0) (0.213, 0.715, 0.072) in 16.16 fixed point
+    static final int LUMA_R = 13959;
+    static final int LUMA_G = 46857;
+    static final int LUMA_B = 4719;
+
+    private Luminance() {
+    }
+
+    /** Luma of a single ARGB pixel, 0..255. */
+    public static int luma(int argb) {
+        return (LUMA_R * ((argb >> 16) & 0xff)
+                + LUMA_G * ((argb >> 8) & 0xff)
+                + LUMA_B * (argb & 0xff)
+                + 0x8000) >> 16;
+    }
+
+    /** Writes the luma of the first {@code n} pixels of {@code argb} into {@code plane}. */
+    public static void toPlane(int[] argb, int[] plane, int n) {
+        for (int i = 0; i < n; i++) {
+            plane[i] = luma(argb[i]);
+        }
+    }
+
+    /** {@link #toPlane(int[], int[], int)} into an 8-bit plane. */
+    public static void toPlane(int[] argb, byte[] plane, int n) {
+        for (int i = 0; i < n; i++) {
+            plane[i] = (byte) luma(argb[i]);
+        }
+    }
+
+    /** Grayscale and invert in one pass: {@code plane[i] = 255 - luma(argb[i])}. */
+    public static void toInvertedPlane(int[] argb, int[] plane, int n) {
+        for (int i = 0; i < n; i++) {
+            plane[i] = 255 - luma(argb[i]);
+        }
+    }
+
+    /** {@link #toInvertedPlane(int[], int[], int)} into an 8-bit plane. */
+    public static void toInvertedPlane(int[] argb, byte[] plane, int n) {
+        for (int i = 0; i < n; i++) {
+            plane[i] = (byte) (255 - luma(argb[i]));
+        }
+    }
+
+    /**
+     * {@link #toInvertedPlane(int[], byte[], int)} from RGBA bytes into an 8-bit plane, both
+     * indexed from 0 with absolute gets and puts, so neither buffer's position moves.
+     */
+    public static void toInvertedPlane(ByteBuffer rgba, ByteBuffer plane, int n) {
+        for (int i = 0, p = 0; i < n; i++, p += 4) {
+            int luma = (LUMA_R * (rgba.get(p) & 0xff)
+                    + LUMA_G * (rgba.get(p + 1) & 0xff)
+                    + LUMA_B * (rgba.get(p + 2) & 0xff)
+                    + 0x8000) >> 16;
+            plane.put(i, (byte) (255 - luma));
+        }
+    }
+
+    /**
+     * Invert of an 8-bit luma plane that is already gray, such as a camera's Y plane:
+     * {@code plane[i] = 255 - luma[i]}.
+     */
+    public static void toInvertedPlane(byte[] luma, byte[] plane, int n) {
+        for (int i = 0; i < n; i++) {
+            plane[i] = (byte) ~luma[i];
+        }
+    }
+
+    /** Expands the first {@code n} values of an 8-bit plane into opaque gray ARGB pixels. */
+    public static void toArgb(byte[] plane, int[] argb, int n) {
+        for (int i = 0; i < n; i++) {
+            int v = plane[i] & 0xff;
+            argb[i] = 0xff000000 | (v << 16) | (v << 8) | v;
+        }
+    }
+
+    /** Inverts the first {@code n} values of {@code plane} in place. */
+    public static void invert(int[] plane, int n) {
+        for (int i = 0; i < n; i++) {
+            plane[i] = 255 - plane[i];
+        }
+    }
+
+    /**
+     * Inverts the color channels of the first {@code n} ARGB pixels in place, keeping alpha.
+     * {@code 255 - c} of an 8-bit channel is {@code c ^ 0xff}, so one XOR inverts all three.
+     */
+    public static void invertArgb(int[] argb, int n) {
+        for (int i = 0; i < n; i++) {
+            argb[i] ^= 0x00ffffff;
+        }
+    }
+}
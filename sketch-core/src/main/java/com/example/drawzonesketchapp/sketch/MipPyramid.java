@@ -0,0 +1,335 @@
+package com.example.drawzonesketchapp.sketch;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+
+/**
+ * A grayscale image stored on disk as a pyramid of square tiles, for zooming into images too
+ * large to show, or even hold, in one piece.
+ * <p>
+ * Level 0 is the full image. Each further level halves both sides by averaging 2 x 2 blocks
+ * (an odd last row or column is averaged with itself), up to the first level that fits in a
+ * single tile. Each level is one file of {@link #TILE_SIZE} x {@link #TILE_SIZE} tiles in row
+ * order, so one tile is one seek and one read. A {@link Writer} builds the pyramid from rows
+ * as they stream in, holding one band of tiles per level.
+ */
+public final class MipPyramid implements Closeable {
+
+    public static final int TILE_SIZE = 256;
+    /** Bytes of one tile; edge tiles are padded to this size. */
+    public static final int TILE_BYTES = TILE_SIZE * TILE_SIZE;
+
+    private static final String META = "pyramid";
+    private static final int VERSION = 1;
+
+    private final int width;
+    private final int height;
+    private final RandomAccessFile[] levels;
+
+    private MipPyramid(int width, int height, RandomAccessFile[] levels) {
+        this.width = width;
+        this.height = height;
+        this.levels = levels;
+    }
+
+    /**
+     * Opens a pyramid that a {@link Writer} finished in {@code dir}.
+     *
+     * @throws IOException if there is none, or it was not completed
+     */
+    public static MipPyramid open(File dir) throws IOException {
+        int width, height;
+        try (DataInputStream meta = new DataInputStream(new FileInputStream(new File(dir, META)))) {
+            if (meta.readInt() != VERSION) throw new IOException("Unknown pyramid version");
+            width = meta.readInt();
+            height = meta.readInt();
+        }
+        RandomAccessFile[] files = new RandomAccessFile[levelCount(width, height)];
+        try {
+            for (int level = 0; level < files.length; level++) {
+                files[level] = new RandomAccessFile(levelFile(dir, level), "r");
+            }
+        } catch (IOException e) {
+            for (RandomAccessFile file : files) {
+                if (file != null) file.close();
+            }
+            throw e;
+        }
+        return new MipPyramid(width, height, files);
+    }
+
+    /** Starts a new pyramid in {@code dir}, replacing any there. */
+    public static Writer writer(File dir, int width, int height) throws IOException {
+        return new Writer(dir, width, height);
+    }
+
+    public int width() {
+        return width;
+    }
+
+    public int height() {
+        return height;
+    }
+
+    public int levels() {
+        return levels.length;
+    }
+
+    public int levelWidth(int level) {
+        return halved(width, level);
+    }
+
+    public int levelHeight(int level) {
+        return halved(height, level);
+    }
+
+    public int tilesAcross(int level) {
+        return tiles(levelWidth(level));
+    }
+
+    public int tilesDown(int level) {
+        return tiles(levelHeight(level));
+    }
+
+    /** Width in pixels of tile column {@code tileX}; less than a tile only at the right edge. */
+    public int tileWidth(int level, int tileX) {
+        return Math.min(TILE_SIZE, levelWidth(level) - tileX * TILE_SIZE);
+    }
+
+    /** Height in pixels of tile row {@code tileY}; less than a tile only at the bottom edge. */
+    public int tileHeight(int level, int tileY) {
+        return Math.min(TILE_SIZE, levelHeight(level) - tileY * TILE_SIZE);
+    }
+
+    /**
+     * Reads one tile into {@code out}, at least {@link #TILE_BYTES} long, as rows of
+     * {@link #TILE_SIZE} bytes; only the first {@link #tileWidth} of each of the first
+     * {@link #tileHeight} rows are image. Safe to call from several threads.
+     */
+    public void readTile(int level, int tileX, int tileY, byte[] out) throws IOException {
+        RandomAccessFile file = levels[level];
+        synchronized (file) {
+            file.seek((long) (tileY * tilesAcross(level) + tileX) * TILE_BYTES);
+            file.readFully(out, 0, TILE_BYTES);
+        }
+    }
+
+    /**
+     * The level to draw at {@code scale} screen pixels per image pixel: the smallest one
+     * that still has at least one pixel per screen pixel, so no detail is lost and no more
+     * is read than can be seen.
+     */
+    public int levelFor(float scale) {
+        int level = 0;
+        while (level + 1 < levels.length && scale * (1 << (level + 1)) <= 1f) {
+            level++;
+        }
+        return level;
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (RandomAccessFile file : levels) {
+            file.close();
+        }
+    }
+
+    static int levelCount(int width, int height) {
+        int levels = 1;
+        while (halved(width, levels - 1) > TILE_SIZE || halved(height, levels - 1) > TILE_SIZE) {
+            levels++;
+        }
+        return levels;
+    }
+
+    private static int halved(int size, int level) {
+        // Rounds up, so an odd last row or column still gets a pixel
+        return ((size - 1) >> level) + 1;
+    }
+
+    private static int tiles(int size) {
+        return (size + TILE_SIZE - 1) / TILE_SIZE;
+    }
+
+    private static File levelFile(File dir, int level) {
+        return new File(dir, "level-" + level + ".tiles");
+    }
+
+    /**
+     * Builds a pyramid from rows streamed top to bottom, as a {@link StripSink}. Like
+     * {@link GrayPngWriter}, only the low byte of each ARGB pixel is kept. The pyramid can
+     * only be opened once {@link #close()} has seen every row.
+     */
+    public static final class Writer implements StripSink, Closeable {
+
+        private final File dir;
+        private final int width;
+        private final int height;
+        private final Level[] levels;
+        private final byte[] row;
+        private int rowsWritten;
+        private boolean closed;
+
+        private Writer(File dir, int width, int height) throws IOException {
+            if (width < 1 || height < 1) throw new IllegalArgumentException("Empty image");
+            if (!dir.isDirectory() && !dir.mkdirs()) throw new IOException("Cannot create " + dir);
+            File[] stale = dir.listFiles();
+            if (stale != null) {
+                for (File file : stale) {
+                    file.delete();
+                }
+            }
+            this.dir = dir;
+            this.width = width;
+            this.height = height;
+            row = new byte[width];
+            levels = new Level[levelCount(width, height)];
+            try {
+                // Coarsest first, so each level is built after the one it feeds
+                for (int level = levels.length - 1; level >= 0; level--) {
+                    levels[level] = new Level(levelFile(dir, level), halved(width, level), halved(height, level),
+                            level + 1 < levels.length ? levels[level + 1] : null);
+                }
+            } catch (IOException e) {
+                abandon();
+                throw e;
+            }
+        }
+
+        @Override
+        public void write(int[] argb, int offset, int rows) throws IOException {
+            if (rowsWritten + rows > height) {
+                throw new IOException("Too many rows: " + (rowsWritten + rows) + " > " + height);
+            }
+            for (int y = 0; y < rows; y++) {
+                int p = offset + y * width;
+                for (int x = 0; x < width; x++) {
+                    row[x] = (byte) argb[p + x];
+                }
+                levels[0].add(row);
+            }
+            rowsWritten += rows;
+        }
+
+        /** Finishes the pyramid; incomplete pyramids are deleted instead. */
+        @Override
+        public void close() throws IOException {
+            if (closed) return;
+            closed = true;
+            if (rowsWritten != height) {
+                abandon();
+                throw new IOException("Missing rows: " + rowsWritten + " of " + height);
+            }
+            try {
+                for (Level level : levels) {
+                    level.out.close();
+                }
+                // Written last: a pyramid without it is never opened
+                try (DataOutputStream meta = new DataOutputStream(new FileOutputStream(new File(dir, META)))) {
+                    meta.writeInt(VERSION);
+                    meta.writeInt(width);
+                    meta.writeInt(height);
+                }
+            } catch (IOException e) {
+                abandon();
+                throw e;
+            }
+        }
+
+        private void abandon() {
+            for (Level level : levels) {
+                if (level == null) continue;
+                try {
+                    level.out.close();
+                } catch (IOException ignored) {
+                    // Deleted below either way
+                }
+            }
+            File[] files = dir.listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    file.delete();
+                }
+            }
+        }
+    }
+
+    /** One level being written: a band of up to a tile's height of rows. */
+    private static final class Level {
+        final int width;
+        final int height;
+        final OutputStream out;
+        final Level next;
+        final byte[] band;
+        final byte[] tile = new byte[TILE_BYTES];
+        // An even row waiting for the odd row below it, and their average for the next level
+        final byte[] upper;
+        final byte[] halved;
+        boolean hasUpper;
+        int bandRows;
+        int rowsDone;
+
+        Level(File file, int width, int height, Level next) throws IOException {
+            this.width = width;
+            this.height = height;
+            this.next = next;
+            band = new byte[TILE_SIZE * width];
+            upper = next != null ? new byte[width] : null;
+            halved = next != null ? new byte[next.width] : null;
+            out = new BufferedOutputStream(new FileOutputStream(file), TILE_BYTES);
+        }
+
+        /** Appends the next row of this level and passes finished row pairs down. */
+        void add(byte[] row) throws IOException {
+            System.arraycopy(row, 0, band, bandRows * width, width);
+            bandRows++;
+            rowsDone++;
+            if (bandRows == TILE_SIZE || rowsDone == height) flush();
+            if (next == null) return;
+
+            if (hasUpper) {
+                hasUpper = false;
+                halve(upper, row);
+            } else if (rowsDone == height) {
+                // An odd last row pairs with itself
+                halve(row, row);
+            } else {
+                System.arraycopy(row, 0, upper, 0, width);
+                hasUpper = true;
+            }
+        }
+
+        private void halve(byte[] top, byte[] bottom) throws IOException {
+            int last = width - 1;
+            for (int x = 0; x < next.width; x++) {
+                int x0 = 2 * x;
+                int x1 = Math.min(x0 + 1, last);
+                int sum = (top[x0] & 0xff) + (top[x1] & 0xff) + (bottom[x0] & 0xff) + (bottom[x1] & 0xff);
+                halved[x] = (byte) ((sum + 2) >> 2);
+            }
+            next.add(halved);
+        }
+
+        /** Writes the band as a row of tiles and starts the next one. */
+        private void flush() throws IOException {
+            int across = tiles(width);
+            for (int tx = 0; tx < across; tx++) {
+                int x0 = tx * TILE_SIZE;
+                int tileWidth = Math.min(TILE_SIZE, width - x0);
+                for (int y = 0; y < bandRows; y++) {
+                    System.arraycopy(band, y * width + x0, tile, y * TILE_SIZE, tileWidth);
+                }
+                out.write(tile);
+            }
+            bandRows = 0;
+        }
+    }
+}
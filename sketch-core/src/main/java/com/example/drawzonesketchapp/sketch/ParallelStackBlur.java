@@ -0,0 +1,117 @@
+package com.example.drawzonesketchapp.sketch;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Multi-core {@link StackBlur}. Rows of the horizontal pass and columns of the vertical pass
+ * are split across a {@link ForkJoinPool}; every leaf task owns its stack scratch and
+ * nothing else is shared. Output is bit-identical to the serial blur. On a
+ * {@link ByteBuffer} plane every leaf streams its lines through its own heap window.
+ */
+public final class ParallelStackBlur implements Blur {
+
+    // Below this many lines a task is not worth forking
+    private static final int MIN_LINES_PER_TASK = 8;
+
+    private final ForkJoinPool pool;
+
+    public ParallelStackBlur() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    public ParallelStackBlur(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    @Override
+    public void blur(int[] plane, int width, int height, int radius, CancellationToken token) {
+        run(plane, null, null, width, height, radius, token);
+    }
+
+    @Override
+    public void blur(byte[] plane, int width, int height, int radius, CancellationToken token) {
+        run(null, plane, null, width, height, radius, token);
+    }
+
+    @Override
+    public void blur(ByteBuffer plane, int width, int height, int radius, CancellationToken token) {
+        run(null, null, plane, width, height, radius, token);
+    }
+
+    /** Exactly one of {@code ints}, {@code bytes} and {@code buffer} is the plane. */
+    private void run(int[] ints, byte[] bytes, ByteBuffer buffer, int width, int height, int radius,
+                     CancellationToken token) {
+        if (radius < 1) return;
+
+        // A few tasks per worker so uneven scheduling still balances out
+        int slices = pool.getParallelism() * 4;
+        pool.invoke(new Pass(ints, bytes, buffer, width, height, radius, token, true, 0, height,
+                Math.max(MIN_LINES_PER_TASK, height / slices)));
+        pool.invoke(new Pass(ints, bytes, buffer, width, height, radius, token, false, 0, width,
+                Math.max(MIN_LINES_PER_TASK, width / slices)));
+    }
+
+    private static final class Pass extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int[] ints;
+        private final byte[] bytes;
+        private final ByteBuffer buffer;
+        private final int width;
+        private final int height;
+        private final int radius;
+        private final CancellationToken token;
+        private final boolean rows;
+        private final int from;
+        private final int to;
+        private final int grain;
+
+        Pass(int[] ints, byte[] bytes, ByteBuffer buffer, int width, int height, int radius,
+             CancellationToken token, boolean rows, int from, int to, int grain) {
+            this.ints = ints;
+            this.bytes = bytes;
+            this.buffer = buffer;
+            this.width = width;
+            this.height = height;
+            this.radius = radius;
+            this.token = token;
+            this.rows = rows;
+            this.from = from;
+            this.to = to;
+            this.grain = grain;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= grain) {
+                int[] stack = new int[radius + radius + 1];
+                if (buffer != null) {
+                    byte[] window = PlaneWindows.window(width, height);
+                    if (rows) {
+                        PlaneWindows.rows(buffer, width, from, to, window, (lines, w, h) ->
+                                StackBlur.blurRows(lines, w, h, radius, stack, 0, h, token));
+                    } else {
+                        PlaneWindows.columns(buffer, width, height, from, to, window, (lines, w, h) ->
+                                StackBlur.blurColumns(lines, w, h, radius, stack, 0, w, token));
+                    }
+                } else if (bytes != null) {
+                    if (rows) {
+                        StackBlur.blurRows(bytes, width, height, radius, stack, from, to, token);
+                    } else {
+                        StackBlur.blurColumns(bytes, width, height, radius, stack, from, to, token);
+                    }
+                } else if (rows) {
+                    StackBlur.blurRows(ints, width, height, radius, stack, from, to, token);
+                } else {
+                    StackBlur.blurColumns(ints, width, height, radius, stack, from, to, token);
+                }
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new Pass(ints, bytes, buffer, width, height, radius, token, rows, from, mid, grain),
+                    new Pass(ints, bytes, buffer, width, height, radius, token, rows, mid, to, grain));
+        }
+    }
+}
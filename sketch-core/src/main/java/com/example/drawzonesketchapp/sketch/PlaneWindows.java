@@ -0,0 +1,75 @@
+package com.example.drawzonesketchapp.sketch;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Runs the array blur kernels on an 8-bit plane held in a {@link ByteBuffer}.
+ * <p>
+ * The plane is moved through a small heap window with bulk copies: bands of whole rows for a
+ * horizontal pass, blocks of whole columns for a vertical pass. Each line the kernel sees is
+ * complete, so the result is the same as running it on a {@code byte[]} of the whole plane,
+ * while only the window lives on the heap. Windows are kept per thread and reused.
+ */
+final class PlaneWindows {
+
+    /** Heap bytes per window; 64 rows or columns of a 4096-pixel image. */
+    static final int WINDOW_BYTES = 256 * 1024;
+
+    /** Runs on a window holding {@code width x height} of the plane, row-major. */
+    interface Kernel {
+        void apply(byte[] window, int width, int height);
+    }
+
+    private static final ThreadLocal<byte[]> WINDOWS = new ThreadLocal<>();
+
+    private PlaneWindows() {
+    }
+
+    /**
+     * This thread's window, large enough for at least one row of {@code width} and one column
+     * of {@code height}. Only valid until the thread asks again.
+     */
+    static byte[] window(int width, int height) {
+        int length = Math.max(WINDOW_BYTES, Math.max(width, height));
+        byte[] window = WINDOWS.get();
+        if (window == null || window.length < length) {
+            window = new byte[length];
+            WINDOWS.set(window);
+        }
+        return window;
+    }
+
+    /** Applies {@code kernel} to rows {@code [from, to)} in bands that fit {@code window}. */
+    static void rows(ByteBuffer plane, int width, int from, int to, byte[] window, Kernel kernel) {
+        // A view, so concurrent callers on other rows do not share a position
+        ByteBuffer view = plane.duplicate();
+        int band = Math.max(1, window.length / width);
+        for (int y = from; y < to; y += band) {
+            int rows = Math.min(band, to - y);
+            int length = rows * width;
+            view.position(y * width);
+            view.get(window, 0, length);
+            kernel.apply(window, width, rows);
+            view.position(y * width);
+            view.put(window, 0, length);
+        }
+    }
+
+    /** Applies {@code kernel} to columns {@code [from, to)} in blocks that fit {@code window}. */
+    static void columns(ByteBuffer plane, int width, int height, int from, int to, byte[] window, Kernel kernel) {
+        ByteBuffer view = plane.duplicate();
+        int block = Math.max(1, window.length / height);
+        for (int x = from; x < to; x += block) {
+            int columns = Math.min(block, to - x);
+            for (int y = 0; y < height; y++) {
+                view.position(y * width + x);
+                view.get(window, y * columns, columns);
+            }
+            kernel.apply(window, columns, height);
+            for (int y = 0; y < height; y++) {
+                view.position(y * width + x);
+                view.put(window, y * columns, columns);
+            }
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package com.example.drawzonesketchapp.sketch;
+
+import java.util.Locale;
+
+/**
+ * Picks how large and on how many threads each conversion runs, so that it finishes within a
+ * latency budget on whatever device and in whatever state the device is.
+ * <p>
+ * Three signals feed each {@link #decide() decision}: the heap the app may use, the thermal
+ * status, and how fast recent conversions actually ran. Speed is kept as a moving average of
+ * thread-nanoseconds per pixel, so a conversion on fewer threads predicts the next one
+ * correctly. The working resolution is the largest step of {@link #DIMENSIONS} predicted to
+ * fit the budget and the memory; steps rather than any size, so decoded images and cached
+ * sketches stay reusable while the average moves a little. Threads drop as the device heats
+ * up, which slows conversions down and so lowers the resolution too. Strips for
+ * full-resolution exports are sized by memory alone.
+ */
+public final class QualityGovernor {
+
+    /** What the governor knows about the device; a fake one makes the policy testable. */
+    public interface Signals {
+        /** Heap the app may use, in megabytes. */
+        int memoryClassMb();
+
+        /** {@link #THERMAL_NONE} to {@link #THERMAL_SHUTDOWN}, as Android's PowerManager reports it. */
+        int thermalStatus();
+
+        int cores();
+    }
+
+    public static final int THERMAL_NONE = 0;
+    public static final int THERMAL_LIGHT = 1;
+    public static final int THERMAL_MODERATE = 2;
+    public static final int THERMAL_SEVERE = 3;
+    public static final int THERMAL_CRITICAL = 4;
+    public static final int THERMAL_EMERGENCY = 5;
+    public static final int THERMAL_SHUTDOWN = 6;
+
+    /** Longest sides the working image may have, smallest first. */
+    static final int[] DIMENSIONS = {500, 750, 1000, 1500, 2000, 3000};
+    /** Used until a conversion has been timed. */
+    public static final int DEFAULT_DIMENSION = 1000;
+    public static final long DEFAULT_BUDGET_NANOS = 500_000_000L;
+
+    // Source and sketch bitmaps plus their int copies and the 8-bit planes of the graph
+    private static final int BYTES_PER_PIXEL = 20;
+    // Conversions may take this fraction of the heap; the rest is for the UI and the caches
+    private static final int HEAP_SHARE = 4;
+    // Weight of the newest timing in the moving average
+    private static final double SMOOTHING = 0.3;
+
+    private final Signals signals;
+    private final long budgetNanos;
+    // Thread-nanoseconds per pixel; 0 until the first timing
+    private double cost;
+    private int samples;
+
+    public QualityGovernor(Signals signals) {
+        this(signals, DEFAULT_BUDGET_NANOS);
+    }
+
+    public QualityGovernor(Signals signals, long budgetNanos) {
+        if (budgetNanos <= 0) {
+            throw new IllegalArgumentException("budget must be positive: " + budgetNanos);
+        }
+        this.signals = signals;
+        this.budgetNanos = budgetNanos;
+    }
+
+    /** Adds the timing of a conversion of {@code width x height} pixels on {@code threads}. */
+    public synchronized void record(int width, int height, int threads, long nanos) {
+        long pixels = (long) width * height;
+        if (pixels <= 0 || nanos <= 0 || threads < 1) return;
+
+        double sample = (double) nanos * threads / pixels;
+        cost = samples == 0 ? sample : cost + SMOOTHING * (sample - cost);
+        samples++;
+    }
+
+    /** The settings for the next conversion, from the signals as they are now. */
+    public synchronized Decision decide() {
+        int memoryClass = signals.memoryClassMb();
+        int thermal = signals.thermalStatus();
+        int cores = Math.max(1, signals.cores());
+
+        int threads;
+        if (thermal >= THERMAL_SEVERE) {
+            threads = 1;
+        } else if (thermal >= THERMAL_MODERATE) {
+            threads = Math.max(1, cores / 2);
+        } else {
+            threads = cores;
+        }
+
+        long memoryPixels = (long) memoryClass * 1024 * 1024 / HEAP_SHARE / BYTES_PER_PIXEL;
+        int dimension = DIMENSIONS[0];
+        String reason;
+        if (thermal >= THERMAL_CRITICAL) {
+            reason = "thermal";
+        } else {
+            reason = samples == 0 ? "default" : "budget";
+            for (int candidate : DIMENSIONS) {
+                if (samples == 0 && candidate > DEFAULT_DIMENSION) break;
+                if (pixels(candidate) > memoryPixels) {
+                    reason = "memory";
+                    break;
+                }
+                if (samples > 0 && predict(candidate, threads) > budgetNanos) break;
+                dimension = candidate;
+            }
+        }
+        return new Decision(dimension, threads, stripHeight(memoryClass), predict(dimension, threads), reason,
+                memoryClass, thermal);
+    }
+
+    private long predict(int dimension, int threads) {
+        return (long) (pixels(dimension) * cost / threads);
+    }
+
+    /** Pixels of a typical 4:3 photo whose longest side is {@code dimension}. */
+    private static long pixels(int dimension) {
+        return (long) dimension * dimension * 3 / 4;
+    }
+
+    private static int stripHeight(int memoryClassMb) {
+        if (memoryClassMb < 128) return StripSketcher.DEFAULT_STRIP_HEIGHT / 2;
+        if (memoryClassMb >= 384) return StripSketcher.DEFAULT_STRIP_HEIGHT * 2;
+        return StripSketcher.DEFAULT_STRIP_HEIGHT;
+    }
+
+    /** Settings for one conversion, and why; {@link #toString()} is meant for the log. */
+    public static final class Decision {
+        /** Longest side to decode the working image at. */
+        public final int maxDimension;
+        /** Threads the blur may use; one means a serial kernel. */
+        public final int threads;
+        /** Rows per strip of full-resolution exports. */
+        public final int stripHeight;
+        /** Expected conversion time at {@link #maxDimension}; 0 before any timing. */
+        public final long predictedNanos;
+        /** What limited the resolution: default, budget, memory or thermal. */
+        public final String reason;
+        public final int memoryClassMb;
+        public final int thermalStatus;
+
+        Decision(int maxDimension, int threads, int stripHeight, long predictedNanos, String reason,
+                 int memoryClassMb, int thermalStatus) {
+            this.maxDimension = maxDimension;
+            this.threads = threads;
+            this.stripHeight = stripHeight;
+            this.predictedNanos = predictedNanos;
+            this.reason = reason;
+            this.memoryClassMb = memoryClassMb;
+            this.thermalStatus = thermalStatus;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "%dpx (%s), %d threads, strips of %d; %d MB heap, thermal %d, %.0f ms expected",
+                    maxDimension, reason, threads, stripHeight, memoryClassMb, thermalStatus, predictedNanos / 1e6);
+        }
+    }
+}
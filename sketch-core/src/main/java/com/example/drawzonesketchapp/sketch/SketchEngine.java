@@ -0,0 +1,118 @@
+package com.example.drawzonesketchapp.sketch;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Fused pencil-sketch kernel.
+ * <p>
+ * Everything happens on a single luminance plane: grayscale and invert are applied while the
+ * source pixels are read, the stack blur runs in place on that plane, and the color dodge
+ * writes straight back into the caller's pixel array. Peak working set is the pixel array
+ * plus one plane, which can be borrowed from a {@link BufferPool}. {@link #sketchGray} keeps
+ * that plane at one byte per pixel and writes an 8-bit gray result instead of ARGB. The
+ * {@link ByteBuffer} overload runs the same steps on RGBA bytes and a plane that can both
+ * live off the Java heap.
+ */
+public final class SketchEngine {
+
+    private SketchEngine() {
+    }
+
+    /**
+     * Converts {@code pixels} (ARGB, row-major, {@code width * height}) into a pencil sketch
+     * in place.
+     */
+    public static void sketch(int[] pixels, int width, int height, int radius) {
+        sketch(pixels, width, height, radius, StackBlur::blur);
+    }
+
+    /** Same as {@link #sketch(int[], int, int, int)} with a caller-selected blur. */
+    public static void sketch(int[] pixels, int width, int height, int radius, Blur blur) {
+        sketch(pixels, width, height, radius, blur, CancellationToken.NONE);
+    }
+
+    /**
+     * Cancellable conversion. {@code pixels} is left in an unspecified state if the token is
+     * cancelled.
+     *
+     * @throws java.util.concurrent.CancellationException if the token is cancelled
+     */
+    public static void sketch(int[] pixels, int width, int height, int radius, Blur blur,
+                              CancellationToken token) {
+        sketch(pixels, width, height, radius, blur, BufferPool.NONE, token);
+    }
+
+    /**
+     * Cancellable conversion that borrows its luminance plane from {@code pool} and hands it
+     * back afterwards, so repeated conversions of the same size do not allocate.
+     *
+     * @throws java.util.concurrent.CancellationException if the token is cancelled
+     */
+    public static void sketch(int[] pixels, int width, int height, int radius, Blur blur,
+                              BufferPool pool, CancellationToken token) {
+        int n = width * height;
+        int[] plane = pool.acquire(n);
+        try {
+            // Step 1 + 2: grayscale and invert while reading the source
+            Luminance.toInvertedPlane(pixels, plane, n);
+            token.throwIfCancelled();
+
+            // Step 3: blur the single inverted plane
+            blur.blur(plane, width, height, radius, token);
+            token.throwIfCancelled();
+
+            // Step 4: color dodge of the source red channel over the blurred plane
+            ColorDodge.blend(pixels, plane, pixels, n);
+        } finally {
+            pool.release(plane);
+        }
+    }
+
+    /**
+     * Grayscale-native conversion into an 8-bit plane. {@code gray} ({@code width * height}
+     * bytes) is both the working plane and the output, so nothing wider than a byte per pixel
+     * is allocated and the result keeps all 256 gray levels. {@code argb} is only read.
+     *
+     * @throws java.util.concurrent.CancellationException if the token is cancelled
+     */
+    public static void sketchGray(int[] argb, byte[] gray, int width, int height, int radius, Blur blur,
+                                  CancellationToken token) {
+        int n = width * height;
+
+        // Step 1 + 2: grayscale and invert while reading the source
+        Luminance.toInvertedPlane(argb, gray, n);
+        token.throwIfCancelled();
+
+        // Step 3: blur the single inverted plane
+        blur.blur(gray, width, height, radius, token);
+        token.throwIfCancelled();
+
+        // Step 4: color dodge of the source red channel over the blurred plane
+        ColorDodge.blend(argb, gray, gray, n);
+    }
+
+    /**
+     * {@link #sketch(int[], int, int, int, Blur, CancellationToken)} on buffers, typically
+     * direct ones, so a large image needs no heap beyond the blur's window. {@code rgba}
+     * holds the pixels as R, G, B, A bytes (an ARGB_8888 bitmap's memory layout) and is
+     * converted in place; {@code plane} is {@code width * height} bytes of scratch. Both are
+     * indexed from 0 and keep their positions.
+     *
+     * @throws java.util.concurrent.CancellationException if the token is cancelled
+     */
+    public static void sketch(ByteBuffer rgba, ByteBuffer plane, int width, int height, int radius, Blur blur,
+                              CancellationToken token) {
+        int n = width * height;
+
+        // Step 1 + 2: grayscale and invert while reading the source
+        Luminance.toInvertedPlane(rgba, plane, n);
+        token.throwIfCancelled();
+
+        // Step 3: blur the single inverted plane
+        blur.blur(plane, width, height, radius, token);
+        token.throwIfCancelled();
+
+        // Step 4: color dodge of the source red channel over the blurred plane
+        ColorDodge.blend(rgba, plane, rgba, n);
+    }
+}
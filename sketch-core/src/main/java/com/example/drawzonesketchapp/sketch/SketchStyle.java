@@ -0,0 +1,21 @@
+package com.example.drawzonesketchapp.sketch;
+
+/**
+ * A look rendered from the shared planes of a {@link FilterGraph}. Built-in styles are in
+ * {@link SketchStyles}.
+ */
+public interface SketchStyle {
+
+    /** Short stable identifier, used in cache keys and file names. */
+    String name();
+
+    /**
+     * Renders the graph's source into {@code out} as opaque ARGB pixels. {@code radius} is the
+     * strength in source pixels and {@code blur} the blur to run it with; styles that share a
+     * blurred plane ask the graph for the same node, so it is computed once. {@code out} must
+     * not be the graph's source.
+     *
+     * @throws java.util.concurrent.CancellationException if the token is cancelled
+     */
+    void render(FilterGraph graph, int radius, Blur blur, int[] out, CancellationToken token);
+}
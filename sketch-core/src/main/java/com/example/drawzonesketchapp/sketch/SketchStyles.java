@@ -0,0 +1,110 @@
+package com.example.drawzonesketchapp.sketch;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The built-in sketch styles.
+ * <p>
+ * Pencil and colored pencil dodge over the same blurred plane, charcoal over one blurred
+ * twice as far, and ink only needs the luminance edges, so rendering all four on one graph
+ * costs two blurs and a few per-pixel passes.
+ */
+public final class SketchStyles {
+
+    /** The classic sketch, identical to {@link SketchEngine#sketch}. */
+    public static final SketchStyle PENCIL = new SketchStyle() {
+        @Override
+        public String name() {
+            return "pencil";
+        }
+
+        @Override
+        public void render(FilterGraph graph, int radius, Blur blur, int[] out, CancellationToken token) {
+            byte[] blurred = graph.plane(FilterNodes.blurredInverted(radius, blur), token);
+            ColorDodge.blend(graph.source(), blurred, out, graph.size());
+        }
+    };
+
+    /** A wider blur with a darkening contrast curve, for heavy soft strokes. */
+    public static final SketchStyle CHARCOAL = new SketchStyle() {
+        @Override
+        public String name() {
+            return "charcoal";
+        }
+
+        @Override
+        public void render(FilterGraph graph, int radius, Blur blur, int[] out, CancellationToken token) {
+            int n = graph.size();
+            byte[] blurred = graph.plane(FilterNodes.blurredInverted(radius * CHARCOAL_BLUR_SCALE, blur), token);
+            byte[] dodged = graph.scratch();
+            ColorDodge.blend(graph.source(), blurred, dodged, n);
+            for (int i = 0; i < n; i++) {
+                int v = CHARCOAL_CURVE[dodged[i] & 0xff];
+                out[i] = 0xff000000 | (v * 0x010101);
+            }
+        }
+    };
+
+    /** Each color channel dodged over the pencil plane, so strokes keep the source hue. */
+    public static final SketchStyle COLORED_PENCIL = new SketchStyle() {
+        @Override
+        public String name() {
+            return "colored";
+        }
+
+        @Override
+        public void render(FilterGraph graph, int radius, Blur blur, int[] out, CancellationToken token) {
+            byte[] blurred = graph.plane(FilterNodes.blurredInverted(radius, blur), token);
+            ColorDodge.blendColor(graph.source(), blurred, out, graph.size());
+        }
+    };
+
+    /** Dark lines along luminance edges on white. The radius is not used. */
+    public static final SketchStyle INK = new SketchStyle() {
+        @Override
+        public String name() {
+            return "ink";
+        }
+
+        @Override
+        public void render(FilterGraph graph, int radius, Blur blur, int[] out, CancellationToken token) {
+            byte[] edges = graph.plane(FilterNodes.EDGES, token);
+            int n = graph.size();
+            for (int i = 0; i < n; i++) {
+                int v = 255 - (edges[i] & 0xff);
+                out[i] = 0xff000000 | (v * 0x010101);
+            }
+        }
+    };
+
+    private static final List<SketchStyle> ALL =
+            Collections.unmodifiableList(Arrays.asList(PENCIL, CHARCOAL, COLORED_PENCIL, INK));
+
+    private static final int CHARCOAL_BLUR_SCALE = 2;
+    // Squares the normalized value: white stays white, mid tones and strokes get darker
+    private static final int[] CHARCOAL_CURVE = new int[256];
+
+    static {
+        for (int v = 0; v < 256; v++) {
+            CHARCOAL_CURVE[v] = (v * v + 127) / 255;
+        }
+    }
+
+    private SketchStyles() {
+    }
+
+    /** Every built-in style, pencil first. */
+    public static List<SketchStyle> all() {
+        return ALL;
+    }
+
+    /** The built-in style called {@code name}, or pencil if there is none. */
+    public static SketchStyle named(String name) {
+        for (SketchStyle style : ALL) {
+            if (style.name().equals(name)) return style;
+        }
+        return PENCIL;
+    }
+}
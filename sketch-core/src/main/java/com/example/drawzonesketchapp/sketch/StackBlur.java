@@ -0,0 +1,285 @@
+package com.example.drawzonesketchapp.sketch;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Single-channel stack blur on a pixel plane.
+ * <p>
+ * Each row of the horizontal pass and each column of the vertical pass is independent, so
+ * the passes are also exposed over line ranges for {@link ParallelStackBlur}. Callers of the
+ * range methods must supply their own {@code stack} scratch of {@code 2 * radius + 1} ints.
+ * Planes are either {@code int[]} or 8-bit {@code byte[]}; the byte kernels are the int ones
+ * with unsigned loads and narrowing stores, and give identical values.
+ */
+public final class StackBlur {
+
+    /**
+     * The serial kernel as a {@link Blur}. A method reference to
+     * {@link #blur(int[], int, int, int, CancellationToken)} would only implement the
+     * {@code int} plane and widen every 8-bit plane through a temporary one; this blurs all
+     * three plane types directly.
+     */
+    public static final Blur SERIAL = new Serial();
+
+    private StackBlur() {
+    }
+
+    /**
+     * Single-channel stack blur, in place. Same algorithm and rounding as the former
+     * three-channel {@code fastBlur}, but one sum per pass instead of three. Writing back into
+     * the source row/column is safe because the look-ahead index is always ahead of the write
+     * index, and everything behind it is already held in the stack.
+     */
+    public static void blur(int[] plane, int w, int h, int radius) {
+        blur(plane, w, h, radius, CancellationToken.NONE);
+    }
+
+    /** Cancellable {@link #blur(int[], int, int, int)}; matches {@link Blur}. */
+    public static void blur(int[] plane, int w, int h, int radius, CancellationToken token) {
+        if (radius < 1) return;
+
+        int[] stack = new int[radius + radius + 1];
+        blurRows(plane, w, h, radius, stack, 0, h, token);
+        blurColumns(plane, w, h, radius, stack, 0, w, token);
+    }
+
+    /** {@link #blur(int[], int, int, int, CancellationToken)} on an 8-bit plane. */
+    public static void blur(byte[] plane, int w, int h, int radius, CancellationToken token) {
+        if (radius < 1) return;
+
+        int[] stack = new int[radius + radius + 1];
+        blurRows(plane, w, h, radius, stack, 0, h, token);
+        blurColumns(plane, w, h, radius, stack, 0, w, token);
+    }
+
+    /**
+     * {@link #blur(byte[], int, int, int, CancellationToken)} on an 8-bit plane in a buffer,
+     * usually direct, streamed through {@link PlaneWindows} so only a window is on the heap.
+     */
+    public static void blur(ByteBuffer plane, int w, int h, int radius, CancellationToken token) {
+        if (radius < 1) return;
+
+        int[] stack = new int[radius + radius + 1];
+        byte[] window = PlaneWindows.window(w, h);
+        PlaneWindows.rows(plane, w, 0, h, window,
+                (lines, width, height) -> blurRows(lines, width, height, radius, stack, 0, height, token));
+        PlaneWindows.columns(plane, w, h, 0, w, window,
+                (lines, width, height) -> blurColumns(lines, width, height, radius, stack, 0, width, token));
+    }
+
+    /**
+     * Shift of the fixed-point reciprocal that turns a weighted stack sum into its average.
+     * The sum is at most {@code 255 * (radius + 1)^2}; with this shift and
+     * {@link #reciprocal}, {@code (sum * reciprocal) >>> shift} equals the integer quotient
+     * for every such sum, so the average costs a multiply instead of a division or a table
+     * that grows with the square of the radius.
+     */
+    static int shift(int radius) {
+        int divsum = (radius + 1) * (radius + 1);
+        int log = 32 - Integer.numberOfLeadingZeros(divsum - 1);
+        return 8 + 2 * log;
+    }
+
+    /** Multiplier for {@link #shift}. */
+    static long reciprocal(int radius) {
+        int divsum = (radius + 1) * (radius + 1);
+        return (1L << shift(radius)) / divsum + 1;
+    }
+
+    /** Horizontal pass over rows {@code [from, to)}. */
+    static void blurRows(int[] plane, int w, int h, int radius, int[] stack, int from, int to,
+                         CancellationToken token) {
+        int wm = w - 1;
+        int div = radius + radius + 1;
+        long mul = reciprocal(radius);
+        int shift = shift(radius);
+        int r1 = radius + 1;
+        int sum, insum, outsum, stackpointer, si, p;
+
+        for (int y = from, yw = from * w; y < to; y++, yw += w) {
+            token.throwIfCancelled();
+            sum = insum = outsum = 0;
+            for (int i = -radius; i <= radius; i++) {
+                p = plane[yw + Math.min(wm, Math.max(i, 0))];
+                stack[i + radius] = p;
+                sum += p * (r1 - Math.abs(i));
+                if (i > 0) {
+                    insum += p;
+                } else {
+                    outsum += p;
+                }
+            }
+            stackpointer = radius;
+
+            for (int x = 0; x < w; x++) {
+                plane[yw + x] = (int) ((sum * mul) >>> shift);
+
+                sum -= outsum;
+                si = (stackpointer - radius + div) % div;
+                outsum -= stack[si];
+
+                p = plane[yw + Math.min(x + r1, wm)];
+                stack[si] = p;
+                insum += p;
+                sum += insum;
+
+                stackpointer = (stackpointer + 1) % div;
+                p = stack[stackpointer];
+                outsum += p;
+                insum -= p;
+            }
+        }
+    }
+
+    /** Vertical pass over columns {@code [from, to)}. */
+    static void blurColumns(int[] plane, int w, int h, int radius, int[] stack, int from, int to,
+                            CancellationToken token) {
+        int hm = h - 1;
+        int div = radius + radius + 1;
+        long mul = reciprocal(radius);
+        int shift = shift(radius);
+        int r1 = radius + 1;
+        int sum, insum, outsum, stackpointer, si, p;
+
+        for (int x = from; x < to; x++) {
+            token.throwIfCancelled();
+            sum = insum = outsum = 0;
+            for (int i = -radius; i <= radius; i++) {
+                p = plane[Math.min(hm, Math.max(i, 0)) * w + x];
+                stack[i + radius] = p;
+                sum += p * (r1 - Math.abs(i));
+                if (i > 0) {
+                    insum += p;
+                } else {
+                    outsum += p;
+                }
+            }
+            stackpointer = radius;
+
+            for (int y = 0, yi = x; y < h; y++, yi += w) {
+                plane[yi] = (int) ((sum * mul) >>> shift);
+
+                sum -= outsum;
+                si = (stackpointer - radius + div) % div;
+                outsum -= stack[si];
+
+                p = plane[Math.min(y + r1, hm) * w + x];
+                stack[si] = p;
+                insum += p;
+                sum += insum;
+
+                stackpointer = (stackpointer + 1) % div;
+                p = stack[stackpointer];
+                outsum += p;
+                insum -= p;
+            }
+        }
+    }
+
+    /** Horizontal pass over rows {@code [from, to)} of an 8-bit plane. */
+    static void blurRows(byte[] plane, int w, int h, int radius, int[] stack, int from, int to,
+                         CancellationToken token) {
+        int wm = w - 1;
+        int div = radius + radius + 1;
+        long mul = reciprocal(radius);
+        int shift = shift(radius);
+        int r1 = radius + 1;
+        int sum, insum, outsum, stackpointer, si, p;
+
+        for (int y = from, yw = from * w; y < to; y++, yw += w) {
+            token.throwIfCancelled();
+            sum = insum = outsum = 0;
+            for (int i = -radius; i <= radius; i++) {
+                p = plane[yw + Math.min(wm, Math.max(i, 0))] & 0xff;
+                stack[i + radius] = p;
+                sum += p * (r1 - Math.abs(i));
+                if (i > 0) {
+                    insum += p;
+                } else {
+                    outsum += p;
+                }
+            }
+            stackpointer = radius;
+
+            for (int x = 0; x < w; x++) {
+                plane[yw + x] = (byte) ((sum * mul) >>> shift);
+
+                sum -= outsum;
+                si = (stackpointer - radius + div) % div;
+                outsum -= stack[si];
+
+                p = plane[yw + Math.min(x + r1, wm)] & 0xff;
+                stack[si] = p;
+                insum += p;
+                sum += insum;
+
+                stackpointer = (stackpointer + 1) % div;
+                p = stack[stackpointer];
+                outsum += p;
+                insum -= p;
+            }
+        }
+    }
+
+    /** Vertical pass over columns {@code [from, to)} of an 8-bit plane. */
+    static void blurColumns(byte[] plane, int w, int h, int radius, int[] stack, int from, int to,
+                            CancellationToken token) {
+        int hm = h - 1;
+        int div = radius + radius + 1;
+        long mul = reciprocal(radius);
+        int shift = shift(radius);
+        int r1 = radius + 1;
+        int sum, insum, outsum, stackpointer, si, p;
+
+        for (int x = from; x < to; x++) {
+            token.throwIfCancelled();
+            sum = insum = outsum = 0;
+            for (int i = -radius; i <= radius; i++) {
+                p = plane[Math.min(hm, Math.max(i, 0)) * w + x] & 0xff;
+                stack[i + radius] = p;
+                sum += p * (r1 - Math.abs(i));
+                if (i > 0) {
+                    insum += p;
+                } else {
+                    outsum += p;
+                }
+            }
+            stackpointer = radius;
+
+            for (int y = 0, yi = x; y < h; y++, yi += w) {
+                plane[yi] = (byte) ((sum * mul) >>> shift);
+
+                sum -= outsum;
+                si = (stackpointer - radius + div) % div;
+                outsum -= stack[si];
+
+                p = plane[Math.min(y + r1, hm) * w + x] & 0xff;
+                stack[si] = p;
+                insum += p;
+                sum += insum;
+
+                stackpointer = (stackpointer + 1) % div;
+                p = stack[stackpointer];
+                outsum += p;
+                insum -= p;
+            }
+        }
+    }
+
+    private static final class Serial implements Blur {
+        @Override
+        public void blur(int[] plane, int width, int height, int radius, CancellationToken token) {
+            StackBlur.blur(plane, width, height, radius, token);
+        }
+
+        @Override
+        public void blur(byte[] plane, int width, int height, int radius, CancellationToken token) {
+            StackBlur.blur(plane, width, height, radius, token);
+        }
+
+        @Override
+        public void blur(ByteBuffer plane, int width, int height, int radius, CancellationToken token) {
+            StackBlur.blur(plane, width, height, radius, token);
+        }
+    }
+}
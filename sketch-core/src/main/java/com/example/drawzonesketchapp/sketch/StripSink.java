@@ -0,0 +1,12 @@
+package com.example.drawzonesketchapp.sketch;
+
+import java.io.IOException;
+
+/**
+ * Receives a finished image top to bottom, a band of rows at a time.
+ */
+public interface StripSink {
+
+    /** Consumes {@code rows} full-width ARGB rows starting at {@code argb[offset]}. */
+    void write(int[] argb, int offset, int rows) throws IOException;
+}
@@ -0,0 +1,82 @@
+package com.example.drawzonesketchapp.sketch;
+
+import java.io.IOException;
+
+/**
+ * Streams a sketch conversion through horizontal strips so peak memory depends on the strip
+ * height rather than the image size.
+ * <p>
+ * Each strip is read together with {@link Blur#reach} overlap rows above and below. The
+ * vertical blur of a row only depends on rows within that reach, so the rows in the middle of
+ * a band come out exactly as they would from a whole-image conversion; the overlap rows are
+ * discarded.
+ */
+public final class StripSketcher {
+
+    public static final int DEFAULT_STRIP_HEIGHT = 256;
+
+    private final Blur blur;
+    private final int radius;
+    private final int overlap;
+    private final int stripHeight;
+    private final BufferPool pool;
+
+    public StripSketcher(Blur blur, int radius, int stripHeight) {
+        this(blur, radius, stripHeight, BufferPool.NONE);
+    }
+
+    /** Borrows the band buffers from {@code pool} for the duration of each conversion. */
+    public StripSketcher(Blur blur, int radius, int stripHeight, BufferPool pool) {
+        if (stripHeight < 1) {
+            throw new IllegalArgumentException("stripHeight must be positive: " + stripHeight);
+        }
+        this.blur = blur;
+        this.radius = Math.max(0, radius);
+        this.overlap = blur.reach(this.radius);
+        this.stripHeight = stripHeight;
+        this.pool = pool;
+    }
+
+    /** Bytes of pixel buffers held while converting an image {@code width} pixels wide. */
+    public long workingSetBytes(int width) {
+        // ARGB band plus luminance plane
+        return 2L * 4 * width * (stripHeight + 2L * overlap);
+    }
+
+    public void sketch(StripSource source, StripSink sink) throws IOException {
+        sketch(source, sink, CancellationToken.NONE);
+    }
+
+    /**
+     * Cancellable conversion; the token is polled between strips and inside the blur.
+     *
+     * @throws java.util.concurrent.CancellationException if the token is cancelled
+     */
+    public void sketch(StripSource source, StripSink sink, CancellationToken token) throws IOException {
+        int width = source.width();
+        int height = source.height();
+        int bandCapacity = Math.min(height, stripHeight + 2 * overlap);
+        int[] argb = pool.acquire(width * bandCapacity);
+        int[] plane = pool.acquire(width * bandCapacity);
+        try {
+            for (int top = 0; top < height; top += stripHeight) {
+                int rows = Math.min(stripHeight, height - top);
+                int bandTop = Math.max(0, top - overlap);
+                int bandBottom = Math.min(height, top + rows + overlap);
+                int bandRows = bandBottom - bandTop;
+                int n = width * bandRows;
+                token.throwIfCancelled();
+
+                source.read(bandTop, bandRows, argb);
+                Luminance.toInvertedPlane(argb, plane, n);
+                blur.blur(plane, width, bandRows, radius, token);
+                ColorDodge.blend(argb, plane, argb, n);
+
+                sink.write(argb, (top - bandTop) * width, rows);
+            }
+        } finally {
+            pool.release(argb);
+            pool.release(plane);
+        }
+    }
+}
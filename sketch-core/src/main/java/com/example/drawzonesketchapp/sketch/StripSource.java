@@ -0,0 +1,19 @@
+package com.example.drawzonesketchapp.sketch;
+
+import java.io.IOException;
+
+/**
+ * Source image that can be read a band of rows at a time, e.g. a region decoder.
+ */
+public interface StripSource {
+
+    int width();
+
+    int height();
+
+    /**
+     * Reads rows {@code [top, top + rows)} as ARGB into the start of {@code argb}, which holds
+     * at least {@code rows * width()} pixels.
+     */
+    void read(int top, int rows, int[] argb) throws IOException;
+}
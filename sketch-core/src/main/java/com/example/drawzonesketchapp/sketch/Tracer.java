@@ -0,0 +1,24 @@
+package com.example.drawzonesketchapp.sketch;
+
+/**
+ * Receives the start and end of each pipeline stage, for profiling. Sections nest, and each
+ * one is begun and ended on the same thread.
+ */
+public interface Tracer {
+
+    /** A tracer that ignores everything. */
+    Tracer NONE = new Tracer() {
+        @Override
+        public void begin(String section) {
+        }
+
+        @Override
+        public void end() {
+        }
+    };
+
+    void begin(String section);
+
+    /** Ends the most recently begun section that is still open. */
+    void end();
+}
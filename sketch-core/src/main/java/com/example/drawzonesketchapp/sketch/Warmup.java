@@ -0,0 +1,48 @@
+package com.example.drawzonesketchapp.sketch;
+
+import java.util.Collection;
+
+/**
+ * A throwaway conversion of a tiny synthetic image, run before the first real one.
+ * <p>
+ * Every style is rendered with every given blur, which loads the classes and runs each kernel
+ * often enough that a JIT can pick it up, so the user's first conversion does not pay for
+ * either.
+ */
+public final class Warmup {
+
+    /** Side of the square warm-up image. */
+    public static final int SIZE = 64;
+
+    private Warmup() {
+    }
+
+    /**
+     * Renders all styles at {@code radius} once per blur in {@code blurs}, borrowing planes
+     * from {@code pool}.
+     *
+     * @throws java.util.concurrent.CancellationException if the token is cancelled
+     */
+    public static void run(Collection<Blur> blurs, int radius, BufferPool pool, CancellationToken token) {
+        int n = SIZE * SIZE;
+        int[] source = pool.acquire(n);
+        int[] out = pool.acquire(n);
+        try {
+            // A gradient, so no kernel sees a degenerate flat image
+            for (int i = 0; i < n; i++) {
+                int v = (i % SIZE + i / SIZE) * 255 / (2 * SIZE - 2);
+                source[i] = 0xff000000 | (v << 16) | ((255 - v) << 8) | (v >> 1);
+            }
+            for (Blur blur : blurs) {
+                try (FilterGraph graph = new FilterGraph(source, SIZE, SIZE, pool)) {
+                    for (SketchStyle style : SketchStyles.all()) {
+                        style.render(graph, radius, blur, out, token);
+                    }
+                }
+            }
+        } finally {
+            pool.release(source);
+            pool.release(out);
+        }
+    }
+}
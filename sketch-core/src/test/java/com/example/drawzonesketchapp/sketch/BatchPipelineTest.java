@@ -0,0 +1,98 @@
+package com.example.drawzonesketchapp.sketch;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class BatchPipelineTest {
+
+    private static List<Integer> inputs(int count) {
+        List<Integer> inputs = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            inputs.add(i);
+        }
+        return inputs;
+    }
+
+    @Test
+    public void convertsEveryInputAndReportsFailures() throws Exception {
+        Set<Integer> encoded = ConcurrentHashMap.newKeySet();
+        Set<Integer> failed = ConcurrentHashMap.newKeySet();
+        BatchPipeline<Integer, Integer, Integer> pipeline = new BatchPipeline<>(
+                (input, token) -> {
+                    if (input % 10 == 3) throw new IOException("corrupt " + input);
+                    return input;
+                },
+                (decoded, token) -> decoded * 2,
+                (sketched, token) -> encoded.add(sketched / 2),
+                3, 2);
+
+        BatchPipeline.Stats stats = pipeline.run(inputs(50), (input, error, progress) -> {
+            if (error != null) failed.add(input);
+        }, CancellationToken.NONE);
+
+        assertEquals(50, stats.total);
+        assertEquals(45, stats.completed);
+        assertEquals(5, stats.failed);
+        assertEquals(Set.of(3, 13, 23, 33, 43), failed);
+        assertEquals(45, encoded.size());
+        assertTrue(stats.imagesPerSecond() > 0);
+    }
+
+    @Test
+    public void boundedQueuesLimitItemsInFlight() throws Exception {
+        int workers = 2;
+        int queueCapacity = 2;
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger peak = new AtomicInteger();
+        BatchPipeline<Integer, Integer, Integer> pipeline = new BatchPipeline<>(
+                (input, token) -> {
+                    peak.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                    return input;
+                },
+                (decoded, token) -> decoded,
+                (sketched, token) -> {
+                    // Slow encoder, so decode runs as far ahead as the queues allow
+                    Thread.sleep(2);
+                    inFlight.decrementAndGet();
+                    return sketched;
+                },
+                workers, queueCapacity);
+
+        pipeline.run(inputs(100), (input, error, progress) -> {
+        }, CancellationToken.NONE);
+
+        assertTrue("peak " + peak.get(), peak.get() <= 2 * queueCapacity + workers + 2);
+    }
+
+    @Test
+    public void cancelStopsTheBatch() throws Exception {
+        CancellationToken token = new CancellationToken();
+        List<Integer> finished = Collections.synchronizedList(new ArrayList<>());
+        BatchPipeline<Integer, Integer, Integer> pipeline = new BatchPipeline<>(
+                (input, t) -> input,
+                (decoded, t) -> decoded,
+                (sketched, t) -> sketched,
+                2, 2);
+
+        try {
+            pipeline.run(inputs(1000), (input, error, progress) -> {
+                finished.add(input);
+                if (progress.completed == 10) token.cancel();
+            }, token);
+            fail("expected CancellationException");
+        } catch (CancellationException expected) {
+            // Stopped well short of the end
+        }
+        assertTrue(finished.size() < 1000);
+    }
+}
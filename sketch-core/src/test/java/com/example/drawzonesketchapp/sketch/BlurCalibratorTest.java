@@ -0,0 +1,51 @@
+package com.example.drawzonesketchapp.sketch;
+
+import org.junit.Test;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class BlurCalibratorTest {
+
+    /** Stack blur that also burns time proportional to the plane size. */
+    private static Blur slowed(int extraPasses) {
+        return new Blur() {
+            @Override
+            public void blur(int[] plane, int width, int height, int radius, CancellationToken token) {
+                StackBlur.blur(plane, width, height, radius, token);
+            }
+
+            @Override
+            public void blur(byte[] plane, int width, int height, int radius, CancellationToken token) {
+                for (int i = 0; i < extraPasses; i++) {
+                    StackBlur.blur(plane.clone(), width, height, radius, token);
+                }
+                StackBlur.blur(plane, width, height, radius, token);
+            }
+        };
+    }
+
+    @Test
+    public void picksFastestCandidate() {
+        Map<String, Blur> candidates = new LinkedHashMap<>();
+        candidates.put("slow", slowed(8));
+        candidates.put("fast", slowed(0));
+        candidates.put("slower", slowed(16));
+
+        assertEquals("fast", BlurCalibrator.fastest(candidates, 200, 150, 5, 3, CancellationToken.NONE));
+    }
+
+    @Test
+    public void singleCandidateWins() {
+        Map<String, Blur> candidates = new LinkedHashMap<>();
+        candidates.put("only", new BoxBlur());
+        assertEquals("only", BlurCalibrator.fastest(candidates, 16, 16, 3, 1, CancellationToken.NONE));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsEmptyCandidates() {
+        BlurCalibrator.fastest(new LinkedHashMap<>(), 16, 16, 3, 1, CancellationToken.NONE);
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.drawzonesketchapp.sketch;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class BoxBlurTest {
+
+    private static int[] randomPlane(int n, long seed) {
+        Random random = new Random(seed);
+        int[] plane = new int[n];
+        for (int i = 0; i < n; i++) {
+            plane[i] = random.nextInt(256);
+        }
+        return plane;
+    }
+
+    @Test
+    public void keepsConstantPlane() {
+        int[] plane = new int[50 * 40];
+        Arrays.fill(plane, 201);
+        new BoxBlur().blur(plane, 50, 40, 30);
+        for (int v : plane) {
+            assertEquals(201, v);
+        }
+    }
+
+    @Test
+    public void boxesMatchStackBlurVariance() {
+        for (int radius = 1; radius <= 60; radius++) {
+            double variance = 0;
+            for (int box : BoxBlur.boxRadii(radius)) {
+                variance += box * (box + 1) / 3.0;
+            }
+            double expected = radius * (radius + 2) / 6.0;
+            // Odd box widths only approximate the target; stay within one box step
+            assertEquals("radius " + radius, expected, variance, Math.max(1.0, expected * 0.15));
+        }
+    }
+
+    @Test
+    public void closeToStackBlur() {
+        int width = 120;
+        int height = 90;
+        for (int radius : new int[]{3, 10, 30}) {
+            // Smooth content, so the comparison measures kernel shape rather than noise
+            int[] stack = new int[width * height];
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < width; x++) {
+                    stack[y * width + x] = ((x / 15 + y / 15) % 2) * 255;
+                }
+            }
+            int[] box = stack.clone();
+            StackBlur.blur(stack, width, height, radius);
+            new BoxBlur().blur(box, width, height, radius);
+
+            long total = 0;
+            for (int i = 0; i < stack.length; i++) {
+                total += Math.abs(stack[i] - box[i]);
+            }
+            assertTrue("radius " + radius, total / (double) stack.length < 6);
+        }
+    }
+
+    @Test
+    public void stripsUseBoxReach() throws Exception {
+        int width = 31;
+        int height = 97;
+        int radius = 12;
+        int[] source = randomPlane(width * height, 5);
+        for (int i = 0; i < source.length; i++) {
+            source[i] |= 0xff000000 | (source[i] << 16);
+        }
+        Blur blur = new BoxBlur();
+        int[] expected = source.clone();
+        SketchEngine.sketch(expected, width, height, radius, blur);
+
+        int[] actual = new int[source.length];
+        int[] written = {0};
+        StripSource strips = new StripSource() {
+            @Override
+            public int width() {
+                return width;
+            }
+
+            @Override
+            public int height() {
+                return height;
+            }
+
+            @Override
+            public void read(int top, int rows, int[] argb) {
+                System.arraycopy(source, top * width, argb, 0, rows * width);
+            }
+        };
+        new StripSketcher(blur, radius, 10).sketch(strips, (argb, offset, rows) -> {
+            System.arraycopy(argb, offset, actual, written[0] * width, rows * width);
+            written[0] += rows;
+        });
+        assertArrayEquals(expected, actual);
+    }
+}
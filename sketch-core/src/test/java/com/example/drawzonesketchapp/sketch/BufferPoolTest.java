@@ -0,0 +1,73 @@
+package com.example.drawzonesketchapp.sketch;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class BufferPoolTest {
+
+    @Test
+    public void reusesReleasedBufferOfSameLength() {
+        BufferPool pool = new BufferPool(1 << 20);
+        int[] buffer = pool.acquire(1000);
+        pool.release(buffer);
+
+        assertSame(buffer, pool.acquire(1000));
+        assertNotSame(buffer, pool.acquire(1000));
+        assertEquals(1, pool.hits());
+        assertEquals(2, pool.misses());
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedSizeOverCap() {
+        // Room for two 1000-int buffers
+        BufferPool pool = new BufferPool(8000);
+        int[] a = pool.acquire(1000);
+        int[] b = pool.acquire(999);
+        pool.release(a);
+        pool.release(b);
+        pool.acquire(1000);
+        pool.release(a);
+
+        pool.release(new int[1000]);
+
+        assertTrue(pool.pooledBytes() <= 8000);
+        assertNotSame(b, pool.acquire(999));
+    }
+
+    @Test
+    public void neverRetainsBuffersLargerThanCap() {
+        BufferPool pool = new BufferPool(100);
+        pool.release(new int[1000]);
+        assertEquals(0, pool.pooledBytes());
+
+        BufferPool.NONE.release(new int[1]);
+        assertEquals(0, BufferPool.NONE.pooledBytes());
+    }
+
+    @Test
+    public void steadyStateReconversionDoesNotAllocate() {
+        int width = 64;
+        int height = 48;
+        Random random = new Random(3);
+        int[] source = new int[width * height];
+        for (int i = 0; i < source.length; i++) {
+            source[i] = 0xff000000 | random.nextInt(0x1000000);
+        }
+        int[] expected = source.clone();
+        SketchEngine.sketch(expected, width, height, 20, new BoxBlur());
+
+        BufferPool pool = new BufferPool(1 << 20);
+        Blur blur = new BoxBlur(pool);
+        for (int i = 0; i < 3; i++) {
+            int[] pixels = source.clone();
+            SketchEngine.sketch(pixels, width, height, 20, blur, pool, CancellationToken.NONE);
+            // Stale pooled contents must not leak into the output
+            assertArrayEquals(expected, pixels);
+        }
+        // Plane plus three blur scratch buffers, allocated on the first pass only
+        assertEquals(4, pool.misses());
+    }
+}
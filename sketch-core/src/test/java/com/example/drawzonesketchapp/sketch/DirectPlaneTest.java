@@ -0,0 +1,99 @@
+package com.example.drawzonesketchapp.sketch;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+
+public class DirectPlaneTest {
+
+    private static ByteBuffer direct(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length).order(ByteOrder.nativeOrder());
+        buffer.put(bytes);
+        buffer.rewind();
+        return buffer;
+    }
+
+    private static byte[] contents(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.capacity()];
+        buffer.duplicate().get(bytes);
+        return bytes;
+    }
+
+    @Test
+    public void blursMatchArrayPlanes() {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            Blur[] blurs = {StackBlur::blur, new ParallelStackBlur(pool), new BoxBlur(new BufferPool(1 << 20))};
+            // The last two span several windows: bands of rows and blocks of columns
+            int[][] sizes = {{1, 1}, {7, 300}, {257, 129}, {1100, 700}, {3, 100_000}};
+            for (int[] size : sizes) {
+                int n = size[0] * size[1];
+                for (int radius : new int[]{1, 23}) {
+                    byte[] expected = new byte[n];
+                    new Random(radius).nextBytes(expected);
+                    ByteBuffer plane = direct(expected);
+                    for (Blur blur : blurs) {
+                        byte[] heap = expected.clone();
+                        blur.blur(heap, size[0], size[1], radius, CancellationToken.NONE);
+                        ByteBuffer actual = direct(expected);
+                        blur.blur(actual, size[0], size[1], radius, CancellationToken.NONE);
+                        assertArrayEquals(size[0] + "x" + size[1] + " r" + radius + " "
+                                + blur.getClass().getSimpleName(), heap, contents(actual));
+                        assertEquals(0, actual.position());
+                    }
+                    assertArrayEquals(expected, contents(plane));
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void defaultBlurCopiesThroughHeap() {
+        int width = 61;
+        int height = 43;
+        byte[] expected = new byte[width * height];
+        new Random(7).nextBytes(expected);
+        ByteBuffer actual = direct(expected);
+        Blur widened = (plane, w, h, radius, token) -> StackBlur.blur(plane, w, h, radius, token);
+
+        widened.blur(actual, width, height, 9, CancellationToken.NONE);
+        StackBlur.blur(expected, width, height, 9, CancellationToken.NONE);
+
+        assertArrayEquals(expected, contents(actual));
+    }
+
+    @Test
+    public void rgbaSketchMatchesArgbSketch() {
+        int width = 331;
+        int height = 217;
+        int n = width * height;
+        for (int radius : new int[]{1, 5, 20}) {
+            int[] argb = TestImages.randomArgb(width, height, 200 + radius);
+            ByteBuffer rgba = ByteBuffer.allocateDirect(4 * n).order(ByteOrder.nativeOrder());
+            for (int i = 0; i < n; i++) {
+                int c = argb[i];
+                rgba.put((byte) (c >> 16)).put((byte) (c >> 8)).put((byte) c).put((byte) (c >>> 24));
+            }
+            rgba.rewind();
+
+            SketchEngine.sketch(argb, width, height, radius, new ParallelStackBlur());
+            SketchEngine.sketch(rgba, ByteBuffer.allocateDirect(n), width, height, radius,
+                    new ParallelStackBlur(), CancellationToken.NONE);
+
+            for (int i = 0; i < n; i++) {
+                int c = argb[i];
+                int p = 4 * i;
+                int actual = (rgba.get(p + 3) & 0xff) << 24 | (rgba.get(p) & 0xff) << 16
+                        | (rgba.get(p + 1) & 0xff) << 8 | (rgba.get(p + 2) & 0xff);
+                assertEquals("radius " + radius + " pixel " + i, c, actual);
+            }
+        }
+    }
+}
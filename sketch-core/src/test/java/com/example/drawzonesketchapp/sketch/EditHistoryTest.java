@@ -0,0 +1,157 @@
+package com.example.drawzonesketchapp.sketch;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class EditHistoryTest {
+
+    private static final int WIDTH = 150;
+    private static final int HEIGHT = 97;
+
+    /** {@code base} with one rectangle repainted, so only a few tiles change. */
+    private static int[] edited(int[] base, long seed) {
+        Random random = new Random(seed);
+        int[] pixels = base.clone();
+        int x0 = random.nextInt(WIDTH - 20);
+        int y0 = random.nextInt(HEIGHT - 20);
+        for (int y = y0; y < y0 + 20; y++) {
+            for (int x = x0; x < x0 + 20; x++) {
+                pixels[y * WIDTH + x] = 0xff000000 | random.nextInt(0x1000000);
+            }
+        }
+        return pixels;
+    }
+
+    private static File tempDir() throws IOException {
+        File dir = Files.createTempDirectory("history").toFile();
+        dir.deleteOnExit();
+        return dir;
+    }
+
+    @Test
+    public void undoAndRedoRestoreEveryStep() throws IOException {
+        List<int[]> images = new ArrayList<>();
+        images.add(TestImages.randomArgb(WIDTH, HEIGHT, 1));
+        for (int i = 1; i < 6; i++) {
+            images.add(edited(images.get(i - 1), i));
+        }
+        int[] out = new int[WIDTH * HEIGHT];
+        try (EditHistory<String> history = new EditHistory<>(WIDTH, HEIGHT, 10, 1 << 20, tempDir())) {
+            for (int i = 0; i < images.size(); i++) {
+                history.record(images.get(i), "step" + i);
+            }
+            assertFalse(history.canRedo());
+
+            for (int i = images.size() - 2; i >= 0; i--) {
+                assertEquals("step" + i, history.undo(out));
+                assertArrayEquals(images.get(i), out);
+            }
+            assertFalse(history.canUndo());
+            assertNull(history.undo(out));
+
+            for (int i = 1; i < images.size(); i++) {
+                assertEquals("step" + i, history.redo(out));
+                assertArrayEquals(images.get(i), out);
+            }
+            assertNull(history.redo(out));
+        }
+    }
+
+    @Test
+    public void deltasOfSmallEditsStaySmall() throws IOException {
+        int[] base = TestImages.randomArgb(WIDTH, HEIGHT, 2);
+        try (EditHistory<String> history = new EditHistory<>(WIDTH, HEIGHT, 10, 1 << 20, tempDir())) {
+            history.record(base, "base");
+            history.record(edited(base, 3), "edit");
+            // A 20x20 edit touches at most four tiles, a fraction of the 4-byte pixels
+            assertTrue(history.memoryBytes() < 4 * 4 * EditHistory.TILE_SIZE * EditHistory.TILE_SIZE);
+        }
+    }
+
+    @Test
+    public void recordingAfterUndoDropsRedo() throws IOException {
+        int[] a = TestImages.randomArgb(WIDTH, HEIGHT, 4);
+        int[] b = edited(a, 5);
+        int[] c = edited(a, 6);
+        int[] out = new int[WIDTH * HEIGHT];
+        try (EditHistory<String> history = new EditHistory<>(WIDTH, HEIGHT, 10, 1 << 20, tempDir())) {
+            history.record(a, "a");
+            history.record(b, "b");
+            history.undo(out);
+            history.record(c, "c");
+
+            assertFalse(history.canRedo());
+            assertEquals(2, history.size());
+            assertEquals("a", history.undo(out));
+            assertArrayEquals(a, out);
+            assertEquals("c", history.redo(out));
+            assertArrayEquals(c, out);
+        }
+    }
+
+    @Test
+    public void unchangedImageWithSameParamsIsNotRecorded() throws IOException {
+        int[] a = TestImages.randomArgb(WIDTH, HEIGHT, 7);
+        try (EditHistory<String> history = new EditHistory<>(WIDTH, HEIGHT, 10, 1 << 20, tempDir())) {
+            history.record(a, "a");
+            history.record(a.clone(), "a");
+            assertEquals(1, history.size());
+            history.record(a.clone(), "b");
+            assertEquals(2, history.size());
+        }
+    }
+
+    @Test
+    public void spillsToDiskPastBudgetAndStillRestores() throws IOException {
+        File dir = tempDir();
+        List<int[]> images = new ArrayList<>();
+        images.add(TestImages.randomArgb(WIDTH, HEIGHT, 8));
+        for (int i = 1; i < 8; i++) {
+            images.add(edited(images.get(i - 1), 10 + i));
+        }
+        int[] out = new int[WIDTH * HEIGHT];
+        EditHistory<Integer> history = new EditHistory<>(WIDTH, HEIGHT, 20, 0, dir);
+        for (int i = 0; i < images.size(); i++) {
+            history.record(images.get(i), i);
+        }
+        assertEquals(0, history.memoryBytes());
+        assertEquals(images.size() - 1, history.spilledSteps());
+        assertEquals(images.size() - 1, dir.listFiles().length);
+
+        for (int i = images.size() - 2; i >= 0; i--) {
+            assertEquals(Integer.valueOf(i), history.undo(out));
+            assertArrayEquals(images.get(i), out);
+        }
+
+        history.close();
+        assertEquals(0, dir.listFiles().length);
+    }
+
+    @Test
+    public void forgetsOldestPastMaxSteps() throws IOException {
+        List<int[]> images = new ArrayList<>();
+        images.add(TestImages.randomArgb(WIDTH, HEIGHT, 9));
+        for (int i = 1; i < 5; i++) {
+            images.add(edited(images.get(i - 1), 20 + i));
+        }
+        int[] out = new int[WIDTH * HEIGHT];
+        try (EditHistory<Integer> history = new EditHistory<>(WIDTH, HEIGHT, 3, 1 << 20, tempDir())) {
+            for (int i = 0; i < images.size(); i++) {
+                history.record(images.get(i), i);
+            }
+            assertEquals(3, history.size());
+            assertEquals(Integer.valueOf(3), history.undo(out));
+            assertEquals(Integer.valueOf(2), history.undo(out));
+            assertArrayEquals(images.get(2), out);
+            assertFalse(history.canUndo());
+        }
+    }
+}
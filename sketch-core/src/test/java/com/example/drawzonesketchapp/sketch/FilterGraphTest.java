@@ -0,0 +1,123 @@
+package com.example.drawzonesketchapp.sketch;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class FilterGraphTest {
+
+    /** Stack blur that counts how often it runs. */
+    private static final class CountingBlur implements Blur {
+        int calls;
+
+        @Override
+        public void blur(int[] plane, int width, int height, int radius, CancellationToken token) {
+            calls++;
+            StackBlur.blur(plane, width, height, radius, token);
+        }
+
+        @Override
+        public void blur(byte[] plane, int width, int height, int radius, CancellationToken token) {
+            calls++;
+            StackBlur.blur(plane, width, height, radius, token);
+        }
+    }
+
+    @Test
+    public void pencilStyleMatchesSketchEngine() {
+        int width = 71;
+        int height = 53;
+        for (int radius : new int[]{1, 5, 20}) {
+            int[] source = TestImages.randomArgb(width, height, radius);
+            int[] expected = source.clone();
+            SketchEngine.sketch(expected, width, height, radius);
+
+            int[] actual = new int[width * height];
+            try (FilterGraph graph = new FilterGraph(source, width, height, BufferPool.NONE)) {
+                SketchStyles.PENCIL.render(graph, radius, StackBlur::blur, actual, CancellationToken.NONE);
+            }
+            assertArrayEquals("radius " + radius, expected, actual);
+        }
+    }
+
+    @Test
+    public void stylesShareBlurredPlanes() {
+        int width = 40;
+        int height = 30;
+        int[] source = TestImages.randomArgb(width, height, 3);
+        CountingBlur blur = new CountingBlur();
+        int[] out = new int[width * height];
+        try (FilterGraph graph = new FilterGraph(source, width, height, BufferPool.NONE)) {
+            for (SketchStyle style : SketchStyles.all()) {
+                style.render(graph, 4, blur, out, CancellationToken.NONE);
+            }
+            SketchStyles.PENCIL.render(graph, 4, blur, out, CancellationToken.NONE);
+        }
+        // One blur for pencil and colored pencil, one wider blur for charcoal
+        assertEquals(2, blur.calls);
+    }
+
+    @Test
+    public void closeHandsPlanesBackToPool() {
+        BufferPool pool = new BufferPool(1 << 20);
+        int[] source = TestImages.randomArgb(32, 32, 9);
+        int[] out = new int[32 * 32];
+        for (int round = 0; round < 2; round++) {
+            try (FilterGraph graph = new FilterGraph(source, 32, 32, pool)) {
+                for (SketchStyle style : SketchStyles.all()) {
+                    style.render(graph, 3, StackBlur::blur, out, CancellationToken.NONE);
+                }
+            }
+        }
+        assertTrue(pool.hits() > 0);
+        assertEquals(pool.hits(), pool.misses());
+    }
+
+    @Test
+    public void flatImageRendersWhite() {
+        int[] source = new int[16 * 16];
+        Arrays.fill(source, 0xff808080);
+        int[] out = new int[source.length];
+        try (FilterGraph graph = new FilterGraph(source, 16, 16, BufferPool.NONE)) {
+            for (SketchStyle style : new SketchStyle[]{SketchStyles.INK, SketchStyles.COLORED_PENCIL}) {
+                style.render(graph, 2, StackBlur::blur, out, CancellationToken.NONE);
+                for (int p : out) {
+                    assertEquals(style.name(), 0xffffffff, p);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void tracerSeesNestedNodeSections() {
+        List<String> events = new ArrayList<>();
+        Tracer tracer = new Tracer() {
+            @Override
+            public void begin(String section) {
+                events.add("+" + section);
+            }
+
+            @Override
+            public void end() {
+                events.add("-");
+            }
+        };
+        Blur blur = StackBlur::blur;
+        FilterGraph.Node blurred = FilterNodes.blurredInverted(2, blur);
+        try (FilterGraph graph = new FilterGraph(TestImages.randomArgb(8, 8, 5), 8, 8, BufferPool.NONE, tracer)) {
+            graph.plane(blurred, CancellationToken.NONE);
+            graph.plane(blurred, CancellationToken.NONE);
+        }
+        assertEquals(Arrays.asList("+" + blurred.key(), "+inverted", "-", "-"), events);
+    }
+
+    @Test
+    public void namedFallsBackToPencil() {
+        assertSame(SketchStyles.CHARCOAL, SketchStyles.named("charcoal"));
+        assertSame(SketchStyles.PENCIL, SketchStyles.named("watercolor"));
+    }
+}
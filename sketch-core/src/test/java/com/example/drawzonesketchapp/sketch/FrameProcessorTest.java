@@ -0,0 +1,155 @@
+package com.example.drawzonesketchapp.sketch;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class FrameProcessorTest {
+
+    private static byte[] randomLuma(int width, int height, long seed) {
+        byte[] luma = new byte[width * height];
+        new Random(seed).nextBytes(luma);
+        return luma;
+    }
+
+    /** The still-image pencil sketch of the same frame as gray ARGB. */
+    private static int[] expectedSketch(byte[] luma, int width, int height, int radius) {
+        int[] pixels = new int[width * height];
+        Luminance.toArgb(luma, pixels, pixels.length);
+        SketchEngine.sketch(pixels, width, height, radius, StackBlur::blur);
+        return pixels;
+    }
+
+    /** Waits until {@code count} frames have been processed or have failed. */
+    private static FrameProcessor.Stats awaitFinished(FrameProcessor processor, long count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        FrameProcessor.Stats stats = processor.stats();
+        while (stats.processed + stats.failed < count) {
+            assertTrue("timed out", System.nanoTime() < deadline);
+            Thread.sleep(1);
+            stats = processor.stats();
+        }
+        return stats;
+    }
+
+    /** Collects every processed frame, optionally blocking in the listener until released. */
+    private static final class Recorder implements FrameProcessor.Listener {
+        final List<int[]> frames = new ArrayList<>();
+        final List<Long> timestamps = new ArrayList<>();
+        final CountDownLatch entered = new CountDownLatch(1);
+        final CountDownLatch release;
+
+        Recorder(boolean block) {
+            release = new CountDownLatch(block ? 1 : 0);
+        }
+
+        @Override
+        public void onFrame(int[] sketch, int width, int height, long timestampNanos) {
+            entered.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            synchronized (this) {
+                int[] copy = new int[width * height];
+                System.arraycopy(sketch, 0, copy, 0, copy.length);
+                frames.add(copy);
+                timestamps.add(timestampNanos);
+            }
+        }
+    }
+
+    @Test
+    public void matchesStillImageSketchPixelForPixel() throws InterruptedException {
+        int width = 97;
+        int height = 61;
+        byte[] luma = randomLuma(width, height, 1);
+        Recorder recorder = new Recorder(false);
+        try (FrameProcessor processor = new FrameProcessor(StackBlur::blur, 4, recorder)) {
+            processor.offer(luma, width, height, 123);
+            awaitFinished(processor, 1);
+        }
+        assertArrayEquals(expectedSketch(luma, width, height, 4), recorder.frames.get(0));
+        assertEquals(Long.valueOf(123), recorder.timestamps.get(0));
+    }
+
+    @Test
+    public void readsPaddedRowsFromBuffer() throws InterruptedException {
+        int width = 50;
+        int height = 30;
+        int rowStride = 64;
+        byte[] luma = randomLuma(width, height, 2);
+        ByteBuffer padded = ByteBuffer.allocateDirect(rowStride * (height - 1) + width);
+        for (int y = 0; y < height; y++) {
+            padded.position(y * rowStride);
+            padded.put(luma, y * width, width);
+        }
+        padded.position(0);
+
+        Recorder recorder = new Recorder(false);
+        try (FrameProcessor processor = new FrameProcessor(StackBlur::blur, 3, recorder)) {
+            processor.offer(padded, rowStride, width, height, 0);
+            awaitFinished(processor, 1);
+        }
+        assertEquals(0, padded.position());
+        assertArrayEquals(expectedSketch(luma, width, height, 3), recorder.frames.get(0));
+    }
+
+    @Test
+    public void dropsStaleFramesAndKeepsTheLatest() throws InterruptedException {
+        int width = 40;
+        int height = 30;
+        Recorder recorder = new Recorder(true);
+        try (FrameProcessor processor = new FrameProcessor(StackBlur::blur, 2, recorder)) {
+            processor.offer(randomLuma(width, height, 0), width, height, 0);
+            assertTrue(recorder.entered.await(10, TimeUnit.SECONDS));
+            // The processing thread is busy with frame 0; these replace one another
+            for (int i = 1; i <= 5; i++) {
+                processor.offer(randomLuma(width, height, i), width, height, i);
+            }
+            recorder.release.countDown();
+
+            FrameProcessor.Stats stats = awaitFinished(processor, 2);
+            assertEquals(6, stats.offered);
+            assertEquals(2, stats.processed);
+            assertEquals(4, stats.dropped);
+            assertEquals(4 / 6.0, stats.droppedRate(), 1e-9);
+            assertTrue(stats.maxLatencyNanos >= stats.meanLatencyNanos());
+        }
+        assertEquals(Long.valueOf(5), recorder.timestamps.get(1));
+        assertArrayEquals(expectedSketch(randomLuma(width, height, 5), width, height, 2), recorder.frames.get(1));
+    }
+
+    @Test
+    public void keepsProcessingAfterAFailedFrame() throws InterruptedException {
+        List<RuntimeException> errors = new ArrayList<>();
+        FrameProcessor.Listener listener = new FrameProcessor.Listener() {
+            @Override
+            public void onFrame(int[] sketch, int width, int height, long timestampNanos) {
+                if (timestampNanos == 0) throw new IllegalStateException("first frame");
+            }
+
+            @Override
+            public void onError(RuntimeException e) {
+                errors.add(e);
+            }
+        };
+        try (FrameProcessor processor = new FrameProcessor(StackBlur::blur, 2, listener)) {
+            processor.offer(randomLuma(8, 8, 0), 8, 8, 0);
+            awaitFinished(processor, 1);
+            processor.offer(randomLuma(8, 8, 1), 8, 8, 1);
+            FrameProcessor.Stats stats = awaitFinished(processor, 2);
+            assertEquals(1, stats.failed);
+            assertEquals(1, stats.processed);
+        }
+        assertEquals(1, errors.size());
+    }
+}
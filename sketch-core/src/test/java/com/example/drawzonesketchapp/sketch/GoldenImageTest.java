@@ -0,0 +1,305 @@
+package com.example.drawzonesketchapp.sketch;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.WritableRaster;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.imageio.ImageIO;
+
+import static org.junit.Assert.*;
+
+/**
+ * Every way the app renders a sketch, checked against stored golden images, so that an
+ * optimization which changes the output fails here instead of going unnoticed.
+ * <p>
+ * The goldens in {@code src/test/resources/golden} are the {@link FilterGraph} render of each
+ * style with the stack blur and with the box blur, plus the staged pencil pipeline on a luma
+ * plane for camera frames, which dodge luma rather than the red channel. The fused, gray,
+ * off-heap, strip, frame and parallel paths must all reproduce them within
+ * {@link #MAX_CHANNEL_ERROR} per channel and {@link #MIN_PSNR}. After an intended change to
+ * the output, rewrite them with {@code ./gradlew :sketch-core:test -Pgolden.update} and review
+ * the new images.
+ */
+public class GoldenImageTest {
+
+    private static final int WIDTH = 160;
+    private static final int HEIGHT = 120;
+    private static final int RADIUS = 5;
+    private static final int MAX_CHANNEL_ERROR = 2;
+    private static final double MIN_PSNR = 45;
+
+    private static final boolean UPDATE = Boolean.getBoolean("golden.update");
+    private static final File GOLDEN_DIR = new File(System.getProperty("golden.dir", "src/test/resources/golden"));
+
+    /** A photo-like test image: a sky gradient, a few shapes, and sensor noise. */
+    private static int[] photo() {
+        Random random = new Random(42);
+        int[] pixels = new int[WIDTH * HEIGHT];
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                int r = 90 + 100 * y / HEIGHT;
+                int g = 140 + 60 * y / HEIGHT;
+                int b = 230 - 40 * x / WIDTH;
+                if (y > HEIGHT * 2 / 3) {
+                    // Grass
+                    r = 60;
+                    g = 130 + 20 * ((x / 7 + y / 5) % 2);
+                    b = 40;
+                }
+                int dx = x - WIDTH / 3;
+                int dy = y - HEIGHT / 2;
+                if (dx * dx + dy * dy < 25 * 25) {
+                    r = 220;
+                    g = 180 - dy;
+                    b = 30;
+                }
+                if (x > WIDTH * 3 / 5 && x < WIDTH * 4 / 5 && y > HEIGHT / 4 && y < HEIGHT * 3 / 4) {
+                    r = 120;
+                    g = 70;
+                    b = 50 + x % 9 * 10;
+                }
+                int noise = random.nextInt(17) - 8;
+                pixels[y * WIDTH + x] = 0xff000000 | clamp(r + noise) << 16 | clamp(g + noise) << 8 | clamp(b + noise);
+            }
+        }
+        return pixels;
+    }
+
+    private static int clamp(int v) {
+        return Math.max(0, Math.min(255, v));
+    }
+
+    private static String goldenName(SketchStyle style, boolean box) {
+        // Ink does not blur
+        if (style == SketchStyles.INK) return style.name();
+        return style.name() + (box ? "-box" : "-stack");
+    }
+
+    /** The reference every other path is held to. */
+    private static int[] renderStyle(SketchStyle style, Blur blur) {
+        int[] out = new int[WIDTH * HEIGHT];
+        try (FilterGraph graph = new FilterGraph(photo(), WIDTH, HEIGHT, BufferPool.NONE)) {
+            style.render(graph, RADIUS, blur, out, CancellationToken.NONE);
+        }
+        return out;
+    }
+
+    /** Luma of the test photo, as the camera delivers it. */
+    private static byte[] photoLuma() {
+        int[] source = photo();
+        byte[] luma = new byte[source.length];
+        Luminance.toPlane(source, luma, source.length);
+        return luma;
+    }
+
+    /** The reference for camera frames, one step at a time. */
+    private static int[] renderLuma() {
+        byte[] luma = photoLuma();
+        byte[] plane = new byte[luma.length];
+        Luminance.toInvertedPlane(luma, plane, luma.length);
+        StackBlur.blur(plane, WIDTH, HEIGHT, RADIUS, CancellationToken.NONE);
+        int[] out = new int[luma.length];
+        ColorDodge.blend(luma, plane, out, luma.length);
+        return out;
+    }
+
+    @BeforeClass
+    public static void updateGoldens() throws IOException {
+        if (!UPDATE) return;
+        if (!GOLDEN_DIR.isDirectory() && !GOLDEN_DIR.mkdirs()) throw new IOException("Cannot create " + GOLDEN_DIR);
+        for (SketchStyle style : SketchStyles.all()) {
+            writeGolden(goldenName(style, false), renderStyle(style, StackBlur::blur));
+            writeGolden(goldenName(style, true), renderStyle(style, new BoxBlur()));
+        }
+        writeGolden("camera-stack", renderLuma());
+    }
+
+    @Test
+    public void everyStyleAndBlurMatchesGolden() throws IOException {
+        for (SketchStyle style : SketchStyles.all()) {
+            assertMatchesGolden(goldenName(style, false), style.name() + " stack",
+                    renderStyle(style, StackBlur::blur));
+            assertMatchesGolden(goldenName(style, false), style.name() + " serial",
+                    renderStyle(style, StackBlur.SERIAL));
+            assertMatchesGolden(goldenName(style, false), style.name() + " parallel",
+                    renderStyle(style, new ParallelStackBlur()));
+            assertMatchesGolden(goldenName(style, true), style.name() + " box", renderStyle(style, new BoxBlur()));
+        }
+    }
+
+    @Test
+    public void fusedEngineMatchesGolden() throws IOException {
+        int[] stack = photo();
+        SketchEngine.sketch(stack, WIDTH, HEIGHT, RADIUS);
+        assertMatchesGolden("pencil-stack", "fused stack", stack);
+
+        int[] box = photo();
+        SketchEngine.sketch(box, WIDTH, HEIGHT, RADIUS, new BoxBlur());
+        assertMatchesGolden("pencil-box", "fused box", box);
+    }
+
+    @Test
+    public void grayEngineMatchesGolden() throws IOException {
+        byte[] gray = new byte[WIDTH * HEIGHT];
+        SketchEngine.sketchGray(photo(), gray, WIDTH, HEIGHT, RADIUS, StackBlur::blur, CancellationToken.NONE);
+        int[] argb = new int[gray.length];
+        Luminance.toArgb(gray, argb, gray.length);
+        assertMatchesGolden("pencil-stack", "gray", argb);
+    }
+
+    @Test
+    public void offHeapEngineMatchesGolden() throws IOException {
+        int n = WIDTH * HEIGHT;
+        int[] source = photo();
+        ByteBuffer rgba = ByteBuffer.allocateDirect(n * 4);
+        for (int p : source) {
+            rgba.put((byte) (p >> 16)).put((byte) (p >> 8)).put((byte) p).put((byte) (p >>> 24));
+        }
+        ByteBuffer plane = ByteBuffer.allocateDirect(n);
+        SketchEngine.sketch(rgba, plane, WIDTH, HEIGHT, RADIUS, StackBlur::blur, CancellationToken.NONE);
+
+        int[] argb = new int[n];
+        for (int i = 0; i < n; i++) {
+            int r = rgba.get(i * 4) & 0xff;
+            int g = rgba.get(i * 4 + 1) & 0xff;
+            int b = rgba.get(i * 4 + 2) & 0xff;
+            argb[i] = 0xff000000 | r << 16 | g << 8 | b;
+        }
+        assertMatchesGolden("pencil-stack", "off-heap", argb);
+    }
+
+    @Test
+    public void stripsMatchGolden() throws IOException {
+        int[] source = photo();
+        StripSource strips = new StripSource() {
+            @Override
+            public int width() {
+                return WIDTH;
+            }
+
+            @Override
+            public int height() {
+                return HEIGHT;
+            }
+
+            @Override
+            public void read(int top, int rows, int[] argb) {
+                System.arraycopy(source, top * WIDTH, argb, 0, rows * WIDTH);
+            }
+        };
+        for (boolean box : new boolean[]{false, true}) {
+            int[] out = new int[WIDTH * HEIGHT];
+            int[] written = {0};
+            Blur blur = box ? new BoxBlur() : StackBlur::blur;
+            new StripSketcher(blur, RADIUS, 16).sketch(strips, (argb, offset, rows) -> {
+                System.arraycopy(argb, offset, out, written[0] * WIDTH, rows * WIDTH);
+                written[0] += rows;
+            });
+            assertMatchesGolden(goldenName(SketchStyles.PENCIL, box), box ? "strips box" : "strips stack", out);
+        }
+    }
+
+    @Test
+    public void cameraFramesMatchGolden() throws Exception {
+        byte[] luma = photoLuma();
+        AtomicReference<int[]> frame = new AtomicReference<>();
+        CountDownLatch done = new CountDownLatch(1);
+        try (FrameProcessor processor = new FrameProcessor(StackBlur::blur, RADIUS, (sketch, width, height, ts) -> {
+            frame.set(sketch.clone());
+            done.countDown();
+        })) {
+            processor.offer(luma, WIDTH, HEIGHT, 0);
+            assertTrue("frame not processed", done.await(10, TimeUnit.SECONDS));
+        }
+        assertMatchesGolden("camera-stack", "staged luma", renderLuma());
+        assertMatchesGolden("camera-stack", "camera frame", frame.get());
+    }
+
+    private static void assertMatchesGolden(String name, String variant, int[] actual) throws IOException {
+        int[] golden = readGolden(name);
+        assertEquals(golden.length, actual.length);
+
+        int maxError = 0;
+        int worst = 0;
+        double squares = 0;
+        for (int i = 0; i < golden.length; i++) {
+            for (int shift = 0; shift <= 16; shift += 8) {
+                int error = Math.abs((golden[i] >> shift & 0xff) - (actual[i] >> shift & 0xff));
+                squares += error * error;
+                if (error > maxError) {
+                    maxError = error;
+                    worst = i;
+                }
+            }
+        }
+        double mse = squares / (golden.length * 3.0);
+        double psnr = mse == 0 ? Double.POSITIVE_INFINITY : 10 * Math.log10(255 * 255 / mse);
+        String where = String.format("%s vs golden %s: max error %d at (%d, %d), PSNR %.1f dB",
+                variant, name, maxError, worst % WIDTH, worst / WIDTH, psnr);
+        assertTrue(where, maxError <= MAX_CHANNEL_ERROR);
+        assertTrue(where, psnr >= MIN_PSNR);
+    }
+
+    private static int[] readGolden(String name) throws IOException {
+        BufferedImage image;
+        if (UPDATE) {
+            image = ImageIO.read(new File(GOLDEN_DIR, name + ".png"));
+        } else {
+            try (InputStream in = GoldenImageTest.class.getResourceAsStream("/golden/" + name + ".png")) {
+                if (in == null) {
+                    fail("No golden image " + name + "; create it with ./gradlew :sketch-core:test -Pgolden.update");
+                }
+                image = ImageIO.read(in);
+            }
+        }
+        assertEquals(WIDTH, image.getWidth());
+        assertEquals(HEIGHT, image.getHeight());
+
+        int[] pixels = new int[WIDTH * HEIGHT];
+        WritableRaster raster = image.getRaster();
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                // Gray samples are read raw; getRGB would apply a gamma curve to them
+                pixels[y * WIDTH + x] = raster.getNumBands() == 1
+                        ? 0xff000000 | raster.getSample(x, y, 0) * 0x010101
+                        : image.getRGB(x, y);
+            }
+        }
+        return pixels;
+    }
+
+    /** Stores gray sketches as 8-bit gray PNGs, colored ones as RGB. */
+    private static void writeGolden(String name, int[] pixels) throws IOException {
+        boolean gray = true;
+        for (int p : pixels) {
+            if ((p >> 16 & 0xff) != (p & 0xff) || (p >> 8 & 0xff) != (p & 0xff)) {
+                gray = false;
+                break;
+            }
+        }
+        BufferedImage image;
+        if (gray) {
+            image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_BYTE_GRAY);
+            WritableRaster raster = image.getRaster();
+            for (int i = 0; i < pixels.length; i++) {
+                raster.setSample(i % WIDTH, i / WIDTH, 0, pixels[i] & 0xff);
+            }
+        } else {
+            image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+            image.setRGB(0, 0, WIDTH, HEIGHT, pixels, 0, WIDTH);
+        }
+        if (!ImageIO.write(image, "png", new File(GOLDEN_DIR, name + ".png"))) {
+            throw new IOException("No PNG writer");
+        }
+    }
+}
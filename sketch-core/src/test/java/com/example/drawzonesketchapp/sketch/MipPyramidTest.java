@@ -0,0 +1,153 @@
+package com.example.drawzonesketchapp.sketch;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class MipPyramidTest {
+
+    private static int[] randomGray(int width, int height, long seed) {
+        Random random = new Random(seed);
+        int[] pixels = new int[width * height];
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = 0xff000000 | random.nextInt(256) * 0x010101;
+        }
+        return pixels;
+    }
+
+    private static File tempDir() throws IOException {
+        File dir = Files.createTempDirectory("pyramid").toFile();
+        dir.deleteOnExit();
+        return dir;
+    }
+
+    /** Writes {@code pixels} in strips of {@code strip} rows. */
+    private static void write(File dir, int[] pixels, int width, int height, int strip) throws IOException {
+        try (MipPyramid.Writer writer = MipPyramid.writer(dir, width, height)) {
+            for (int top = 0; top < height; top += strip) {
+                writer.write(pixels, top * width, Math.min(strip, height - top));
+            }
+        }
+    }
+
+    /** The reference halving: 2 x 2 averages, rounded, with odd edges paired with themselves. */
+    private static int[] halve(int[] plane, int width, int height) {
+        int halfWidth = (width + 1) / 2;
+        int halfHeight = (height + 1) / 2;
+        int[] half = new int[halfWidth * halfHeight];
+        for (int y = 0; y < halfHeight; y++) {
+            int y0 = 2 * y;
+            int y1 = Math.min(y0 + 1, height - 1);
+            for (int x = 0; x < halfWidth; x++) {
+                int x0 = 2 * x;
+                int x1 = Math.min(x0 + 1, width - 1);
+                int sum = plane[y0 * width + x0] + plane[y0 * width + x1] + plane[y1 * width + x0] + plane[y1 * width + x1];
+                half[y * halfWidth + x] = (sum + 2) >> 2;
+            }
+        }
+        return half;
+    }
+
+    /** Reassembles a whole level from its tiles. */
+    private static int[] readLevel(MipPyramid pyramid, int level) throws IOException {
+        int width = pyramid.levelWidth(level);
+        int[] plane = new int[width * pyramid.levelHeight(level)];
+        byte[] tile = new byte[MipPyramid.TILE_BYTES];
+        for (int ty = 0; ty < pyramid.tilesDown(level); ty++) {
+            for (int tx = 0; tx < pyramid.tilesAcross(level); tx++) {
+                pyramid.readTile(level, tx, ty, tile);
+                for (int y = 0; y < pyramid.tileHeight(level, ty); y++) {
+                    for (int x = 0; x < pyramid.tileWidth(level, tx); x++) {
+                        int px = tx * MipPyramid.TILE_SIZE + x;
+                        int py = ty * MipPyramid.TILE_SIZE + y;
+                        plane[py * width + px] = tile[y * MipPyramid.TILE_SIZE + x] & 0xff;
+                    }
+                }
+            }
+        }
+        return plane;
+    }
+
+    @Test
+    public void everyLevelMatchesRepeatedHalving() throws IOException {
+        int width = 1100;
+        int height = 523;
+        int[] pixels = randomGray(width, height, 1);
+        File dir = tempDir();
+        write(dir, pixels, width, height, 37);
+
+        try (MipPyramid pyramid = MipPyramid.open(dir)) {
+            assertEquals(4, pyramid.levels());
+            int[] expected = new int[pixels.length];
+            for (int i = 0; i < pixels.length; i++) {
+                expected[i] = pixels[i] & 0xff;
+            }
+            int levelWidth = width;
+            int levelHeight = height;
+            for (int level = 0; level < pyramid.levels(); level++) {
+                assertEquals(levelWidth, pyramid.levelWidth(level));
+                assertEquals(levelHeight, pyramid.levelHeight(level));
+                assertArrayEquals("level " + level, expected, readLevel(pyramid, level));
+                expected = halve(expected, levelWidth, levelHeight);
+                levelWidth = (levelWidth + 1) / 2;
+                levelHeight = (levelHeight + 1) / 2;
+            }
+            int top = pyramid.levels() - 1;
+            assertEquals(1, pyramid.tilesAcross(top));
+            assertEquals(1, pyramid.tilesDown(top));
+        }
+    }
+
+    @Test
+    public void smallImageIsOneLevel() throws IOException {
+        int[] pixels = randomGray(40, 30, 2);
+        File dir = tempDir();
+        write(dir, pixels, 40, 30, 30);
+        try (MipPyramid pyramid = MipPyramid.open(dir)) {
+            assertEquals(1, pyramid.levels());
+            assertEquals(0, pyramid.levelFor(0.1f));
+            assertEquals(40, pyramid.tileWidth(0, 0));
+        }
+    }
+
+    @Test
+    public void levelKeepsAtLeastOnePixelPerScreenPixel() throws IOException {
+        File dir = tempDir();
+        write(dir, randomGray(4000, 3000, 3), 4000, 3000, 500);
+        try (MipPyramid pyramid = MipPyramid.open(dir)) {
+            assertEquals(5, pyramid.levels());
+            assertEquals(0, pyramid.levelFor(2f));
+            assertEquals(0, pyramid.levelFor(0.51f));
+            assertEquals(1, pyramid.levelFor(0.5f));
+            assertEquals(1, pyramid.levelFor(0.3f));
+            assertEquals(2, pyramid.levelFor(0.25f));
+            assertEquals(4, pyramid.levelFor(0.001f));
+        }
+    }
+
+    @Test
+    public void unfinishedPyramidCannotBeOpened() throws IOException {
+        File dir = tempDir();
+        int[] pixels = randomGray(300, 300, 4);
+        try {
+            try (MipPyramid.Writer writer = MipPyramid.writer(dir, 300, 300)) {
+                writer.write(pixels, 0, 100);
+            }
+            fail("close() should report the missing rows");
+        } catch (IOException expected) {
+            // Cancelled exports end like this
+        }
+        assertEquals(0, dir.listFiles().length);
+        try {
+            MipPyramid.open(dir).close();
+            fail();
+        } catch (IOException expected) {
+            // No pyramid to open
+        }
+    }
+}
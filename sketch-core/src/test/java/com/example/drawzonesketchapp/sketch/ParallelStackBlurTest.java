@@ -0,0 +1,54 @@
+package com.example.drawzonesketchapp.sketch;
+
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+
+public class ParallelStackBlurTest {
+
+    private static int[] randomPlane(int n, long seed) {
+        Random random = new Random(seed);
+        int[] plane = new int[n];
+        for (int i = 0; i < n; i++) {
+            plane[i] = random.nextInt(256);
+        }
+        return plane;
+    }
+
+    @Test
+    public void matchesSerialBitForBit() {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            Blur parallel = new ParallelStackBlur(pool);
+            int[][] sizes = {{1, 1}, {7, 300}, {300, 7}, {257, 129}, {640, 480}};
+            for (int[] size : sizes) {
+                for (int radius : new int[]{1, 5, 23, 50}) {
+                    int[] serial = randomPlane(size[0] * size[1], radius);
+                    int[] actual = serial.clone();
+                    StackBlur.blur(serial, size[0], size[1], radius);
+                    parallel.blur(actual, size[0], size[1], radius);
+                    assertArrayEquals(size[0] + "x" + size[1] + " r" + radius, serial, actual);
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void reciprocalMatchesDivisionForEverySum() {
+        for (int radius : new int[]{1, 2, 3, 5, 9, 16, 25, 60, 120, 360, 1000}) {
+            int divsum = (radius + 1) * (radius + 1);
+            long mul = StackBlur.reciprocal(radius);
+            int shift = StackBlur.shift(radius);
+            for (int sum = 0; sum <= 255 * divsum; sum++) {
+                if ((int) ((sum * mul) >>> shift) != sum / divsum) {
+                    fail("radius " + radius + ", sum " + sum);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.example.drawzonesketchapp.sketch;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class QualityGovernorTest {
+
+    private static final long MS = 1_000_000L;
+
+    private static final class FakeSignals implements QualityGovernor.Signals {
+        int memoryClassMb = 256;
+        int thermalStatus = QualityGovernor.THERMAL_NONE;
+        int cores = 8;
+
+        @Override
+        public int memoryClassMb() {
+            return memoryClassMb;
+        }
+
+        @Override
+        public int thermalStatus() {
+            return thermalStatus;
+        }
+
+        @Override
+        public int cores() {
+            return cores;
+        }
+    }
+
+    /** Records a conversion of a 1000 x 750 image that took {@code millis} on {@code threads}. */
+    private static void convert(QualityGovernor governor, int threads, long millis) {
+        governor.record(1000, 750, threads, millis * MS);
+    }
+
+    @Test
+    public void untimedDeviceStartsAtTheDefault() {
+        QualityGovernor.Decision decision = new QualityGovernor(new FakeSignals()).decide();
+        assertEquals(QualityGovernor.DEFAULT_DIMENSION, decision.maxDimension);
+        assertEquals(8, decision.threads);
+        assertEquals(StripSketcher.DEFAULT_STRIP_HEIGHT, decision.stripHeight);
+        assertEquals("default", decision.reason);
+    }
+
+    @Test
+    public void fastDeviceGrowsUntilMemoryRunsOut() {
+        FakeSignals signals = new FakeSignals();
+        QualityGovernor governor = new QualityGovernor(signals, 500 * MS);
+        convert(governor, 8, 20);
+        QualityGovernor.Decision decision = governor.decide();
+        // 3000 px would fit the budget but not a quarter of a 256 MB heap
+        assertEquals(2000, decision.maxDimension);
+        assertEquals("memory", decision.reason);
+
+        signals.memoryClassMb = 64;
+        assertEquals(1000, governor.decide().maxDimension);
+        assertEquals(StripSketcher.DEFAULT_STRIP_HEIGHT / 2, governor.decide().stripHeight);
+    }
+
+    @Test
+    public void slowDeviceShrinksToMeetTheBudget() {
+        QualityGovernor governor = new QualityGovernor(new FakeSignals(), 500 * MS);
+        convert(governor, 8, 800);
+        QualityGovernor.Decision decision = governor.decide();
+        assertEquals(750, decision.maxDimension);
+        assertEquals("budget", decision.reason);
+        assertTrue(decision.predictedNanos <= 500 * MS);
+
+        // Far too slow for any step: the smallest one still runs
+        convert(governor, 8, 100_000);
+        assertEquals(500, governor.decide().maxDimension);
+    }
+
+    @Test
+    public void timingsAreAveraged() {
+        QualityGovernor governor = new QualityGovernor(new FakeSignals(), 500 * MS);
+        convert(governor, 8, 400);
+        assertEquals(1000, governor.decide().maxDimension);
+        // One slow outlier moves the average but does not halve the resolution
+        convert(governor, 8, 1000);
+        assertEquals(750, governor.decide().maxDimension);
+        convert(governor, 8, 400);
+        convert(governor, 8, 400);
+        assertEquals(1000, governor.decide().maxDimension);
+    }
+
+    @Test
+    public void heatCostsThreadsAndThenResolution() {
+        FakeSignals signals = new FakeSignals();
+        QualityGovernor governor = new QualityGovernor(signals, 500 * MS);
+        convert(governor, 8, 200);
+        assertEquals(1500, governor.decide().maxDimension);
+
+        signals.thermalStatus = QualityGovernor.THERMAL_MODERATE;
+        QualityGovernor.Decision moderate = governor.decide();
+        assertEquals(4, moderate.threads);
+        assertEquals(1000, moderate.maxDimension);
+
+        signals.thermalStatus = QualityGovernor.THERMAL_SEVERE;
+        QualityGovernor.Decision severe = governor.decide();
+        assertEquals(1, severe.threads);
+        assertEquals(500, severe.maxDimension);
+
+        // A timing on one thread predicts the same per-thread cost
+        convert(governor, 1, 1600);
+        assertEquals(500, governor.decide().maxDimension);
+        signals.thermalStatus = QualityGovernor.THERMAL_NONE;
+        assertEquals(1500, governor.decide().maxDimension);
+
+        signals.thermalStatus = QualityGovernor.THERMAL_CRITICAL;
+        assertEquals("thermal", governor.decide().reason);
+        assertEquals(500, governor.decide().maxDimension);
+    }
+}
@@ -0,0 +1,150 @@
+package com.example.drawzonesketchapp.sketch;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.CancellationException;
+
+import static org.junit.Assert.*;
+
+public class SketchEngineTest {
+
+    @Test
+    public void fusedMatchesStagedPipeline() {
+        int width = 97;
+        int height = 61;
+        int n = width * height;
+        for (int radius : new int[]{1, 5, 20}) {
+            int[] source = TestImages.randomArgb(width, height, radius);
+
+            int[] plane = new int[n];
+            Luminance.toPlane(source, plane, n);
+            Luminance.invert(plane, n);
+            StackBlur.blur(plane, width, height, radius);
+            int[] staged = new int[n];
+            ColorDodge.blend(source, plane, staged, n);
+
+            int[] fused = source.clone();
+            SketchEngine.sketch(fused, width, height, radius);
+
+            assertArrayEquals("radius " + radius, staged, fused);
+        }
+    }
+
+    @Test
+    public void grayPipelineMatchesIntPipeline() {
+        int width = 83;
+        int height = 57;
+        int n = width * height;
+        Blur widened = StackBlur::blur;
+        for (int radius : new int[]{1, 5, 20}) {
+            int[] source = TestImages.randomArgb(width, height, 100 + radius);
+            for (Blur blur : new Blur[]{widened, new ParallelStackBlur(), new BoxBlur()}) {
+                int[] expected = source.clone();
+                SketchEngine.sketch(expected, width, height, radius, blur);
+
+                byte[] gray = new byte[n];
+                int[] untouched = source.clone();
+                SketchEngine.sketchGray(untouched, gray, width, height, radius, blur, CancellationToken.NONE);
+                int[] actual = new int[n];
+                Luminance.toArgb(gray, actual, n);
+
+                assertArrayEquals("radius " + radius + " " + blur.getClass().getSimpleName(), expected, actual);
+                assertArrayEquals(source, untouched);
+            }
+            byte[] bytes = new byte[n];
+            int[] ints = new int[n];
+            Luminance.toInvertedPlane(source, bytes, n);
+            Luminance.toInvertedPlane(source, ints, n);
+            StackBlur.blur(bytes, width, height, radius, CancellationToken.NONE);
+            StackBlur.blur(ints, width, height, radius);
+            for (int i = 0; i < n; i++) {
+                assertEquals(ints[i], bytes[i] & 0xff);
+            }
+        }
+    }
+
+    @Test
+    public void blurKeepsConstantPlane() {
+        int[] plane = new int[40 * 30];
+        Arrays.fill(plane, 173);
+        StackBlur.blur(plane, 40, 30, 7);
+        for (int v : plane) {
+            assertEquals(173, v);
+        }
+    }
+
+    @Test
+    public void zeroRadiusLeavesPlaneUntouched() {
+        int[] plane = {10, 20, 30, 40};
+        StackBlur.blur(plane, 2, 2, 0);
+        assertArrayEquals(new int[]{10, 20, 30, 40}, plane);
+    }
+
+    @Test
+    public void radiusLargerThanImage() {
+        int[] pixels = TestImages.randomArgb(3, 1, 7);
+        SketchEngine.sketch(pixels, 3, 1, 25);
+        for (int p : pixels) {
+            assertEquals(0xff, p >>> 24);
+            assertEquals(p & 0xff, (p >> 8) & 0xff);
+        }
+    }
+
+    @Test
+    public void dodgeSaturatesAtWhite() {
+        assertEquals(255, ColorDodge.dodge(0, 255));
+        assertEquals(255, ColorDodge.dodge(200, 128));
+        assertEquals(0, ColorDodge.dodge(0, 0));
+        assertEquals(129, ColorDodge.dodge(128, 1));
+    }
+
+    @Test
+    public void dodgeTableMatchesDivisionForEveryPair() {
+        int n = 256 * 256;
+        int[] top = new int[n];
+        int[] bottom = new int[n];
+        byte[] bottomBytes = new byte[n];
+        for (int i = 0; i < n; i++) {
+            top[i] = 0xff000000 | ((i & 0xff) << 16) | 0x3c5a;
+            bottom[i] = i >> 8;
+            bottomBytes[i] = (byte) (i >> 8);
+        }
+        int[] out = new int[n];
+        byte[] gray = new byte[n];
+        ColorDodge.blend(top, bottom, out, n);
+        ColorDodge.blend(top, bottomBytes, gray, n);
+        for (int i = 0; i < n; i++) {
+            int v = ColorDodge.dodge(i & 0xff, i >> 8);
+            assertEquals(0xff000000 | (v << 16) | (v << 8) | v, out[i]);
+            assertEquals(v, gray[i] & 0xff);
+        }
+    }
+
+    @Test
+    public void invertArgbMatchesPerChannelInvert() {
+        int[] pixels = TestImages.randomArgb(64, 64, 11);
+        int[] inverted = pixels.clone();
+        Luminance.invertArgb(inverted, inverted.length);
+        for (int i = 0; i < pixels.length; i++) {
+            int c = pixels[i];
+            assertEquals((c & 0xff000000)
+                    | ((255 - ((c >> 16) & 0xff)) << 16)
+                    | ((255 - ((c >> 8) & 0xff)) << 8)
+                    | (255 - (c & 0xff)), inverted[i]);
+        }
+    }
+
+    @Test(expected = CancellationException.class)
+    public void cancelledTokenStopsConversion() {
+        CancellationToken token = new CancellationToken();
+        token.cancel();
+        SketchEngine.sketch(TestImages.randomArgb(64, 64, 1), 64, 64, 5, new ParallelStackBlur(), token);
+    }
+
+    @Test
+    public void noneTokenCannotBeCancelled() {
+        CancellationToken.NONE.cancel();
+        assertFalse(CancellationToken.NONE.isCancelled());
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.drawzonesketchapp.sketch;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.*;
+
+/**
+ * Time and allocation budgets for each stage of the pipeline at the app's working size, so
+ * that a performance regression fails the build like a wrong pixel does.
+ * <p>
+ * Each stage is warmed up, then timed as the best of several runs, which is what the code can
+ * do rather than what a busy machine let it do. Budgets are several times what a laptop
+ * measures; slower machines scale them with {@code -Pperf.budgetScale}. Allocations are
+ * counted on the calling thread only, so the stages measured here all run on it; a stage
+ * that used to allocate nothing per run and now allocates a plane fails at once.
+ */
+public class StageBudgetTest {
+
+    private static final int WIDTH = 1000;
+    private static final int HEIGHT = 750;
+    private static final int N = WIDTH * HEIGHT;
+    private static final int RADIUS = 5;
+    private static final int WARMUP_RUNS = 10;
+    private static final int TIMED_RUNS = 7;
+    private static final double BUDGET_SCALE = Double.parseDouble(System.getProperty("perf.budgetScale", "1"));
+
+    private interface Stage {
+        void run();
+    }
+
+    /**
+     * Fails if {@code stage} takes longer than {@code millis} at best, or allocates more than
+     * {@code bytes} in a run.
+     */
+    private static void assertWithinBudget(String name, long millis, long bytes, Stage stage) {
+        for (int i = 0; i < WARMUP_RUNS; i++) {
+            stage.run();
+        }
+
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < TIMED_RUNS; i++) {
+            long start = System.nanoTime();
+            stage.run();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        long budgetNanos = (long) (millis * 1_000_000L * BUDGET_SCALE);
+        assertTrue(String.format("%s took %.1f ms, budget %.1f ms", name, best / 1e6, budgetNanos / 1e6),
+                best <= budgetNanos);
+
+        long before = allocatedBytes();
+        stage.run();
+        long after = allocatedBytes();
+        // What asking for the count allocates itself
+        long overhead = allocatedBytes() - after;
+        long allocated = after - before - overhead;
+        if (before >= 0) {
+            assertTrue(name + " allocated " + allocated + " bytes, budget " + bytes, allocated <= bytes);
+        }
+    }
+
+    /** Bytes allocated by this thread so far, or -1 where the JVM does not count them. */
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (!(threads instanceof com.sun.management.ThreadMXBean)) return -1;
+        com.sun.management.ThreadMXBean counting = (com.sun.management.ThreadMXBean) threads;
+        if (!counting.isThreadAllocatedMemorySupported() || !counting.isThreadAllocatedMemoryEnabled()) return -1;
+        return counting.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    @Test
+    public void perPixelStagesStayInBudget() {
+        int[] source = TestImages.randomArgb(WIDTH, HEIGHT, 1);
+        byte[] plane = new byte[N];
+        int[] out = new int[N];
+        assertWithinBudget("luminance", 20, 0, () -> Luminance.toInvertedPlane(source, plane, N));
+        assertWithinBudget("dodge", 10, 0, () -> ColorDodge.blend(source, plane, out, N));
+    }
+
+    @Test
+    public void blursStayInBudget() {
+        byte[] plane = new byte[N];
+        Luminance.toInvertedPlane(TestImages.randomArgb(WIDTH, HEIGHT, 2), plane, N);
+        // Only the stack or ring scratch of one radius
+        assertWithinBudget("stack blur", 60, 1024, () -> StackBlur.blur(plane, WIDTH, HEIGHT, RADIUS,
+                CancellationToken.NONE));
+        BoxBlur box = new BoxBlur(new BufferPool(64L * 1024 * 1024));
+        assertWithinBudget("box blur", 60, 1024, () -> box.blur(plane, WIDTH, HEIGHT, RADIUS, CancellationToken.NONE));
+    }
+
+    @Test
+    public void pooledStyleRendersStayInBudget() {
+        int[] source = TestImages.randomArgb(WIDTH, HEIGHT, 3);
+        int[] out = new int[N];
+        BufferPool pool = new BufferPool(64L * 1024 * 1024);
+        for (SketchStyle style : SketchStyles.all()) {
+            // Planes come from the pool once it is warm; only the graph's bookkeeping is new
+            assertWithinBudget(style.name(), 100, 4 * 1024, () -> {
+                try (FilterGraph graph = new FilterGraph(source, WIDTH, HEIGHT, pool)) {
+                    style.render(graph, RADIUS, StackBlur.SERIAL, out, CancellationToken.NONE);
+                }
+            });
+        }
+    }
+}
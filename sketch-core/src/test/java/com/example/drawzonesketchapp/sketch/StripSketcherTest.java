@@ -0,0 +1,86 @@
+package com.example.drawzonesketchapp.sketch;
+
+import org.junit.Test;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import javax.imageio.ImageIO;
+
+import static org.junit.Assert.*;
+
+public class StripSketcherTest {
+
+    private static final int WIDTH = 53;
+    private static final int HEIGHT = 131;
+
+    private static StripSource sourceOf(int[] pixels) {
+        return new StripSource() {
+            @Override
+            public int width() {
+                return WIDTH;
+            }
+
+            @Override
+            public int height() {
+                return HEIGHT;
+            }
+
+            @Override
+            public void read(int top, int rows, int[] argb) {
+                System.arraycopy(pixels, top * WIDTH, argb, 0, rows * WIDTH);
+            }
+        };
+    }
+
+    @Test
+    public void stripsMatchWholeImage() throws IOException {
+        for (int radius : new int[]{1, 5, 20}) {
+            int[] source = TestImages.randomArgb(WIDTH, HEIGHT, radius);
+            int[] expected = source.clone();
+            SketchEngine.sketch(expected, WIDTH, HEIGHT, radius);
+
+            for (int stripHeight : new int[]{1, 7, 64, 500}) {
+                int[] actual = new int[WIDTH * HEIGHT];
+                int[] written = {0};
+                StripSink sink = (argb, offset, rows) -> {
+                    System.arraycopy(argb, offset, actual, written[0] * WIDTH, rows * WIDTH);
+                    written[0] += rows;
+                };
+                new StripSketcher(StackBlur::blur, radius, stripHeight).sketch(sourceOf(source), sink);
+
+                assertEquals(HEIGHT, written[0]);
+                assertArrayEquals("r" + radius + " strip " + stripHeight, expected, actual);
+            }
+        }
+    }
+
+    @Test
+    public void grayPngRoundTrips() throws IOException {
+        int[] source = TestImages.randomArgb(WIDTH, HEIGHT, 3);
+        int[] expected = source.clone();
+        SketchEngine.sketch(expected, WIDTH, HEIGHT, 5);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GrayPngWriter png = new GrayPngWriter(bytes, WIDTH, HEIGHT)) {
+            new StripSketcher(StackBlur::blur, 5, 16).sketch(sourceOf(source), png);
+        }
+
+        BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(bytes.toByteArray()));
+        assertEquals(BufferedImage.TYPE_BYTE_GRAY, decoded.getType());
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                assertEquals(expected[y * WIDTH + x] & 0xff, decoded.getRaster().getSample(x, y, 0));
+            }
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void incompletePngFailsOnClose() throws IOException {
+        GrayPngWriter png = new GrayPngWriter(new ByteArrayOutputStream(), 4, 4);
+        png.write(new int[16], 0, 2);
+        png.close();
+    }
+}
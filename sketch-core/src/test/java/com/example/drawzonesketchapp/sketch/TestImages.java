@@ -0,0 +1,22 @@
+package com.example.drawzonesketchapp.sketch;
+
+import java.util.Random;
+
+/**
+ * Deterministic fixtures shared by the tests.
+ */
+final class TestImages {
+
+    private TestImages() {
+    }
+
+    /** Opaque pixels of random color, the same for the same {@code seed}. */
+    static int[] randomArgb(int width, int height, long seed) {
+        Random random = new Random(seed);
+        int[] pixels = new int[width * height];
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = 0xff000000 | random.nextInt(0x1000000);
+        }
+        return pixels;
+    }
+}